@@ -0,0 +1,40 @@
+package com.github.dadiyang.httpinvoker;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Run the benchmarks matching the regular expressions given, all of them by default,
+ * once with a single thread and once with a thread per processor, both with the GC profiler on.
+ * <p>
+ * Usage: java -jar target/benchmarks.jar [regexp...]
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        int[] threads = {1, Runtime.getRuntime().availableProcessors()};
+        for (int t : threads) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .threads(t)
+                    .addProfiler(GCProfiler.class)
+                    .timeout(TimeValue.minutes(1))
+                    .result("target/jmh-result-" + t + "-threads.json")
+                    .resultFormat(ResultFormatType.JSON);
+            if (args.length == 0) {
+                options.include(".*Benchmark.*");
+            }
+            for (String include : args) {
+                options.include(include);
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.github.dadiyang.httpinvoker.Payloads.City;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.requestor.HttpRequest;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The overhead of the invoker against a {@link Requestor} which does no I/O,
+ * and the argument binding and url filling steps of a call.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokerBenchmark {
+    private static final String CITY_JSON = "{\"id\":1,\"name\":\"Guangzhou\"}";
+
+    @HttpApi("${api.url.city.host}/city")
+    public interface CityService {
+        @HttpReq("/getById/{id}")
+        City getCity(@Param("id") int id, @Param("lang") String lang);
+
+        @HttpReq(value = "/save", method = "POST")
+        boolean saveCity(@Param(isBody = true) City city);
+    }
+
+    private CityService service;
+    private HttpApiInvoker invoker;
+    private Method getCity;
+    private City city;
+    private Map<String, Object> pathParams;
+
+    @Setup
+    public void setUp() throws Exception {
+        Requestor noop = request -> {
+            String body = request.getUrl().endsWith("/save") ? "true" : CITY_JSON;
+            HttpResponse response = new HttpResponse(200, "OK", "application/json");
+            response.setBody(body);
+            response.setBodyAsBytes(body.getBytes(StandardCharsets.UTF_8));
+            return response;
+        };
+        Properties properties = new Properties();
+        properties.setProperty("api.url.city.host", "http://localhost:8080");
+        service = HttpApiProxyFactory.newProxy(CityService.class, noop, properties);
+        invoker = new HttpApiInvoker(noop, properties, CityService.class, null, null);
+        getCity = CityService.class.getMethod("getCity", int.class, String.class);
+        city = Payloads.city(1);
+        pathParams = new HashMap<>();
+        pathParams.put("id", 1);
+        pathParams.put("lang", "zh");
+    }
+
+    @Benchmark
+    public City invokeGet() {
+        return service.getCity(1, "zh");
+    }
+
+    @Benchmark
+    public boolean invokePostBody() {
+        return service.saveCity(city);
+    }
+
+    @Benchmark
+    public Map<String, Object> parseParam() {
+        return invoker.parseParam(city);
+    }
+
+    @Benchmark
+    public Map<String, Object> parseAnnotatedParams() {
+        return invoker.parseAnnotatedParams(new Object[]{1, "zh"}, getCity, new HttpRequest("http://localhost:8080/city"));
+    }
+
+    @Benchmark
+    public String fillPathVariables() {
+        // filling removes the params consumed, so each call works on a copy
+        return invoker.fillPathVariables(new HashMap<>(pathParams), "http://localhost:8080/city/getById/{id}", false);
+    }
+
+    @Benchmark
+    public String fillConfigVariables() {
+        return invoker.fillConfigVariables("${api.url.city.host}/city/getById/{id}");
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.alibaba.fastjson.JSON;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The request and response payloads shared by the benchmarks.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public final class Payloads {
+    public static final int CITIES = 100;
+
+    private Payloads() {
+    }
+
+    public static City city(int id) {
+        City city = new City();
+        city.setId(id);
+        city.setName("Guangzhou-" + id);
+        city.setProvince("Guangdong");
+        city.setPopulation(15_000_000L + id);
+        List<String> districts = new ArrayList<>();
+        districts.add("Tianhe");
+        districts.add("Yuexiu");
+        districts.add("Haizhu");
+        city.setDistricts(districts);
+        return city;
+    }
+
+    public static List<City> cities() {
+        List<City> cities = new ArrayList<>(CITIES);
+        for (int i = 0; i < CITIES; i++) {
+            cities.add(city(i));
+        }
+        return cities;
+    }
+
+    /**
+     * @return a JSON array of {@link #CITIES} cities, about 10KB
+     */
+    public static String citiesJson() {
+        return JSON.toJSONString(cities());
+    }
+
+    /**
+     * @return the cities wrapped in a {code: 0, msg: 'success', data: [...]} result bean
+     */
+    public static String citiesResultBeanJson() {
+        Map<String, Object> bean = new HashMap<>();
+        bean.put("code", 0);
+        bean.put("msg", "success");
+        bean.put("data", cities());
+        return JSON.toJSONString(bean);
+    }
+
+    public static class City {
+        private Integer id;
+        private String name;
+        private String province;
+        private Long population;
+        private List<String> districts;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getProvince() {
+            return province;
+        }
+
+        public void setProvince(String province) {
+            this.province = province;
+        }
+
+        public Long getPopulation() {
+            return population;
+        }
+
+        public void setPopulation(Long population) {
+            this.population = population;
+        }
+
+        public List<String> getDistricts() {
+            return districts;
+        }
+
+        public void setDistricts(List<String> districts) {
+            this.districts = districts;
+        }
+    }
+}
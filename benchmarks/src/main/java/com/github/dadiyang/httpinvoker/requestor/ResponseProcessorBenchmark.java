@@ -0,0 +1,59 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import com.github.dadiyang.httpinvoker.Payloads;
+import com.github.dadiyang.httpinvoker.Payloads.City;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a list of {@link Payloads#CITIES} cities, plain and wrapped in a result bean.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseProcessorBenchmark {
+
+    public interface CityService {
+        List<City> getCities();
+    }
+
+    private final ResponseProcessor defaultProcessor = new DefaultResponseProcessor();
+    private final ResponseProcessor resultBeanProcessor = new ResultBeanResponseProcessor();
+    private Method getCities;
+    private HttpResponse plain;
+    private HttpResponse resultBean;
+
+    @Setup
+    public void setUp() throws Exception {
+        getCities = CityService.class.getMethod("getCities");
+        plain = response(Payloads.citiesJson());
+        resultBean = response(Payloads.citiesResultBeanJson());
+    }
+
+    private static HttpResponse response(String body) {
+        HttpResponse response = new HttpResponse(200, "OK", "application/json");
+        response.setBody(body);
+        response.setBodyAsBytes(body.getBytes(StandardCharsets.UTF_8));
+        return response;
+    }
+
+    @Benchmark
+    public Object defaultProcessor() {
+        return defaultProcessor.process(plain, getCities);
+    }
+
+    @Benchmark
+    public Object resultBeanProcessor() {
+        return resultBeanProcessor.process(resultBean, getCities);
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.dadiyang.httpinvoker.spring;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The time to start a Spring context with 1,000 HttpApi interfaces, found in the index written by
+ * {@link com.github.dadiyang.httpinvoker.index.HttpApiIndexProcessor} or by scanning the classpath.
+ * <p>
+ * The interfaces are generated and compiled once, each start loads them with a new class loader.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SpringStartupBenchmark {
+    private static final int INTERFACES = 1000;
+    private static final String PACKAGE = "com.github.dadiyang.httpinvoker.generated";
+
+    @Param({"true", "false"})
+    public boolean indexed;
+    private Path root;
+    private URL classes;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("http-api-startup");
+        Path sources = Files.createDirectories(root.resolve("src").resolve(PACKAGE.replace('.', File.separatorChar)));
+        Path output = Files.createDirectories(root.resolve("classes"));
+        List<File> files = new ArrayList<>(INTERFACES + 1);
+        for (int i = 0; i < INTERFACES; i++) {
+            files.add(write(sources.resolve("Api" + i + ".java"), "package " + PACKAGE + ";\n"
+                    + "import com.github.dadiyang.httpinvoker.annotation.*;\n"
+                    + "import java.util.Map;\n"
+                    + "@HttpApi(\"http://localhost:8080/api" + i + "\")\n"
+                    + "public interface Api" + i + " {\n"
+                    + "    @HttpReq(\"/items/{id}\")\n"
+                    + "    String get(@Param(\"id\") int id);\n"
+                    + "    @HttpReq(value = \"/items\", method = \"POST\")\n"
+                    + "    boolean save(@Param(isBody = true) Map<String, Object> item);\n"
+                    + "}\n"));
+        }
+        files.add(write(sources.resolve("StartupConfig.java"), "package " + PACKAGE + ";\n"
+                + "@org.springframework.context.annotation.Configuration\n"
+                + "@com.github.dadiyang.httpinvoker.annotation.HttpApiScan(value = \"" + PACKAGE + "\", useIndex = " + indexed + ")\n"
+                + "public class StartupConfig {\n"
+                + "}\n"));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            List<String> options = Arrays.asList("-d", output.toString(), "-classpath", System.getProperty("java.class.path"),
+                    "-processor", "com.github.dadiyang.httpinvoker.index.HttpApiIndexProcessor");
+            if (!compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjectsFromFiles(files)).call()) {
+                throw new IllegalStateException("failed to compile the generated interfaces");
+            }
+        }
+        classes = output.toUri().toURL();
+    }
+
+    private static File write(Path file, String source) throws IOException {
+        return Files.write(file, source.getBytes(StandardCharsets.UTF_8)).toFile();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public int startContext() throws Exception {
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes}, getClass().getClassLoader())) {
+            AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext();
+            ctx.setClassLoader(loader);
+            ctx.register(loader.loadClass(PACKAGE + ".StartupConfig"));
+            ctx.refresh();
+            int beans = ctx.getBeanDefinitionCount();
+            ctx.close();
+            return beans;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.dadiyang.httpinvoker.util;
+
+import com.github.dadiyang.httpinvoker.Payloads;
+import com.github.dadiyang.httpinvoker.Payloads.City;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The conversion of a bean argument to a query string and to a map.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParamUtilsBenchmark {
+    private City city;
+
+    @Setup
+    public void setUp() {
+        city = Payloads.city(1);
+    }
+
+    @Benchmark
+    public String toQueryString() {
+        return ParamUtils.toQueryString(city);
+    }
+
+    @Benchmark
+    public Map<String, String> toMapStringString() {
+        return ParamUtils.toMapStringString(city);
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.github.dadiyang.httpinvoker.requestor.DownloadedHttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the response body to the @Sink argument or the file a method returns, instead of decoding it.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+class BodySink {
+    private static final String TEMP_FILE_PREFIX = "http-api-invoker-";
+
+    private BodySink() {
+    }
+
+    /**
+     * @param sink       the @Sink argument, null if the method has no sink parameter
+     * @param returnType the return type of the method
+     * @return the value to return: the number of bytes written for long, the file written to for Path/File
+     */
+    static Object write(HttpResponse response, Object sink, Class<?> returnType) throws IOException {
+        long written;
+        Path path = null;
+        if (sink == null) {
+            // a method returning a file without sink parameter
+            path = createTempFile();
+            try {
+                written = writeToFile(response, path);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(path);
+                throw e;
+            }
+        } else if (sink instanceof Path || sink instanceof File) {
+            path = sink instanceof File ? ((File) sink).toPath() : (Path) sink;
+            if (response instanceof DownloadedHttpResponse && path.equals(((DownloadedHttpResponse) response).getFile())) {
+                // downloaded into the file by the requestor already
+                written = response.getContentLength();
+            } else {
+                written = writeToFile(response, path);
+            }
+        } else if (sink instanceof WritableByteChannel) {
+            written = response.writeBodyTo((WritableByteChannel) sink);
+        } else {
+            OutputStream out = (OutputStream) sink;
+            written = response.writeBodyTo(Channels.newChannel(out));
+            out.flush();
+        }
+        if (returnType == long.class || returnType == Long.class) {
+            return written;
+        }
+        if (returnType == Path.class) {
+            return path;
+        }
+        if (returnType == File.class) {
+            return path == null ? null : path.toFile();
+        }
+        return null;
+    }
+
+    static Path createTempFile() throws IOException {
+        return Files.createTempFile(TEMP_FILE_PREFIX, ".tmp");
+    }
+
+    private static long writeToFile(HttpResponse response, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return response.writeBodyTo(channel);
+        }
+    }
+}
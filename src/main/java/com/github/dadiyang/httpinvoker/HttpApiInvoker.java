@@ -2,6 +2,20 @@ package com.github.dadiyang.httpinvoker;
 
 import com.alibaba.fastjson.JSON;
 import com.github.dadiyang.httpinvoker.annotation.*;
+import com.github.dadiyang.httpinvoker.balancer.Endpoint;
+import com.github.dadiyang.httpinvoker.balancer.EndpointSupplier;
+import com.github.dadiyang.httpinvoker.balancer.LoadBalancer;
+import com.github.dadiyang.httpinvoker.hedge.HedgingSender;
+import com.github.dadiyang.httpinvoker.jfr.JfrTracer;
+import com.github.dadiyang.httpinvoker.limiter.AdaptiveConcurrencyLimiter;
+import com.github.dadiyang.httpinvoker.limiter.TokenBucketRateLimiter;
+import com.github.dadiyang.httpinvoker.metrics.AttemptRecord;
+import com.github.dadiyang.httpinvoker.metrics.CallRecord;
+import com.github.dadiyang.httpinvoker.metrics.CallTimingsException;
+import com.github.dadiyang.httpinvoker.metrics.ExecutionRecord;
+import com.github.dadiyang.httpinvoker.metrics.MetricsRecorder;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings.Phase;
 import com.github.dadiyang.httpinvoker.propertyresolver.PropertiesBasePropertyResolver;
 import com.github.dadiyang.httpinvoker.propertyresolver.PropertyResolver;
 import com.github.dadiyang.httpinvoker.requestor.*;
@@ -11,11 +25,18 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
+import java.net.ConnectException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import static com.github.dadiyang.httpinvoker.util.ParamUtils.isCollection;
 
@@ -36,8 +57,14 @@ public class HttpApiInvoker implements InvocationHandler {
     private static final Pattern PROTOCOL_PATTERN = Pattern.compile("^[a-zA-Z].+://");
     private static final int OK_CODE_L = 200;
     private static final int OK_CODE_H = 300;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+    private static final int SERVER_ERROR = 500;
+    private static final String WHOLE_INTERFACE = "";
     private static final String HTTP_API_PREFIX = "$HttpApi$";
     private static final String TO_STRING = "toString";
+    private static final String SERVER_TIMING = "Server-Timing";
+    private static final JfrTracer TRACER = JfrTracer.get();
     private Requestor requestor;
     private PropertyResolver propertyResolver;
     private Class<?> clazz;
@@ -46,6 +73,18 @@ public class HttpApiInvoker implements InvocationHandler {
             Boolean.class, String.class, Array.class);
     private RequestPreprocessor requestPreprocessor;
     private ResponseProcessor responseProcessor;
+    private final Map<Method, MethodPlan> plans = new ConcurrentHashMap<>();
+    private ConcurrencyLimit concurrencyLimit;
+    private final Map<String, AdaptiveConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+    private TokenBucketRateLimiter rateLimiter;
+    private EndpointSupplier endpointSupplier;
+    private MetricsRecorder metricsRecorder;
+    /**
+     * the runtime of the factory which created the proxy, null if the proxy is not created by a factory
+     */
+    private HttpApiRuntime runtime;
+    private volatile LoadBalancer loadBalancer;
+    private volatile ParsedPrefix parsedPrefix = new ParsedPrefix(null, Collections.emptyList());
 
     public HttpApiInvoker(Requestor requestor, Properties properties,
                           Class<?> clazz, RequestPreprocessor requestPreprocessor,
@@ -56,6 +95,10 @@ public class HttpApiInvoker implements InvocationHandler {
         this.requestPreprocessor = requestPreprocessor;
         this.responseProcessor = responseProcessor;
         this.clazz = clazz;
+        this.concurrencyLimit = clazz.getAnnotation(ConcurrencyLimit.class);
+        if (clazz.isAnnotationPresent(RateLimit.class)) {
+            this.rateLimiter = TokenBucketRateLimiter.create(clazz.getName(), clazz.getAnnotation(RateLimit.class), this.propertyResolver);
+        }
     }
 
     public HttpApiInvoker(Requestor requestor, PropertyResolver propertyResolver,
@@ -66,6 +109,10 @@ public class HttpApiInvoker implements InvocationHandler {
         this.requestPreprocessor = requestPreprocessor;
         this.responseProcessor = responseProcessor;
         this.clazz = clazz;
+        this.concurrencyLimit = clazz.getAnnotation(ConcurrencyLimit.class);
+        if (clazz.isAnnotationPresent(RateLimit.class)) {
+            this.rateLimiter = TokenBucketRateLimiter.create(clazz.getName(), clazz.getAnnotation(RateLimit.class), this.propertyResolver);
+        }
     }
 
 
@@ -83,8 +130,88 @@ public class HttpApiInvoker implements InvocationHandler {
             // this proxy only implement those HttpReq-annotated method
             throw new IllegalStateException("this proxy only implement those HttpReq-annotated method");
         }
+        MethodPlan plan = getPlan(method);
+        if (plan.getPaginated() != null) {
+            // each page is a call of its own
+            HttpApiRuntime runtime = this.runtime;
+            Pagination<Object> pagination = new Pagination<>(plan, args, pageArgs -> invokeInRuntime(plan, method, pageArgs),
+                    runtime == null ? null : runtime.getExecutor());
+            return method.getReturnType() == Stream.class ? pagination.stream() : pagination;
+        }
+        return invokeInRuntime(plan, method, args);
+    }
+
+    private Object invokeInRuntime(MethodPlan plan, Method method, Object[] args) throws Throwable {
+        HttpApiRuntime runtime = this.runtime;
+        if (runtime == null) {
+            return invoke(plan, method, args);
+        }
+        runtime.beginCall();
+        try {
+            return invoke(plan, method, args);
+        } finally {
+            runtime.endCall();
+        }
+    }
+
+    private Object invoke(MethodPlan plan, Method method, Object[] args) throws Throwable {
+        Invocation invocation = new Invocation(plan);
+        if (args != null) {
+            invocation.setRouteKey(plan.getRouteKey(args));
+        }
+        MetricsRecorder recorder = metricsRecorder;
+        Object event = TRACER == null ? null : TRACER.beginInvocation();
+        CallRecord record = null;
+        if (recorder != null || event != null) {
+            record = new CallRecord(clazz, method);
+            invocation.setRecord(record);
+        }
+        if (recorder != null) {
+            recorder.onStart(record);
+        }
+        try {
+            return invoke(invocation, method, args);
+        } catch (Throwable e) {
+            // tell where the time went
+            e.addSuppressed(new CallTimingsException(System.nanoTime() - invocation.getStartNanos(), invocation.getTimings()));
+            if (record != null) {
+                record.setError(e);
+            }
+            if (invocation.getTempFile() != null) {
+                Path temp = invocation.getTempFile();
+                deleteQuietly(temp);
+                deleteQuietly(temp.resolveSibling(temp.getFileName() + DownloadedHttpResponse.PROGRESS_SUFFIX));
+            }
+            throw e;
+        } finally {
+            if (record != null) {
+                record.setAttempts(invocation.getAttempts());
+                record.setTimings(invocation.getTimings());
+                if (invocation.getRequest() != null) {
+                    record.setUrl(invocation.getRequest().getUrl());
+                    record.setRequestBytes(invocation.getRequest().getContentLength());
+                    record.setRequestCompressedBytes(invocation.getRequest().getCompressedLength());
+                }
+                record.complete();
+                if (recorder != null) {
+                    recorder.onComplete(record);
+                }
+                if (event != null) {
+                    TRACER.endInvocation(event, record, plan.getUrlTemplate());
+                }
+            }
+        }
+    }
+
+    private Object invoke(Invocation invocation, Method method, Object[] args) throws Throwable {
+        MethodPlan plan = invocation.getPlan();
+        PhaseTimings timings = invocation.getTimings();
+        long phaseStart = System.nanoTime();
+        if (plan.getSinkIndex() >= 0 && args[plan.getSinkIndex()] == null) {
+            throw new IllegalArgumentException("the Sink argument of " + method + " should not be null");
+        }
         String url = "";
-        HttpReq anno = method.getAnnotation(HttpReq.class);
+        HttpReq anno = plan.getHttpReq();
         url += anno.value();
         // fill config variables
         url = fillConfigVariables(url);
@@ -94,27 +221,37 @@ public class HttpApiInvoker implements InvocationHandler {
                 && !PROTOCOL_PATTERN.matcher(url).find()) {
             HttpApi httpApi = clazz.getAnnotation(HttpApi.class);
             String pre = "".equals(httpApi.prefix()) ? httpApi.value() : httpApi.prefix();
-            url = pre + url;
+            url = route(invocation, pre) + url;
         }
         // prepare param
-        HttpRequest request = new HttpRequest(anno.timeout(), anno.method());
+        // not beyond the deadline of a parallel scope
+        HttpRequest request = new HttpRequest(ParallelScope.capTimeout(anno.timeout()), anno.method());
+        request.setTimings(timings);
+        request.setCompressMinBytes(plan.getCompressMinBytes());
+        request.setBodyLimit(plan.getMaxBodyBytes(), plan.getSpillBodyBytes());
+        request.setExpectedBodyBytes(plan.getBodySizeEstimate());
+        if (runtime != null) {
+            request.setExecutor(runtime.getExecutor());
+        }
+        invocation.setRequest(request);
         // fill config variables again
         url = fillConfigVariables(url);
         request.setUrl(url);
+        phaseStart = recordPhase(timings, Phase.RESOLVE, phaseStart);
         if (args != null && args.length > 0) {
             Map<String, Object> params = null;
             Map<String, Object> annotatedParam = parseAnnotatedParams(args, method, request);
             // use annotated param if exists
             if (annotatedParam != null && !annotatedParam.isEmpty()) {
                 params = annotatedParam;
-            } else if (request.getBody() == null) {
+            } else if (request.getBody() == null && plan.getSinkIndex() != 0) {
                 // else use the first arg as param
                 if (isCollection(args[0])) {
                     request.setBody(args[0]);
                 } else if (args[0] != null) {
                     params = parseParam(args[0]);
                 }
-            } else {
+            } else if (request.getBody() != null) {
                 // try the parse body to a map
                 request.setData(parseParam(request.getBody()));
             }
@@ -128,28 +265,87 @@ public class HttpApiInvoker implements InvocationHandler {
             // a form request
             request.addHeader("Content-Type", "application/x-www-form-urlencoded");
         }
+        phaseStart = recordPhase(timings, Phase.BIND, phaseStart);
         if (requestPreprocessor != null) {
             requestPreprocessor.process(request);
         }
         // fill path variable again, so that user can provide some param by requestPreprocessor
         url = fillPathVariables(request.getData(), url, true);
         request.setUrl(url);
+        Object sink = plan.getSinkIndex() < 0 ? null : args[plan.getSinkIndex()];
+        if (plan.getRangedDownload() != null) {
+            sink = prepareRangedDownload(invocation, sink);
+        }
+        phaseStart = recordPhase(timings, Phase.PREPROCESS, phaseStart);
         long start = System.currentTimeMillis();
         HttpResponse response;
-        RetryPolicy retryPolicy = getRetryPolicy(method);
+        RetryPolicy retryPolicy = plan.getRetryPolicy();
         if (retryPolicy == null) {
-            response = requestor.sendRequest(request);
+            response = sendRequest(invocation);
         } else {
-            response = retrySendRequest(request, retryPolicy);
+            response = retrySendRequest(invocation, retryPolicy);
         }
-        if (isNotNeedReturnValue(method, url, response)) {
+        phaseStart = recordPhase(timings, Phase.SEND, phaseStart);
+        CallRecord record = invocation.getRecord();
+        if (record != null && response != null) {
+            record.setStatusCode(response.getStatusCode());
+            List<String> serverTimings = response.getHeaderValues(SERVER_TIMING);
+            if (!serverTimings.isEmpty()) {
+                record.setServerTimings(serverTimings);
+            }
+        }
+        if (response == null) {
             return null;
         }
-        Object returnValue;
-        if (responseProcessor != null) {
-            returnValue = responseProcessor.process(response, method);
-        } else {
-            returnValue = DEFAULT_RESPONSE_PROCESSOR.process(response, method);
+        Object returnValue = null;
+        try {
+            checkStatus(url, response);
+            boolean bodyRead = timings.isAvailable(Phase.BODY);
+            Object decodeEvent = TRACER == null ? null : TRACER.beginDecode();
+            ResponseProcessor processor = responseProcessor != null ? responseProcessor : DEFAULT_RESPONSE_PROCESSOR;
+            try {
+                if (plan.isStreamingBody()) {
+                    returnValue = BodySink.write(response, sink, method.getReturnType());
+                } else if (plan.getResultType() != null) {
+                    returnValue = processor.process(response, method, plan.getResultType());
+                } else if (plan.getPaginated() != null) {
+                    // a page, whose items and cursor are taken by the pagination
+                    returnValue = processor.process(response, method, Object.class);
+                } else {
+                    returnValue = processor.process(response, method);
+                }
+            } catch (UncheckedIOException e) {
+                // e.g. the body is larger than the limit while being read lazily
+                throw e.getCause();
+            }
+            if (decodeEvent != null) {
+                TRACER.endDecode(decodeEvent, clazz, method, response.getContentLength());
+            }
+            long decode = System.nanoTime() - phaseStart;
+            if (!bodyRead && timings.isAvailable(Phase.BODY)) {
+                // the body was read lazily while decoding
+                decode -= timings.get(Phase.BODY);
+            }
+            timings.record(Phase.DECODE, decode);
+            if (record != null) {
+                // after processing, so that a buffered body can be counted
+                record.setResponseBytes(response.getContentLength());
+                record.setResponseCompressedBytes(response.getCompressedLength());
+            }
+            if (!plan.isStreamingBody()) {
+                plan.recordBodySize(response.getContentLength());
+            }
+        } finally {
+            if (returnValue != response && !(returnValue instanceof InputStream)) {
+                // the decoded value, if any, holds no reference to the buffer of the body
+                response.release();
+            }
+        }
+        if (plan.getResultType() != null) {
+            ExecutionRecord execution = new ExecutionRecord(invocation.getAttemptRecords(),
+                    System.nanoTime() - invocation.getStartNanos(), request.getContentLength(),
+                    response.getContentLength(), invocation.getHedges(), timings);
+            returnValue = new HttpResult<>(returnValue, response.getStatusCode(), execution);
         }
         if (log.isDebugEnabled()) {
             log.debug("send request to url: {}, time consume: {} ms", request.getUrl(), (System.currentTimeMillis() - start));
@@ -157,24 +353,414 @@ public class HttpApiInvoker implements InvocationHandler {
         return returnValue;
     }
 
-    private boolean isNotNeedReturnValue(Method method, String url, HttpResponse response) throws IOException {
-        if (response == null) {
-            return true;
+    /**
+     * let the requestor download the body in parallel ranges into the sink file, or into a temporary file if the
+     * method has no sink
+     *
+     * @return the file to download into
+     */
+    private Path prepareRangedDownload(Invocation invocation, Object sink) throws IOException {
+        Path target;
+        if (sink == null) {
+            target = BodySink.createTempFile();
+            invocation.setTempFile(target);
+        } else {
+            target = sink instanceof File ? ((File) sink).toPath() : (Path) sink;
         }
+        RangedDownload ann = invocation.getPlan().getRangedDownload();
+        invocation.getRequest().setRangedDownload(target, ann.segments(), ann.minSegmentBytes());
+        return target;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("failed to delete temporary file {}", file, e);
+        }
+    }
+
+    /**
+     * record the time since the start of the phase
+     *
+     * @return the start of the next phase
+     */
+    private static long recordPhase(PhaseTimings timings, Phase phase, long phaseStart) {
+        long now = System.nanoTime();
+        timings.record(phase, now - phaseStart);
+        return now;
+    }
+
+    private static void checkStatus(String url, HttpResponse response) throws IOException {
         if (response.getStatusCode() < OK_CODE_L || response.getStatusCode() >= OK_CODE_H) {
             // status code is not 2xx
             throw new IOException(url + ", statusCode: " + response.getStatusCode() + ", statusMsg: " + response.getStatusMessage());
         }
-        return false;
+    }
+
+    private MethodPlan getPlan(Method method) {
+        MethodPlan plan = plans.get(method);
+        if (plan == null) {
+            plan = plans.computeIfAbsent(method, m -> new MethodPlan(clazz, m,
+                    runtime == null ? null : runtime.getExecutor(), rateLimiter, propertyResolver));
+        }
+        return plan;
+    }
+
+    /**
+     * choose the endpoint to send the request if the prefix consists of multiple endpoints or an EndpointSupplier is set
+     *
+     * @param prefix the prefix of @HttpApi with config variables not filled
+     * @return the prefix to use
+     */
+    private String route(Invocation invocation, String prefix) {
+        String resolved = fillConfigVariables(prefix);
+        List<String> endpoints = getEndpoints(prefix, resolved);
+        if (endpoints.size() <= 1 && loadBalancer == null) {
+            return endpoints.isEmpty() ? resolved : endpoints.get(0);
+        }
+        LoadBalancer balancer = loadBalancer;
+        if (balancer == null) {
+            synchronized (this) {
+                if (loadBalancer == null) {
+                    loadBalancer = new LoadBalancer(clazz.getName());
+                }
+                balancer = loadBalancer;
+            }
+        }
+        balancer.updateEndpoints(endpoints);
+        Endpoint endpoint = invocation.getRouteKey() != null
+                ? balancer.choose(invocation.getRouteKey(), null) : balancer.choose(null);
+        invocation.route(balancer, endpoint);
+        return endpoint.getUrl();
+    }
+
+    /**
+     * @return the endpoints supplied by the EndpointSupplier, or parsed from the prefix
+     */
+    private List<String> getEndpoints(String prefix, String resolved) {
+        if (endpointSupplier != null) {
+            List<String> supplied = endpointSupplier.getEndpoints(clazz, resolved);
+            if (supplied != null && !supplied.isEmpty()) {
+                // the supplied endpoints take the place of the scheme, host and port of the prefix
+                String path = getPath(resolved);
+                List<String> endpoints = new ArrayList<>(supplied.size());
+                for (String endpoint : supplied) {
+                    endpoints.add(endpoint + path);
+                }
+                return endpoints;
+            }
+        }
+        return parseEndpoints(prefix, resolved);
+    }
+
+    /**
+     * parse the endpoints from a prefix whose config variable is a comma-separated list, such as ${hosts}/city,
+     * or a prefix which is a comma-separated list itself
+     */
+    private List<String> parseEndpoints(String prefix, String resolved) {
+        ParsedPrefix parsed = parsedPrefix;
+        if (resolved.equals(parsed.resolved)) {
+            return parsed.endpoints;
+        }
+        List<String> endpoints = new ArrayList<>();
+        if (resolved.indexOf(',') < 0) {
+            endpoints.add(resolved);
+        } else {
+            Matcher matcher = VARIABLE_PATTERN.matcher(prefix);
+            String listVariable = null;
+            while (matcher.find() && listVariable == null) {
+                String value = propertyResolver.getProperty(matcher.group(1));
+                if (value != null && value.indexOf(',') >= 0) {
+                    listVariable = matcher.group(1);
+                }
+            }
+            if (listVariable != null) {
+                for (String item : propertyResolver.getProperty(listVariable).split(",")) {
+                    if (!item.trim().isEmpty()) {
+                        endpoints.add(fillConfigVariables(prefix.replace("${" + listVariable + "}", item.trim())));
+                    }
+                }
+            } else {
+                for (String item : resolved.split(",")) {
+                    if (!item.trim().isEmpty()) {
+                        endpoints.add(item.trim());
+                    }
+                }
+            }
+        }
+        parsedPrefix = new ParsedPrefix(resolved, endpoints);
+        return endpoints;
+    }
+
+    /**
+     * @return the part of the url after the scheme, host and port
+     */
+    private static String getPath(String url) {
+        int start = url.lastIndexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int slash = url.indexOf('/', start);
+        return slash < 0 ? "" : url.substring(slash);
+    }
+
+    public void setEndpointSupplier(EndpointSupplier endpointSupplier) {
+        this.endpointSupplier = endpointSupplier;
+    }
+
+    Class<?> getInterface() {
+        return clazz;
+    }
+
+    Requestor getRequestor() {
+        return requestor;
+    }
+
+    /**
+     * build the plans of all the HttpReq-annotated methods
+     *
+     * @return the plans
+     */
+    List<MethodPlan> buildPlans() {
+        List<MethodPlan> list = new ArrayList<>();
+        for (Method method : clazz.getMethods()) {
+            if (method.isAnnotationPresent(HttpReq.class)) {
+                list.add(getPlan(method));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return the urls that the methods send requests to before the path variables are filled
+     */
+    Set<String> getUrls() {
+        Set<String> urls = new LinkedHashSet<>();
+        HttpApi httpApi = clazz.getAnnotation(HttpApi.class);
+        List<String> endpoints = null;
+        for (Method method : clazz.getMethods()) {
+            HttpReq anno = method.getAnnotation(HttpReq.class);
+            if (anno == null) {
+                continue;
+            }
+            String url = fillConfigVariables(anno.value());
+            if (PROTOCOL_PATTERN.matcher(url).find()) {
+                urls.add(url);
+            } else if (httpApi != null) {
+                if (endpoints == null) {
+                    String pre = "".equals(httpApi.prefix()) ? httpApi.value() : httpApi.prefix();
+                    endpoints = getEndpoints(pre, fillConfigVariables(pre));
+                }
+                urls.addAll(endpoints);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * @return an invoker of the same interface sending the requests by the given requestor, without recording metrics
+     */
+    HttpApiInvoker withRequestor(Requestor requestor) {
+        HttpApiInvoker invoker = new HttpApiInvoker(requestor, propertyResolver, clazz, requestPreprocessor, responseProcessor);
+        invoker.setEndpointSupplier(endpointSupplier);
+        invoker.setRuntime(runtime);
+        return invoker;
+    }
+
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * set the runtime which the calls are counted in and the hedged requests and the ranges of the downloads run on,
+     * before the first call
+     *
+     * @param runtime the runtime of the factory
+     */
+    public void setRuntime(HttpApiRuntime runtime) {
+        this.runtime = runtime;
+    }
+
+    /**
+     * the load balancer of this interface
+     *
+     * @return the load balancer, null if the interface has only one endpoint
+     */
+    public LoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
+    /**
+     * the concurrency limiters of this interface, keyed by host if it limits per host
+     *
+     * @return the concurrency limiters, empty if the interface is not annotated by @ConcurrencyLimit
+     */
+    public Map<String, AdaptiveConcurrencyLimiter> getConcurrencyLimiters() {
+        return Collections.unmodifiableMap(concurrencyLimiters);
+    }
+
+    /**
+     * send the request within the rate limit and the concurrency limit of the interface
+     */
+    private HttpResponse sendRequest(Invocation invocation) throws IOException {
+        MethodPlan plan = invocation.getPlan();
+        HttpRequest request = invocation.getRequest();
+        if (plan.getRateLimiter() != null) {
+            Object event = TRACER == null ? null : TRACER.beginAcquire();
+            boolean acquired = false;
+            try {
+                plan.getRateLimiter().acquire();
+                acquired = true;
+            } finally {
+                if (event != null) {
+                    TRACER.endAcquire(event, clazz, plan.getMethod(), "RateLimit:" + plan.getRateLimiter().getName(), acquired);
+                }
+            }
+        }
+        invocation.onAttempt();
+        if (concurrencyLimit == null) {
+            return sendAttempt(invocation);
+        }
+        String key = concurrencyLimit.perHost() ? getHost(request.getUrl()) : WHOLE_INTERFACE;
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiters.get(key);
+        if (limiter == null) {
+            limiter = concurrencyLimiters.computeIfAbsent(key, k -> new AdaptiveConcurrencyLimiter(
+                    k.isEmpty() ? clazz.getName() : clazz.getName() + "@" + k, concurrencyLimit));
+        }
+        Object event = TRACER == null ? null : TRACER.beginAcquire();
+        long start;
+        try {
+            start = limiter.acquire();
+        } catch (RuntimeException e) {
+            if (event != null) {
+                TRACER.endAcquire(event, clazz, plan.getMethod(), "ConcurrencyLimit:" + limiter.getName(), false);
+            }
+            throw e;
+        }
+        if (event != null) {
+            TRACER.endAcquire(event, clazz, plan.getMethod(), "ConcurrencyLimit:" + limiter.getName(), true);
+        }
+        boolean failed = true;
+        try {
+            HttpResponse response = sendAttempt(invocation);
+            // the upstream tells us it is overloaded
+            failed = response != null && (response.getStatusCode() == TOO_MANY_REQUESTS
+                    || response.getStatusCode() == SERVICE_UNAVAILABLE);
+            return response;
+        } finally {
+            limiter.release(start, failed);
+        }
+    }
+
+    /**
+     * send an attempt of the request, tracing it by Flight Recorder
+     */
+    private HttpResponse sendAttempt(Invocation invocation) throws IOException {
+        Object event = TRACER == null ? null : TRACER.beginAttempt();
+        List<AttemptRecord> attemptRecords = invocation.getAttemptRecords();
+        if (event == null && attemptRecords == null) {
+            return sendToEndpoint(invocation);
+        }
+        long start = System.nanoTime();
+        HttpResponse response = null;
+        Throwable error = null;
+        try {
+            response = sendToEndpoint(invocation);
+            return response;
+        } catch (IOException | RuntimeException | Error e) {
+            error = e;
+            throw e;
+        } finally {
+            int statusCode = response == null ? 0 : response.getStatusCode();
+            String url = invocation.getRequest().getUrl();
+            if (event != null) {
+                TRACER.endAttempt(event, clazz, invocation.getPlan().getMethod(), invocation.getAttempts(),
+                        url, statusCode, error);
+            }
+            if (attemptRecords != null) {
+                attemptRecords.add(new AttemptRecord(invocation.getAttempts(), url, statusCode,
+                        System.nanoTime() - start, error));
+            }
+        }
+    }
+
+    /**
+     * send the request to the chosen endpoint, falling back to the next endpoint for the route key
+     * if the connection is refused
+     */
+    private HttpResponse sendToEndpoint(Invocation invocation) throws IOException {
+        if (invocation.getEndpoint() == null) {
+            return doSendRequest(invocation);
+        }
+        int fallbacks = invocation.getLoadBalancer().getEndpoints().size() - 1;
+        while (true) {
+            try {
+                return sendToChosenEndpoint(invocation);
+            } catch (ConnectException e) {
+                // the request has not been sent, so it is safe to try another endpoint
+                if (invocation.getRouteKey() == null || fallbacks-- <= 0 || !invocation.reroute()) {
+                    throw e;
+                }
+                log.warn("connect to endpoint error, fall back to {}, error: {}", invocation.getEndpoint().getUrl(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * send the request to the chosen endpoint and record its latency and result for balancing
+     */
+    private HttpResponse sendToChosenEndpoint(Invocation invocation) throws IOException {
+        HedgingSender hedgingSender = invocation.getPlan().getHedgingSender();
+        if (hedgingSender != null) {
+            // each attempt is balanced by itself
+            return hedgingSender.send(new EndpointRequestor(invocation), invocation.getRequest(),
+                    () -> tryHedge(invocation));
+        }
+        Endpoint endpoint = invocation.getEndpoint();
+        LoadBalancer balancer = invocation.getLoadBalancer();
+        balancer.onStart(endpoint);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            HttpResponse response = requestor.sendRequest(invocation.getRequest());
+            failed = response != null && response.getStatusCode() >= SERVER_ERROR;
+            return response;
+        } finally {
+            balancer.onComplete(endpoint, System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * send the request without choosing an endpoint, hedging it if the method is annotated by @Hedge
+     */
+    private HttpResponse doSendRequest(Invocation invocation) throws IOException {
+        HedgingSender hedgingSender = invocation.getPlan().getHedgingSender();
+        if (hedgingSender != null) {
+            return hedgingSender.send(requestor, invocation.getRequest(), () -> tryHedge(invocation));
+        }
+        return requestor.sendRequest(invocation.getRequest());
+    }
+
+    /**
+     * take a permit of the rate limit for a hedged request without waiting
+     *
+     * @return whether the hedged request can be sent
+     */
+    private boolean tryHedge(Invocation invocation) {
+        TokenBucketRateLimiter rateLimiter = invocation.getPlan().getRateLimiter();
+        if (rateLimiter != null && !rateLimiter.tryAcquire()) {
+            return false;
+        }
+        invocation.onHedge();
+        return true;
     }
 
     /**
      * retry send request according to the retry policy
      */
-    private HttpResponse retrySendRequest(HttpRequest request, RetryPolicy retryPolicy) throws IOException {
+    private HttpResponse retrySendRequest(Invocation invocation, RetryPolicy retryPolicy) throws IOException {
         int retryTime = retryPolicy.times();
         if (retryTime <= 0) {
-            return requestor.sendRequest(request);
+            return sendRequest(invocation);
         }
         Status[] retryForStatus = retryPolicy.retryForStatus();
         Class<? extends Throwable>[] retryFor = retryPolicy.retryFor();
@@ -187,9 +773,13 @@ public class HttpApiInvoker implements InvocationHandler {
                 } catch (InterruptedException ignored) {
                 }
             }
+            if (tryTime > 1) {
+                // try another endpoint if there are some
+                invocation.reroute();
+            }
             boolean needRetry = false;
             try {
-                response = requestor.sendRequest(request);
+                response = sendRequest(invocation);
                 int statusCode = response.getStatusCode();
                 for (Status status : retryForStatus) {
                     if (statusCode >= status.getFrom() && statusCode <= status.getTo()) {
@@ -221,17 +811,21 @@ public class HttpApiInvoker implements InvocationHandler {
         return response;
     }
 
-    private RetryPolicy getRetryPolicy(Method method) {
-        RetryPolicy retryPolicy = null;
-        if (method.isAnnotationPresent(RetryPolicy.class)) {
-            retryPolicy = method.getAnnotation(RetryPolicy.class);
-        } else if (clazz.isAnnotationPresent(RetryPolicy.class)) {
-            retryPolicy = clazz.getAnnotation(RetryPolicy.class);
+    private static String getHost(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
         }
-        return retryPolicy;
+        return url.substring(start, end);
     }
 
-    private Map<String, Object> parseParam(Object arg) {
+    Map<String, Object> parseParam(Object arg) {
         Map<String, Object> params;
         Class<?> cls = arg.getClass();
         if (cls.isPrimitive()
@@ -257,7 +851,7 @@ public class HttpApiInvoker implements InvocationHandler {
      * @param request the request
      * @return the map represent the params
      */
-    private Map<String, Object> parseAnnotatedParams(Object[] args, Method method, HttpRequest request) {
+    Map<String, Object> parseAnnotatedParams(Object[] args, Method method, HttpRequest request) {
         Annotation[][] annotations = method.getParameterAnnotations();
         if (annotations.length <= 0) {
             return Collections.emptyMap();
@@ -276,8 +870,11 @@ public class HttpApiInvoker implements InvocationHandler {
                         map = new HashMap<>();
                     }
                     if (isFile(args[i])) {
-                        request.setBody(args[i]);
-                        request.setFileFormKey(param.value());
+                        if (request.getBody() == null) {
+                            request.setBody(args[i]);
+                            request.setFileFormKey(param.value());
+                        }
+                        request.addFilePart(param.value(), args[i]);
                     } else if (param.isBody()) {
                         Map<String, Object> body = parseParam(args[i]);
                         if (body == null) {
@@ -310,7 +907,9 @@ public class HttpApiInvoker implements InvocationHandler {
 
     private boolean isFile(Object arg) {
         return InputStream.class.isAssignableFrom(arg.getClass())
-                || File.class.isAssignableFrom(arg.getClass());
+                || File.class.isAssignableFrom(arg.getClass())
+                || Path.class.isAssignableFrom(arg.getClass())
+                || FileChannel.class.isAssignableFrom(arg.getClass());
     }
 
     /**
@@ -333,7 +932,7 @@ public class HttpApiInvoker implements InvocationHandler {
      * @return the path variable filled url
      * @throws IllegalArgumentException thrown when the specific param absent
      */
-    private String fillPathVariables(Map<String, Object> params, String url, boolean exceptionOnNotProvided) {
+    String fillPathVariables(Map<String, Object> params, String url, boolean exceptionOnNotProvided) {
         url = fillPathVariables(params, url, exceptionOnNotProvided, false);
         return fillPathVariables(params, url, exceptionOnNotProvided, true);
     }
@@ -375,7 +974,7 @@ public class HttpApiInvoker implements InvocationHandler {
         return url;
     }
 
-    private String fillConfigVariables(String url) {
+    String fillConfigVariables(String url) {
         Matcher matcher = VARIABLE_PATTERN.matcher(url);
         while (matcher.find()) {
             String key = matcher.group(1);
@@ -391,4 +990,73 @@ public class HttpApiInvoker implements InvocationHandler {
         return url;
     }
 
+    /**
+     * the last resolved prefix and the endpoints parsed from it
+     */
+    private static final class ParsedPrefix {
+        private final String resolved;
+        private final List<String> endpoints;
+
+        ParsedPrefix(String resolved, List<String> endpoints) {
+            this.resolved = resolved;
+            this.endpoints = endpoints;
+        }
+    }
+
+    /**
+     * send the attempts of a hedged request each to an endpoint of its own, the first one to the chosen endpoint,
+     * and record the latency and result of each attempt against its endpoint
+     */
+    private class EndpointRequestor implements Requestor {
+        private final LoadBalancer balancer;
+        private final Endpoint chosen;
+        private final String routeKey;
+        private final List<Endpoint> used = new ArrayList<>(2);
+
+        EndpointRequestor(Invocation invocation) {
+            this.balancer = invocation.getLoadBalancer();
+            this.chosen = invocation.getEndpoint();
+            this.routeKey = invocation.getRouteKey();
+        }
+
+        @Override
+        public HttpResponse sendRequest(HttpRequest request) throws IOException {
+            Endpoint endpoint = next();
+            String url = request.getUrl();
+            if (endpoint != chosen) {
+                if (url.startsWith(chosen.getUrl())) {
+                    request.setUrl(endpoint.getUrl() + url.substring(chosen.getUrl().length()));
+                } else {
+                    endpoint = chosen;
+                }
+            }
+            balancer.onStart(endpoint);
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                HttpResponse response = requestor.sendRequest(request);
+                failed = response != null && response.getStatusCode() >= SERVER_ERROR;
+                return response;
+            } catch (IOException | RuntimeException e) {
+                // the attempt cancelled since another one won has not failed
+                failed = !request.isCancelled();
+                throw e;
+            } finally {
+                balancer.onComplete(endpoint, System.nanoTime() - start, failed);
+            }
+        }
+
+        private synchronized Endpoint next() {
+            Endpoint endpoint;
+            if (used.isEmpty()) {
+                endpoint = chosen;
+            } else if (routeKey != null) {
+                endpoint = balancer.choose(routeKey, used);
+            } else {
+                endpoint = balancer.chooseExcluding(used);
+            }
+            used.add(endpoint);
+            return endpoint;
+        }
+    }
 }
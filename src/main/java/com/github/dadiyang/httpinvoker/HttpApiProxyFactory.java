@@ -1,5 +1,10 @@
 package com.github.dadiyang.httpinvoker;
 
+import com.github.dadiyang.httpinvoker.balancer.EndpointSupplier;
+import com.github.dadiyang.httpinvoker.jmx.HttpApiClient;
+import com.github.dadiyang.httpinvoker.metrics.CompositeMetricsRecorder;
+import com.github.dadiyang.httpinvoker.metrics.InMemoryMetricsRecorder;
+import com.github.dadiyang.httpinvoker.metrics.MetricsRecorder;
 import com.github.dadiyang.httpinvoker.propertyresolver.PropertiesBasePropertyResolver;
 import com.github.dadiyang.httpinvoker.propertyresolver.PropertyResolver;
 import com.github.dadiyang.httpinvoker.requestor.DefaultHttpRequestor;
@@ -7,11 +12,15 @@ import com.github.dadiyang.httpinvoker.requestor.RequestPreprocessor;
 import com.github.dadiyang.httpinvoker.requestor.Requestor;
 import com.github.dadiyang.httpinvoker.requestor.ResponseProcessor;
 
+import java.io.Closeable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A factory to create HttpApiInvoker
@@ -19,12 +28,16 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author huangxuyang
  * date 2018/10/30
  */
-public class HttpApiProxyFactory {
-    private Map<Class<?>, Object> instances = new ConcurrentHashMap<>();
+public class HttpApiProxyFactory implements Closeable {
+    private final Map<Class<?>, Object> instances = new ConcurrentHashMap<>();
     private Requestor requestor;
     private PropertyResolver propertyResolver;
     private RequestPreprocessor requestPreprocessor;
     private ResponseProcessor responseProcessor;
+    private EndpointSupplier endpointSupplier;
+    private MetricsRecorder metricsRecorder;
+    private boolean jmxEnabled;
+    private final HttpApiRuntime runtime = new HttpApiRuntime();
 
     public HttpApiProxyFactory() {
         this(new DefaultHttpRequestor(), System.getProperties());
@@ -202,6 +215,100 @@ public class HttpApiProxyFactory {
         return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, handler);
     }
 
+    /**
+     * set the supplier of the endpoints that the requests are balanced among,
+     * it only affects the proxies created afterwards
+     *
+     * @param endpointSupplier the endpoint supplier
+     */
+    public void setEndpointSupplier(EndpointSupplier endpointSupplier) {
+        this.endpointSupplier = endpointSupplier;
+    }
+
+    /**
+     * set the recorder of the metrics of the calls, it only affects the proxies created afterwards
+     *
+     * @param metricsRecorder the metrics recorder, e.g. {@link com.github.dadiyang.httpinvoker.metrics.InMemoryMetricsRecorder}
+     */
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * register a MBean with the live statistics of each proxy created afterwards, they are unregistered by {@link #close()}
+     *
+     * @param jmxEnabled whether to register the MBeans
+     */
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    /**
+     * prepare the proxies created so far before they take traffic: build the plans of the methods, generate the json
+     * codecs of their parameter and return types, connect to each host and optionally replay each method against a stub
+     * <p>
+     * The requests to a host are HEAD requests to its root sent at the same time, which leave that many connections
+     * in the pool of a requestor keeping them alive. The synthetic calls are not sent to the hosts nor recorded.
+     *
+     * @param connectionsPerHost the concurrent requests to send to each host, 0 for none
+     * @param syntheticCalls     the calls of each method to replay against a stub requestor, 0 for none
+     */
+    public void warmUp(int connectionsPerHost, int syntheticCalls) {
+        if (connectionsPerHost < 0 || syntheticCalls < 0) {
+            throw new IllegalArgumentException("connectionsPerHost and syntheticCalls should not be negative");
+        }
+        List<HttpApiInvoker> invokers = new ArrayList<>(instances.size());
+        for (Object proxy : instances.values()) {
+            invokers.add((HttpApiInvoker) Proxy.getInvocationHandler(proxy));
+        }
+        WarmUp.warmUp(invokers, connectionsPerHost, syntheticCalls);
+    }
+
+    /**
+     * open a scope to call the proxies in parallel with no deadline
+     *
+     * @return the scope, which should be closed
+     * @see #parallel(long, TimeUnit)
+     */
+    public ParallelScope parallel() {
+        return parallel(0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * open a scope to call the proxies in parallel, the calls are deferred and then launched together by
+     * {@link ParallelScope#join()}, which waits for them until the deadline
+     *
+     * @param timeout the time the calls should complete in once launched, 0 for no deadline
+     * @param unit    the unit of the timeout
+     * @return the scope, which should be closed
+     * @throws IllegalStateException if the factory is closed
+     */
+    public ParallelScope parallel(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout should not be negative: " + timeout);
+        }
+        if (runtime.isClosed()) {
+            throw new IllegalStateException("the factory is closed");
+        }
+        return new ParallelScope(runtime.getExecutor(), unit.toNanos(timeout));
+    }
+
+    /**
+     * @return the runtime shared by the proxies of this factory
+     */
+    public HttpApiRuntime getRuntime() {
+        return runtime;
+    }
+
+    /**
+     * close the runtime of the proxies: reject the new calls, wait for the calls in flight, stop the executor and
+     * unregister the MBeans of the proxies
+     */
+    @Override
+    public void close() {
+        runtime.close();
+    }
+
     /**
      * dynamic proxy the given interface whose methods annotated with @HttpReq
      *
@@ -211,15 +318,28 @@ public class HttpApiProxyFactory {
      * @throws IllegalStateException thrown when the method without annotated with @HttpReq was invoke
      */
     public <T> T getProxy(Class<T> clazz) {
-        if (!instances.containsKey(clazz)) {
-            synchronized (HttpApiProxyFactory.class) {
-                if (!instances.containsKey(clazz)) {
-                    instances.put(clazz, newProxyInstance(requestor, propertyResolver,
-                            clazz, requestPreprocessor, responseProcessor));
-                }
-            }
+        Object proxy = instances.get(clazz);
+        if (proxy == null) {
+            proxy = instances.computeIfAbsent(clazz, this::createProxy);
         }
         //noinspection unchecked
-        return (T) instances.get(clazz);
+        return (T) proxy;
+    }
+
+    private Object createProxy(Class<?> clazz) {
+        if (runtime.isClosed()) {
+            throw new IllegalStateException("the factory is closed");
+        }
+        HttpApiInvoker handler = new HttpApiInvoker(requestor, propertyResolver, clazz, requestPreprocessor, responseProcessor);
+        handler.setEndpointSupplier(endpointSupplier);
+        handler.setRuntime(runtime);
+        if (jmxEnabled) {
+            InMemoryMetricsRecorder statistics = new InMemoryMetricsRecorder();
+            handler.setMetricsRecorder(CompositeMetricsRecorder.of(metricsRecorder, statistics));
+            runtime.getJmxRegistry().register(new HttpApiClient(clazz, handler, statistics));
+        } else {
+            handler.setMetricsRecorder(metricsRecorder);
+        }
+        return Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz}, handler);
     }
 }
@@ -0,0 +1,150 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.github.dadiyang.httpinvoker.jmx.JmxRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The resources shared by the proxies of a {@link HttpApiProxyFactory}: the executor running the hedged requests and
+ * the ranges of the downloads, the MBeans of the proxies and the count of the calls in flight.
+ * <p>
+ * Closing it rejects the new calls, waits for the calls in flight to complete for up to the drain timeout,
+ * then stops the executor and unregisters the MBeans.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class HttpApiRuntime implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(HttpApiRuntime.class);
+    private static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 30_000;
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private final ExecutorService executor;
+    private final JmxRegistry jmxRegistry = new JmxRegistry();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object drainLock = new Object();
+    private volatile long drainTimeoutMillis = DEFAULT_DRAIN_TIMEOUT_MILLIS;
+    private volatile boolean closed;
+
+    public HttpApiRuntime() {
+        int id = COUNTER.incrementAndGet();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "http-api-" + id + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the executor running the hedged requests and the ranges of the downloads
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return the executor of the proxies not created by a factory and of the requests sent without an executor,
+     * created once needed and never stopped
+     */
+    public static ExecutorService getDefaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    public JmxRegistry getJmxRegistry() {
+        return jmxRegistry;
+    }
+
+    /**
+     * @return the number of the calls which have started and not yet completed
+     */
+    public int getInFlightCalls() {
+        return inFlight.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * set the time {@link #close()} waits for the calls in flight, Default to 30 seconds
+     *
+     * @param drainTimeoutMillis the time to wait in milliseconds, 0 for not waiting
+     */
+    public void setDrainTimeoutMillis(long drainTimeoutMillis) {
+        if (drainTimeoutMillis < 0) {
+            throw new IllegalArgumentException("drainTimeoutMillis should not be negative: " + drainTimeoutMillis);
+        }
+        this.drainTimeoutMillis = drainTimeoutMillis;
+    }
+
+    /**
+     * count a call starting
+     *
+     * @throws IllegalStateException if the runtime is closed
+     */
+    void beginCall() {
+        inFlight.incrementAndGet();
+        if (closed) {
+            endCall();
+            throw new IllegalStateException("the http api runtime is closed");
+        }
+    }
+
+    /**
+     * count a call completing
+     */
+    void endCall() {
+        if (inFlight.decrementAndGet() == 0 && closed) {
+            synchronized (drainLock) {
+                drainLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * reject the new calls, wait for the calls in flight, then stop the executor and unregister the MBeans
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+        synchronized (drainLock) {
+            while (inFlight.get() > 0) {
+                long waitMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (waitMillis <= 0) {
+                    log.warn("closing the http api runtime with {} calls still in flight after {} ms",
+                            inFlight.get(), drainTimeoutMillis);
+                    break;
+                }
+                try {
+                    drainLock.wait(waitMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        // only the hedged requests which lost are left, they are interrupted
+        executor.shutdownNow();
+        jmxRegistry.unregisterAll();
+    }
+
+    private static class DefaultExecutorHolder {
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "http-api-default-" + COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
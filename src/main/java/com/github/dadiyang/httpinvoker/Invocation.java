@@ -0,0 +1,166 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.github.dadiyang.httpinvoker.balancer.Endpoint;
+import com.github.dadiyang.httpinvoker.balancer.LoadBalancer;
+import com.github.dadiyang.httpinvoker.metrics.AttemptRecord;
+import com.github.dadiyang.httpinvoker.metrics.CallRecord;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings;
+import com.github.dadiyang.httpinvoker.requestor.HttpRequest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The state of a single call of a proxied method.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+class Invocation {
+    private final MethodPlan plan;
+    private HttpRequest request;
+    private LoadBalancer loadBalancer;
+    private Endpoint endpoint;
+    private String routeKey;
+    /**
+     * the endpoints tried already by a call with route key
+     */
+    private List<Endpoint> tried;
+    private int attempts;
+    /**
+     * the metrics record of the call, null if no MetricsRecorder is set
+     */
+    private CallRecord record;
+    private final PhaseTimings timings = new PhaseTimings();
+    private final long startNanos = System.nanoTime();
+    private int hedges;
+    /**
+     * the records of the attempts, only kept for a method returning HttpResult
+     */
+    private final List<AttemptRecord> attemptRecords;
+    /**
+     * the temporary file a ranged download is written to, deleted if the call fails
+     */
+    private Path tempFile;
+
+    Invocation(MethodPlan plan) {
+        this.plan = plan;
+        this.attemptRecords = plan.getResultType() == null ? null : new ArrayList<>(2);
+    }
+
+    MethodPlan getPlan() {
+        return plan;
+    }
+
+    HttpRequest getRequest() {
+        return request;
+    }
+
+    void setRequest(HttpRequest request) {
+        this.request = request;
+    }
+
+    int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * count an attempt to send the request
+     */
+    void onAttempt() {
+        attempts++;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * count a hedged request
+     */
+    void onHedge() {
+        hedges++;
+    }
+
+    int getHedges() {
+        return hedges;
+    }
+
+    /**
+     * @return the records of the attempts, null if they are not kept
+     */
+    List<AttemptRecord> getAttemptRecords() {
+        return attemptRecords;
+    }
+
+    Path getTempFile() {
+        return tempFile;
+    }
+
+    void setTempFile(Path tempFile) {
+        this.tempFile = tempFile;
+    }
+
+    PhaseTimings getTimings() {
+        return timings;
+    }
+
+    CallRecord getRecord() {
+        return record;
+    }
+
+    void setRecord(CallRecord record) {
+        this.record = record;
+    }
+
+    LoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
+    Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    String getRouteKey() {
+        return routeKey;
+    }
+
+    void setRouteKey(String routeKey) {
+        this.routeKey = routeKey;
+    }
+
+    void route(LoadBalancer loadBalancer, Endpoint endpoint) {
+        this.loadBalancer = loadBalancer;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * route the request to another endpoint, e.g. before retrying a failed request
+     *
+     * @return true if the request is routed to another endpoint
+     */
+    boolean reroute() {
+        if (loadBalancer == null) {
+            return false;
+        }
+        Endpoint next;
+        if (routeKey != null) {
+            // fall back to the endpoint ranked next for the key
+            if (tried == null) {
+                tried = new ArrayList<>(4);
+            }
+            tried.add(endpoint);
+            next = loadBalancer.choose(routeKey, tried);
+        } else {
+            next = loadBalancer.choose(endpoint);
+        }
+        String url = request.getUrl();
+        if (next != endpoint && url.startsWith(endpoint.getUrl())) {
+            request.setUrl(next.getUrl() + url.substring(endpoint.getUrl().length()));
+            endpoint = next;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,389 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.github.dadiyang.httpinvoker.annotation.BodyLimit;
+import com.github.dadiyang.httpinvoker.annotation.Compress;
+import com.github.dadiyang.httpinvoker.annotation.Hedge;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Paginated;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.annotation.RangedDownload;
+import com.github.dadiyang.httpinvoker.annotation.RateLimit;
+import com.github.dadiyang.httpinvoker.annotation.RetryPolicy;
+import com.github.dadiyang.httpinvoker.annotation.RouteKey;
+import com.github.dadiyang.httpinvoker.annotation.Sink;
+import com.github.dadiyang.httpinvoker.hedge.HedgingSender;
+import com.github.dadiyang.httpinvoker.limiter.TokenBucketRateLimiter;
+import com.github.dadiyang.httpinvoker.propertyresolver.PropertyResolver;
+import com.github.dadiyang.httpinvoker.requestor.HttpResult;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+/**
+ * The annotations and runtime state of a proxied method, built once and then reused by every invocation.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+class MethodPlan {
+    private static final long DEFAULT_SPILL_BODY_BYTES = 8 * 1024 * 1024;
+    private static final List<String> IDEMPOTENT_METHODS = Arrays.asList("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE");
+    private final Method method;
+    private final HttpReq httpReq;
+    private final RetryPolicy retryPolicy;
+    private final HedgingSender hedgingSender;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final int routeKeyIndex;
+    private final int sinkIndex;
+    /**
+     * whether the response body is written to a sink or a file instead of being decoded
+     */
+    private final boolean streamingBody;
+    private final RangedDownload rangedDownload;
+    /**
+     * the minimum size of a request body to compress, -1 if the method does not compress
+     */
+    private final int compressMinBytes;
+    /**
+     * the maximum size of a response body to buffer and the size to spill it to a file above, -1 for no limit
+     */
+    private final long maxBodyBytes;
+    private final long spillBodyBytes;
+    /**
+     * the size of the recent response bodies, which grows at once with a larger body and shrinks slowly,
+     * updated without synchronization since it is only a hint of the buffer size
+     */
+    private volatile long bodySizeEstimate = -1;
+    private final String urlTemplate;
+    /**
+     * the T of a method returning HttpResult&lt;T&gt;, null if the method does not return HttpResult
+     */
+    private final Type resultType;
+    private final Paginated paginated;
+    /**
+     * the indexes of the page and the size parameters of a paginated method, -1 if there is none
+     */
+    private final int pageIndex;
+    private final int sizeIndex;
+    /**
+     * the T of a paginated method returning Stream&lt;T&gt; or Iterator&lt;T&gt;
+     */
+    private final Type itemType;
+
+    /**
+     * @param classRateLimiter the rate limiter shared by the methods of the interface, nullable
+     */
+    MethodPlan(Class<?> clazz, Method method, ExecutorService executor,
+               TokenBucketRateLimiter classRateLimiter, PropertyResolver propertyResolver) {
+        this.method = method;
+        this.httpReq = method.getAnnotation(HttpReq.class);
+        this.retryPolicy = getAnnotation(clazz, method, RetryPolicy.class);
+        Hedge hedge = getAnnotation(clazz, method, Hedge.class);
+        if (hedge != null && method.isAnnotationPresent(RangedDownload.class)) {
+            // the attempts would write the same file and progress sidecar
+            if (method.isAnnotationPresent(Hedge.class)) {
+                throw new IllegalArgumentException("Hedge annotation should not be annotated on a RangedDownload method: "
+                        + method);
+            }
+            // a Hedge annotated on the interface does not apply to it
+            hedge = null;
+        }
+        if (hedge != null) {
+            if (!IDEMPOTENT_METHODS.contains(httpReq.method().toUpperCase())) {
+                throw new IllegalArgumentException("Hedge annotation should only be annotated on idempotent method, but "
+                        + method + " is " + httpReq.method());
+            }
+            this.hedgingSender = new HedgingSender(hedge, executor);
+        } else {
+            this.hedgingSender = null;
+        }
+        if (method.isAnnotationPresent(RateLimit.class)) {
+            this.rateLimiter = TokenBucketRateLimiter.create(clazz.getName() + "." + method.getName(),
+                    method.getAnnotation(RateLimit.class), propertyResolver);
+        } else {
+            this.rateLimiter = classRateLimiter;
+        }
+        this.routeKeyIndex = indexOf(method, RouteKey.class);
+        this.sinkIndex = indexOf(method, Sink.class);
+        this.streamingBody = sinkIndex >= 0 || isFile(method.getReturnType());
+        if (sinkIndex >= 0) {
+            checkSink(method, method.getParameterTypes()[sinkIndex]);
+        }
+        this.rangedDownload = method.getAnnotation(RangedDownload.class);
+        if (rangedDownload != null) {
+            checkRangedDownload(method, httpReq, sinkIndex);
+        }
+        Compress compress = getAnnotation(clazz, method, Compress.class);
+        if (compress != null && compress.minBytes() < 0) {
+            throw new IllegalArgumentException("minBytes of Compress should not be negative: " + method);
+        }
+        this.compressMinBytes = compress == null ? -1 : compress.minBytes();
+        BodyLimit bodyLimit = getAnnotation(clazz, method, BodyLimit.class);
+        if (bodyLimit != null && (bodyLimit.maxBytes() < -1 || bodyLimit.spillBytes() < -1)) {
+            throw new IllegalArgumentException("maxBytes and spillBytes of BodyLimit should be -1 or non-negative: " + method);
+        }
+        this.maxBodyBytes = bodyLimit == null ? -1 : bodyLimit.maxBytes();
+        this.spillBodyBytes = bodyLimit == null ? DEFAULT_SPILL_BODY_BYTES : bodyLimit.spillBytes();
+        this.resultType = getResultType(method);
+        this.paginated = method.getAnnotation(Paginated.class);
+        if (paginated != null) {
+            checkPaginated(method, paginated);
+            this.pageIndex = indexOfParam(method, paginated.pageParam());
+            this.sizeIndex = paginated.sizeParam().isEmpty() ? -1 : indexOfParam(method, paginated.sizeParam());
+            Type type = method.getGenericReturnType();
+            this.itemType = type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments()[0] : Object.class;
+        } else {
+            this.pageIndex = -1;
+            this.sizeIndex = -1;
+            this.itemType = null;
+        }
+        HttpApi httpApi = clazz.getAnnotation(HttpApi.class);
+        if (httpApi != null && !httpReq.value().contains("://")) {
+            this.urlTemplate = ("".equals(httpApi.prefix()) ? httpApi.value() : httpApi.prefix()) + httpReq.value();
+        } else {
+            this.urlTemplate = httpReq.value();
+        }
+    }
+
+    private static Type getResultType(Method method) {
+        if (method.getReturnType() != HttpResult.class) {
+            return null;
+        }
+        Type type = method.getGenericReturnType();
+        if (type instanceof ParameterizedType) {
+            return ((ParameterizedType) type).getActualTypeArguments()[0];
+        }
+        // a raw HttpResult
+        return Object.class;
+    }
+
+    private static int indexOf(Method method, Class<? extends Annotation> type) {
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (type.isInstance(annotation)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the parameter annotated by @Param with the name
+     * @throws IllegalArgumentException if there is no such parameter
+     */
+    private static int indexOfParam(Method method, String name) {
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof Param && name.equals(((Param) annotation).value())) {
+                    return i;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Paginated annotation refers to the parameter " + name
+                + " which is not annotated by @Param in " + method);
+    }
+
+    private static boolean isFile(Class<?> type) {
+        return type == Path.class || type == File.class;
+    }
+
+    private static void checkSink(Method method, Class<?> sinkType) {
+        if (!OutputStream.class.isAssignableFrom(sinkType) && !WritableByteChannel.class.isAssignableFrom(sinkType)
+                && !isFile(sinkType)) {
+            throw new IllegalArgumentException("Sink annotation should only be annotated on parameter of OutputStream, "
+                    + "WritableByteChannel, Path or File type, but " + method + " has " + sinkType.getName());
+        }
+        Class<?> returnType = method.getReturnType();
+        boolean validReturn = returnType == void.class || returnType == Void.class
+                || returnType == long.class || returnType == Long.class
+                || (isFile(returnType) && isFile(sinkType));
+        if (!validReturn) {
+            throw new IllegalArgumentException("A method with a Sink parameter should return void, long, "
+                    + "or Path/File if the sink is a Path/File, but " + method + " returns " + returnType.getName());
+        }
+    }
+
+    private static void checkRangedDownload(Method method, HttpReq httpReq, int sinkIndex) {
+        if (!"GET".equalsIgnoreCase(httpReq.method())) {
+            throw new IllegalArgumentException("RangedDownload annotation should only be annotated on GET method, but "
+                    + method + " is " + httpReq.method());
+        }
+        boolean toFile = sinkIndex >= 0 ? isFile(method.getParameterTypes()[sinkIndex]) : isFile(method.getReturnType());
+        if (!toFile) {
+            throw new IllegalArgumentException("RangedDownload annotation should only be annotated on method "
+                    + "returning Path/File or having a Path/File Sink parameter, but " + method + " is not");
+        }
+        RangedDownload ann = method.getAnnotation(RangedDownload.class);
+        if (ann.segments() <= 0 || ann.minSegmentBytes() <= 0) {
+            throw new IllegalArgumentException("segments and minSegmentBytes of RangedDownload should be positive: " + method);
+        }
+    }
+
+    private static void checkPaginated(Method method, Paginated paginated) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType != Stream.class && returnType != Iterator.class) {
+            throw new IllegalArgumentException("Paginated annotation should only be annotated on method returning "
+                    + "Stream or Iterator, but " + method + " returns " + returnType.getName());
+        }
+        if (paginated.prefetch() <= 0) {
+            throw new IllegalArgumentException("prefetch of Paginated should be positive: " + method);
+        }
+    }
+
+    /**
+     * get the annotation of the method, or of the class if the method is not annotated
+     */
+    private static <A extends Annotation> A getAnnotation(Class<?> clazz, Method method, Class<A> type) {
+        if (method.isAnnotationPresent(type)) {
+            return method.getAnnotation(type);
+        }
+        return clazz.getAnnotation(type);
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    HttpReq getHttpReq() {
+        return httpReq;
+    }
+
+    /**
+     * @return the url of the method with the variables not filled
+     */
+    String getUrlTemplate() {
+        return urlTemplate;
+    }
+
+    /**
+     * @return the T of a method returning HttpResult&lt;T&gt;, null if the method does not return HttpResult
+     */
+    Type getResultType() {
+        return resultType;
+    }
+
+    /**
+     * @return the index of the @Sink parameter, -1 if there is none
+     */
+    int getSinkIndex() {
+        return sinkIndex;
+    }
+
+    /**
+     * @return the Paginated annotation of the method, null if the method is not annotated
+     */
+    Paginated getPaginated() {
+        return paginated;
+    }
+
+    /**
+     * @return the index of the parameter taking the page number or the cursor, -1 if the method is not paginated
+     */
+    int getPageIndex() {
+        return pageIndex;
+    }
+
+    /**
+     * @return the index of the parameter taking the page size, -1 if there is none
+     */
+    int getSizeIndex() {
+        return sizeIndex;
+    }
+
+    /**
+     * @return the type of the items of a paginated method, null if the method is not paginated
+     */
+    Type getItemType() {
+        return itemType;
+    }
+
+    /**
+     * @return whether the response body is written to a sink or a file instead of being decoded
+     */
+    boolean isStreamingBody() {
+        return streamingBody;
+    }
+
+    /**
+     * @return the RangedDownload annotation of the method, null if the method is not annotated
+     */
+    RangedDownload getRangedDownload() {
+        return rangedDownload;
+    }
+
+    /**
+     * @return the minimum size of a request body to compress, -1 if the method does not compress
+     */
+    int getCompressMinBytes() {
+        return compressMinBytes;
+    }
+
+    /**
+     * @return the maximum size of a response body to buffer in bytes, -1 for unlimited
+     */
+    long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    /**
+     * @return the size above which a response body is buffered in a temporary file, -1 to never spill
+     */
+    long getSpillBodyBytes() {
+        return spillBodyBytes;
+    }
+
+    /**
+     * @return the expected size of the next response body, -1 if no body has been received yet
+     */
+    long getBodySizeEstimate() {
+        return bodySizeEstimate;
+    }
+
+    /**
+     * @param size the size of a response body received in bytes, ignored if negative
+     */
+    void recordBodySize(long size) {
+        if (size < 0) {
+            return;
+        }
+        long estimate = bodySizeEstimate;
+        bodySizeEstimate = size >= estimate ? size : estimate - (estimate - size) / 8;
+    }
+
+    RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    HedgingSender getHedgingSender() {
+        return hedgingSender;
+    }
+
+    TokenBucketRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * @return the route key of the call, or null if the method has no @RouteKey parameter or the argument is null
+     */
+    String getRouteKey(Object[] args) {
+        if (routeKeyIndex < 0 || args[routeKeyIndex] == null) {
+            return null;
+        }
+        return args[routeKeyIndex].toString();
+    }
+}
@@ -0,0 +1,283 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.util.TypeUtils;
+import com.github.dadiyang.httpinvoker.annotation.Paginated;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The items of a {@link Paginated} method, fetched page by page in the background up to the prefetch pages ahead of
+ * the consumer.
+ * <p>
+ * The pages are fetched one after another, since the cursor of a page is only known from the previous one,
+ * and the next page is only fetched while fewer pages than the prefetch are waiting to be consumed,
+ * so that an iterator abandoned without being closed holds no thread.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+class Pagination<T> implements Iterator<T>, AutoCloseable {
+    private final MethodPlan plan;
+    private final Object[] args;
+    private final PageFetcher fetcher;
+    private final ExecutorService executor;
+    private final Paginated paginated;
+    private final Type pageType;
+    /**
+     * the pages fetched and not yet consumed, ending with the error of the page failed if any
+     */
+    private final Deque<Page<T>> ready = new ArrayDeque<>();
+    private Iterator<T> current = Collections.emptyIterator();
+    /**
+     * the page number or the cursor of the next page to fetch
+     */
+    private Object next;
+    private boolean fetching;
+    private boolean last;
+    private boolean closed;
+    private Future<?> task;
+
+    /**
+     * @param args     the arguments of the call, the one of the page parameter being the first page
+     * @param fetcher  fetching a page with the arguments
+     * @param executor the executor to fetch the pages on, nullable
+     */
+    Pagination(MethodPlan plan, Object[] args, PageFetcher fetcher, ExecutorService executor) {
+        this.plan = plan;
+        this.args = args.clone();
+        this.fetcher = fetcher;
+        this.executor = executor == null ? HttpApiRuntime.getDefaultExecutor() : executor;
+        this.paginated = plan.getPaginated();
+        this.pageType = plan.getMethod().getGenericParameterTypes()[plan.getPageIndex()];
+        this.next = args[plan.getPageIndex()];
+        if (next == null && paginated.cursorPath().isEmpty()) {
+            throw new IllegalArgumentException("the page argument of " + plan.getMethod() + " should not be null");
+        }
+    }
+
+    /**
+     * @return a sequential stream of the items, which cancels the pages being fetched when closed
+     */
+    Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            Page<T> page = take();
+            if (page == null) {
+                return false;
+            }
+            current = page.items.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * stop fetching and cancel the page being fetched
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        ready.clear();
+        if (task != null) {
+            task.cancel(true);
+            task = null;
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return the next page, or null if there are no more pages
+     */
+    private synchronized Page<T> take() {
+        fetchAhead();
+        while (ready.isEmpty() && fetching) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("interrupted while waiting for the next page"));
+            }
+        }
+        Page<T> page = ready.poll();
+        if (page == null) {
+            return null;
+        }
+        fetchAhead();
+        if (page.error != null) {
+            throw rethrow(page.error);
+        }
+        return page;
+    }
+
+    /**
+     * fetch the next page in the background if fewer pages than the prefetch are waiting, called with the lock held
+     */
+    private void fetchAhead() {
+        if (closed || last || fetching || ready.size() >= paginated.prefetch()) {
+            return;
+        }
+        fetching = true;
+        Object page = next;
+        try {
+            task = executor.submit(() -> fetch(page));
+        } catch (RejectedExecutionException e) {
+            fetching = false;
+            last = true;
+            ready.add(new Page<>(null, e));
+        }
+    }
+
+    private void fetch(Object page) {
+        Object[] pageArgs = args.clone();
+        pageArgs[plan.getPageIndex()] = page;
+        Page<T> result;
+        Object following = null;
+        try {
+            Object body = toJson(fetcher.fetch(pageArgs));
+            result = new Page<>(toItems(get(body, paginated.itemsPath())), null);
+            following = following(page, body, result.items);
+        } catch (Throwable e) {
+            result = new Page<>(null, e);
+        }
+        synchronized (this) {
+            fetching = false;
+            task = null;
+            if (closed) {
+                return;
+            }
+            if (following == null) {
+                last = true;
+            }
+            next = following;
+            if (result.error != null || !result.items.isEmpty()) {
+                ready.add(result);
+            }
+            notifyAll();
+            fetchAhead();
+        }
+    }
+
+    /**
+     * @return the page number or the cursor of the page following the page, null if the page is the last one
+     */
+    private Object following(Object page, Object body, List<T> items) {
+        if (items.isEmpty()) {
+            return null;
+        }
+        int sizeIndex = plan.getSizeIndex();
+        if (sizeIndex >= 0 && args[sizeIndex] instanceof Number && items.size() < ((Number) args[sizeIndex]).intValue()) {
+            return null;
+        }
+        Object following;
+        if (paginated.cursorPath().isEmpty()) {
+            following = ((Number) page).longValue() + 1;
+        } else {
+            following = get(body, paginated.cursorPath());
+            if (following == null || following.toString().isEmpty()) {
+                return null;
+            }
+        }
+        return TypeUtils.cast(following, pageType, ParserConfig.getGlobalInstance());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> toItems(Object items) {
+        if (items == null) {
+            return Collections.emptyList();
+        }
+        if (!(items instanceof Collection)) {
+            throw new IllegalStateException("the items of a page of " + plan.getMethod() + " is not an array: " + items);
+        }
+        List<T> list = new ArrayList<>(((Collection<?>) items).size());
+        for (Object item : (Collection<?>) items) {
+            list.add((T) TypeUtils.cast(item, plan.getItemType(), ParserConfig.getGlobalInstance()));
+        }
+        return list;
+    }
+
+    /**
+     * @param value the body of a page decoded as an Object, i.e. the body itself if it is a string
+     */
+    private static Object toJson(Object value) {
+        if (value instanceof String) {
+            String body = ((String) value).trim();
+            return body.isEmpty() ? null : JSON.parse(body);
+        }
+        return JSON.toJSON(value);
+    }
+
+    /**
+     * @return the value at the dot separated path, null if there is none
+     */
+    private static Object get(Object json, String path) {
+        if (path.isEmpty()) {
+            return json;
+        }
+        Object node = json;
+        for (String key : path.split("\\.")) {
+            if (!(node instanceof Map)) {
+                return null;
+            }
+            node = ((Map<?, ?>) node).get(key);
+        }
+        return node;
+    }
+
+    private static RuntimeException rethrow(Throwable error) {
+        if (error instanceof IOException) {
+            return new UncheckedIOException((IOException) error);
+        }
+        if (error instanceof RuntimeException) {
+            return (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        return new UndeclaredThrowableException(error);
+    }
+
+    /**
+     * fetching a page of a paginated method
+     */
+    interface PageFetcher {
+        /**
+         * @param args the arguments of the call with the page number or the cursor of the page
+         * @return the body of the page decoded as an Object
+         */
+        Object fetch(Object[] args) throws Throwable;
+    }
+
+    private static class Page<T> {
+        private final List<T> items;
+        private final Throwable error;
+
+        Page(List<T> items, Throwable error) {
+            this.items = items;
+            this.error = error;
+        }
+    }
+}
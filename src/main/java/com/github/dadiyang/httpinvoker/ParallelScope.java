@@ -0,0 +1,225 @@
+package com.github.dadiyang.httpinvoker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * A scope calling the proxies in parallel within a single deadline, created by {@link HttpApiProxyFactory#parallel}.
+ * <pre>
+ * try (ParallelScope scope = factory.parallel(500, TimeUnit.MILLISECONDS)) {
+ *     CompletableFuture&lt;City&gt; city = scope.call(() -&gt; cityService.getCity(id));
+ *     CompletableFuture&lt;List&lt;Weather&gt;&gt; weathers = scope.call(() -&gt; weatherService.list(id));
+ *     scope.join();
+ *     ...
+ * }
+ * </pre>
+ * The calls are deferred until {@link #join()} launches them together. Each future completes with the result or the
+ * error of its call, e.g. the IOException of a proxy method not declaring it, so that one failure does not fail the
+ * others. The calls not completed by the deadline are completed with a {@link TimeoutException} and interrupted,
+ * and the timeouts of their requests never exceed the deadline, so that they do not hold a thread for long.
+ * <p>
+ * The calls run on virtual threads on Java 21 and later, otherwise on the executor of the factory's runtime.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class ParallelScope implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ParallelScope.class);
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+    /**
+     * the deadline in System.nanoTime of the scope the current thread runs a call of
+     */
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+    private final ExecutorService executor;
+    /**
+     * whether the executor is created for this scope, which is shut down when closed
+     */
+    private final boolean ownExecutor;
+    /**
+     * the deadline in System.nanoTime, or 0 if the scope has no deadline
+     */
+    private final long deadlineNanos;
+    private final List<DeferredCall<?>> calls = new ArrayList<>();
+    private boolean launched;
+
+    /**
+     * @param executor     the executor to run the calls on if virtual threads are not available
+     * @param timeoutNanos the time the calls should complete in since {@link #join()} is called, 0 for no deadline
+     */
+    ParallelScope(ExecutorService executor, long timeoutNanos) {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.executor = virtual != null ? virtual : executor;
+        this.ownExecutor = virtual != null;
+        this.deadlineNanos = timeoutNanos;
+    }
+
+    private static Method findVirtualThreadExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            // before Java 21
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("virtual threads are not available: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @param timeoutMillis the timeout of a request, 0 or less for no timeout
+     * @return the timeout within the deadline of the scope the current thread runs a call of
+     */
+    static int capTimeout(int timeoutMillis) {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return timeoutMillis;
+        }
+        long remaining = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        // no timeout is the longest one, not the shortest
+        return (int) (timeoutMillis <= 0 ? Math.min(Integer.MAX_VALUE, remaining) : Math.min(timeoutMillis, remaining));
+    }
+
+    /**
+     * defer a call, which is launched by {@link #join()}
+     *
+     * @param call a call of a proxy, or any call to run in parallel with the others
+     * @param <T>  the type of the result
+     * @return the future of the result
+     * @throws IllegalStateException if the calls have been launched
+     */
+    public synchronized <T> CompletableFuture<T> call(Callable<T> call) {
+        if (launched) {
+            throw new IllegalStateException("the calls of the scope have been launched");
+        }
+        DeferredCall<T> deferred = new DeferredCall<>(call);
+        calls.add(deferred);
+        return deferred.result;
+    }
+
+    /**
+     * launch the calls together and wait until they complete or the deadline passes,
+     * the calls not completed by then are completed with a {@link TimeoutException} and interrupted
+     *
+     * @throws InterruptedException  if interrupted while waiting, the calls not completed are cancelled
+     * @throws IllegalStateException if the calls have been launched
+     */
+    public void join() throws InterruptedException {
+        List<DeferredCall<?>> launching;
+        synchronized (this) {
+            if (launched) {
+                throw new IllegalStateException("the calls of the scope have been launched");
+            }
+            launched = true;
+            launching = new ArrayList<>(calls);
+        }
+        long deadline = System.nanoTime() + deadlineNanos;
+        CompletableFuture<?>[] results = new CompletableFuture<?>[launching.size()];
+        for (int i = 0; i < results.length; i++) {
+            DeferredCall<?> call = launching.get(i);
+            results[i] = call.result;
+            try {
+                call.task = executor.submit(() -> call.run(deadlineNanos > 0 ? deadline : null));
+            } catch (RejectedExecutionException e) {
+                call.result.completeExceptionally(e);
+            }
+        }
+        try {
+            if (deadlineNanos > 0) {
+                CompletableFuture.allOf(results).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } else {
+                CompletableFuture.allOf(results).get();
+            }
+        } catch (ExecutionException e) {
+            // all completed, some of them failed
+        } catch (TimeoutException e) {
+            cancel(new TimeoutException("the deadline of the parallel calls passed"));
+        } catch (InterruptedException e) {
+            cancel(new CancellationException("interrupted while waiting for the parallel calls"));
+            throw e;
+        }
+    }
+
+    /**
+     * @return the errors of the calls failed, timed out or cancelled so far
+     */
+    public synchronized List<Throwable> getFailures() {
+        List<Throwable> failures = new ArrayList<>();
+        for (DeferredCall<?> call : calls) {
+            if (call.result.isCompletedExceptionally()) {
+                try {
+                    call.result.getNow(null);
+                } catch (CompletionException e) {
+                    failures.add(e.getCause());
+                } catch (CancellationException e) {
+                    failures.add(e);
+                }
+            }
+        }
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * cancel the calls not completed, including the ones never launched
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            launched = true;
+        }
+        cancel(new CancellationException("the parallel scope is closed"));
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private synchronized void cancel(Throwable reason) {
+        for (DeferredCall<?> call : calls) {
+            if (call.result.completeExceptionally(reason) && call.task != null) {
+                call.task.cancel(true);
+            }
+        }
+    }
+
+    private static class DeferredCall<T> {
+        private final Callable<T> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile Future<?> task;
+
+        DeferredCall(Callable<T> call) {
+            this.call = call;
+        }
+
+        void run(Long deadline) {
+            if (result.isDone()) {
+                return;
+            }
+            DEADLINE.set(deadline);
+            try {
+                result.complete(call.call());
+            } catch (UndeclaredThrowableException e) {
+                // e.g. an IOException thrown by a proxy method not declaring it
+                result.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                DEADLINE.remove();
+            }
+        }
+    }
+}
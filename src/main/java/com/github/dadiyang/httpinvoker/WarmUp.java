@@ -0,0 +1,312 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.serializer.SerializeConfig;
+import com.alibaba.fastjson.util.TypeUtils;
+import com.github.dadiyang.httpinvoker.requestor.BodyBuffer;
+import com.github.dadiyang.httpinvoker.requestor.HttpRequest;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.dadiyang.httpinvoker.util.ParamUtils.getRawType;
+
+/**
+ * Prepares the proxies of a {@link HttpApiProxyFactory} before they take traffic, so that the first calls do not pay
+ * for building the method plans, generating the json codecs, resolving the hosts and loading the classes.
+ * <p>
+ * The synthetic calls go through the whole invocation with a stub requestor answering the json of a synthetic
+ * return value, so that the hot path is compiled without sending anything. They run the RequestPreprocessor and the
+ * ResponseProcessor, but not the methods streaming the body or limited by a rate.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+class WarmUp {
+    private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int MAX_THREADS = 64;
+    /**
+     * how deep the synthetic values fill the elements of the collections
+     */
+    private static final int MAX_DEPTH = 3;
+    private static final String HEAD = "HEAD";
+    private static final String SCHEME_SEPARATOR = "://";
+
+    private WarmUp() {
+    }
+
+    /**
+     * @param invokers           the invocation handlers of the proxies
+     * @param connectionsPerHost the concurrent requests to send to each host
+     * @param syntheticCalls     the calls of each method to replay against a stub
+     */
+    static void warmUp(Collection<HttpApiInvoker> invokers, int connectionsPerHost, int syntheticCalls) {
+        long start = System.currentTimeMillis();
+        Map<String, Requestor> origins = new LinkedHashMap<>();
+        int methods = 0;
+        for (HttpApiInvoker invoker : invokers) {
+            List<MethodPlan> plans = invoker.buildPlans();
+            methods += plans.size();
+            for (MethodPlan plan : plans) {
+                prepareCodecs(plan);
+                if (syntheticCalls > 0) {
+                    replay(invoker, plan, syntheticCalls);
+                }
+            }
+            if (connectionsPerHost > 0) {
+                try {
+                    for (String url : invoker.getUrls()) {
+                        String origin = getOrigin(url);
+                        if (origin != null && !origins.containsKey(origin)) {
+                            origins.put(origin, invoker.getRequestor());
+                        }
+                    }
+                } catch (IllegalArgumentException e) {
+                    log.warn("skip connecting to the hosts of {} while warming up: {}", invoker.getInterface().getName(), e.getMessage());
+                }
+            }
+        }
+        connect(origins, connectionsPerHost);
+        log.info("warmed up {} methods of {} interfaces and {} hosts in {} ms", methods, invokers.size(),
+                origins.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * generate the serializers of the parameter types and the deserializer of the return type ahead,
+     * since fastjson generates them by ASM the first time a type is met
+     */
+    private static void prepareCodecs(MethodPlan plan) {
+        Method method = plan.getMethod();
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        for (Type type : method.getGenericParameterTypes()) {
+            collectClasses(type, classes);
+        }
+        for (Class<?> cls : classes) {
+            try {
+                SerializeConfig.getGlobalInstance().getObjectWriter(cls);
+            } catch (RuntimeException e) {
+                log.debug("failed to prepare the serializer of {}: {}", cls, e.toString());
+            }
+        }
+        if (plan.isStreamingBody()) {
+            return;
+        }
+        classes.clear();
+        collectClasses(plan.getResultType() != null ? plan.getResultType() : method.getGenericReturnType(), classes);
+        for (Class<?> cls : classes) {
+            try {
+                ParserConfig.getGlobalInstance().getDeserializer(cls);
+            } catch (RuntimeException e) {
+                log.debug("failed to prepare the deserializer of {}: {}", cls, e.toString());
+            }
+        }
+    }
+
+    /**
+     * collect the classes in the type which fastjson does not have a codec for at startup
+     */
+    private static void collectClasses(Type type, Set<Class<?>> classes) {
+        if (type instanceof ParameterizedType) {
+            collectClasses(((ParameterizedType) type).getRawType(), classes);
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                collectClasses(argument, classes);
+            }
+        } else if (type instanceof GenericArrayType) {
+            collectClasses(((GenericArrayType) type).getGenericComponentType(), classes);
+        } else if (type instanceof WildcardType) {
+            for (Type bound : ((WildcardType) type).getUpperBounds()) {
+                collectClasses(bound, classes);
+            }
+        } else if (type instanceof Class) {
+            Class<?> cls = (Class<?>) type;
+            if (cls.isArray()) {
+                collectClasses(cls.getComponentType(), classes);
+            } else if (!cls.isPrimitive() && !cls.getName().startsWith("java.") && !cls.getName().startsWith("javax.")
+                    && cls.getPackage() != HttpResponse.class.getPackage()) {
+                classes.add(cls);
+            }
+        }
+    }
+
+    private static void replay(HttpApiInvoker invoker, MethodPlan plan, int calls) {
+        if (plan.isStreamingBody() || plan.getRateLimiter() != null) {
+            return;
+        }
+        Method method = plan.getMethod();
+        Type returnType = plan.getResultType() != null ? plan.getResultType() : method.getGenericReturnType();
+        Object returnValue = syntheticValue(returnType, 0);
+        byte[] body = returnValue == null ? new byte[0] : JSON.toJSONBytes(returnValue);
+        HttpApiInvoker stub = invoker.withRequestor(request -> {
+            HttpResponse response = new HttpResponse(200, "OK", "application/json");
+            response.setCharset(StandardCharsets.UTF_8.name());
+            response.setBodyBuffer(BodyBuffer.read(new ByteArrayInputStream(body), body.length, request));
+            return response;
+        });
+        Type[] parameterTypes = method.getGenericParameterTypes();
+        Object[] args = new Object[parameterTypes.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = syntheticValue(parameterTypes[i], 0);
+        }
+        for (int i = 0; i < calls; i++) {
+            try {
+                stub.invoke(null, method, args.clone());
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                log.debug("stop replaying {} which failed with the synthetic arguments: {}", method, e.toString());
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return a value of the type with the default values and one element in each collection, null if it can not be created
+     */
+    static Object syntheticValue(Type type, int depth) {
+        Class<?> raw = getRawType(type);
+        if (raw == void.class || raw == Void.class) {
+            return null;
+        }
+        if (raw == boolean.class || raw == Boolean.class) {
+            return false;
+        }
+        if (raw == char.class || raw == Character.class) {
+            return '0';
+        }
+        if (raw.isPrimitive() || Number.class.isAssignableFrom(raw)) {
+            try {
+                return TypeUtils.cast(0, raw, ParserConfig.getGlobalInstance());
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        if (raw == Object.class || raw == String.class || raw == CharSequence.class) {
+            return "0";
+        }
+        if (raw.isEnum()) {
+            Object[] constants = raw.getEnumConstants();
+            return constants.length == 0 ? null : constants[0];
+        }
+        if (raw == Date.class) {
+            return new Date(0);
+        }
+        Type[] arguments = type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments() : new Type[0];
+        if (raw.isArray()) {
+            Class<?> componentType = raw.getComponentType();
+            Object element = depth < MAX_DEPTH ? syntheticValue(type instanceof GenericArrayType
+                    ? ((GenericArrayType) type).getGenericComponentType() : componentType, depth + 1) : null;
+            Object array = Array.newInstance(componentType, element == null ? 0 : 1);
+            if (element != null) {
+                Array.set(array, 0, element);
+            }
+            return array;
+        }
+        if (raw.isAssignableFrom(ArrayList.class) || raw.isAssignableFrom(HashSet.class)) {
+            Collection<Object> collection = raw.isAssignableFrom(ArrayList.class) ? new ArrayList<>() : new HashSet<>();
+            Object element = arguments.length == 1 && depth < MAX_DEPTH ? syntheticValue(arguments[0], depth + 1) : null;
+            if (element != null) {
+                collection.add(element);
+            }
+            return collection;
+        }
+        if (raw.isAssignableFrom(HashMap.class)) {
+            Map<Object, Object> map = new HashMap<>();
+            if (arguments.length == 2 && arguments[0] == String.class && depth < MAX_DEPTH) {
+                Object value = syntheticValue(arguments[1], depth + 1);
+                if (value != null) {
+                    map.put("0", value);
+                }
+            }
+            return map;
+        }
+        if (raw.isInterface() || Modifier.isAbstract(raw.getModifiers()) || raw.getName().startsWith("java.")) {
+            // e.g. a stream or a file, which the requests are not replayed with
+            return null;
+        }
+        try {
+            Constructor<?> constructor = raw.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the scheme, host and port of the url, null if it has no scheme
+     */
+    static String getOrigin(String url) {
+        int start = url.indexOf(SCHEME_SEPARATOR);
+        if (start < 0) {
+            return null;
+        }
+        int end = start + SCHEME_SEPARATOR.length();
+        while (end < url.length() && url.charAt(end) != '/' && url.charAt(end) != '?' && url.charAt(end) != '#') {
+            end++;
+        }
+        return url.substring(0, end);
+    }
+
+    /**
+     * send HEAD requests to each host concurrently, which resolves the hosts, loads the classes of the requestor,
+     * caches the TLS sessions and leaves the connections in the pool of a requestor keeping them alive
+     */
+    private static void connect(Map<String, Requestor> origins, int connectionsPerHost) {
+        if (origins.isEmpty() || connectionsPerHost <= 0) {
+            return;
+        }
+        int threads = (int) Math.min(MAX_THREADS, (long) origins.size() * connectionsPerHost);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "http-api-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<String, List<Future<?>>> futures = new LinkedHashMap<>();
+            for (Map.Entry<String, Requestor> entry : origins.entrySet()) {
+                String url = entry.getKey() + "/";
+                Requestor requestor = entry.getValue();
+                List<Future<?>> list = new ArrayList<>(connectionsPerHost);
+                for (int i = 0; i < connectionsPerHost; i++) {
+                    list.add(executor.submit(() -> {
+                        HttpResponse response = requestor.sendRequest(new HttpRequest(url, HEAD, CONNECT_TIMEOUT_MILLIS));
+                        if (response != null) {
+                            response.release();
+                        }
+                        return null;
+                    }));
+                }
+                futures.put(entry.getKey(), list);
+            }
+            for (Map.Entry<String, List<Future<?>>> entry : futures.entrySet()) {
+                Throwable error = null;
+                for (Future<?> future : entry.getValue()) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        error = e.getCause();
+                    }
+                }
+                if (error != null) {
+                    log.warn("failed to connect to {} while warming up: {}", entry.getKey(), error.toString());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.dadiyang.httpinvoker.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Limit the size of the response bodies buffered for decoding.
+ * <p>
+ * A body larger than {@link #maxBytes()} fails the call with an IOException as soon as it is known to be too large,
+ * instead of being read into memory. A body larger than {@link #spillBytes()} is read into a temporary file,
+ * which is memory-mapped for decoding and deleted afterwards, instead of into the heap.
+ * <p>
+ * Annotating an interface applies to all of its methods, the annotation on a method overrides the one on the interface.
+ * The methods without the annotation spill bodies larger than 8MB and do not limit their size.
+ * Bodies written to a {@link Sink} or a file are streamed and never limited.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface BodyLimit {
+    /**
+     * the maximum size of a response body, -1 for unlimited, Default to -1
+     *
+     * @return the maximum size in bytes
+     */
+    long maxBytes() default -1;
+
+    /**
+     * the size above which a response body is buffered in a temporary file, -1 to never spill, Default to 8MB
+     *
+     * @return the size in bytes
+     */
+    long spillBytes() default 8 * 1024 * 1024;
+}
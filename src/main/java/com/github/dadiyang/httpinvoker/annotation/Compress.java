@@ -0,0 +1,28 @@
+package com.github.dadiyang.httpinvoker.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Compress the json request body with gzip if it is at least {@link #minBytes()} bytes,
+ * and send it with {@code Content-Encoding: gzip}.
+ * <p>
+ * The upstream must accept gzip request bodies. Annotating an interface applies to all of its methods,
+ * the annotation on a method overrides the one on the interface.
+ * <p>
+ * Only {@link com.github.dadiyang.httpinvoker.requestor.DefaultHttpRequestor} compresses request bodies,
+ * other requestors send them as usual. Form and multipart bodies are never compressed.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Compress {
+    /**
+     * the minimum size of the body to compress, smaller bodies are sent as they are, Default to 1KB
+     *
+     * @return the minimum size in bytes
+     */
+    int minBytes() default 1024;
+}
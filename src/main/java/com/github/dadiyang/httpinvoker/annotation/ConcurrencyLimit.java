@@ -0,0 +1,70 @@
+package com.github.dadiyang.httpinvoker.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Limit the concurrent calls in flight of an http api interface, so that a slow upstream can not absorb all the threads.
+ * <p>
+ * The limit adapts to the measured latency: it grows by one while the latency stays close to the best observed one
+ * and shrinks multiplicatively when the latency rises or a call fails.
+ * <p>
+ * Calls exceeding the limit wait for at most {@link #maxWaitMillis} and then are rejected by a
+ * {@link com.github.dadiyang.httpinvoker.limiter.LimitExceededException}.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ConcurrencyLimit {
+    /**
+     * the limit before any latency is measured
+     * <p>
+     * Default to 20
+     *
+     * @return the initial limit
+     */
+    int initialLimit() default 20;
+
+    /**
+     * Default to 1
+     *
+     * @return the min limit
+     */
+    int minLimit() default 1;
+
+    /**
+     * Default to 200
+     *
+     * @return the max limit
+     */
+    int maxLimit() default 200;
+
+    /**
+     * max milliseconds a call waits when the limit is reached, reject immediately if it is 0
+     * <p>
+     * Default to 0
+     *
+     * @return max milliseconds to wait
+     */
+    long maxWaitMillis() default 0;
+
+    /**
+     * the limit shrinks when the latency is above this ratio of the best observed latency
+     * <p>
+     * Default to 2
+     *
+     * @return the tolerance ratio
+     */
+    double tolerance() default 2;
+
+    /**
+     * use a separate limiter for each host instead of one for the whole interface
+     * <p>
+     * Default to false
+     *
+     * @return if limit per host
+     */
+    boolean perHost() default false;
+}
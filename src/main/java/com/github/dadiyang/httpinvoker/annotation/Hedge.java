@@ -0,0 +1,49 @@
+package com.github.dadiyang.httpinvoker.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Send hedged requests for an idempotent method to cut tail latency.
+ * <p>
+ * If the first attempt has not answered after the observed {@link #delayPercentile} latency of the method,
+ * an identical request is sent. Whichever response arrives first wins and the others are cancelled.
+ * <p>
+ * Hedging only starts after enough calls have been observed, and the {@link #budgetPercent} caps
+ * the extra requests so that hedging can never multiply the upstream load.
+ * <p>
+ * Only idempotent request methods (GET, HEAD, OPTIONS, PUT, DELETE, TRACE) can be hedged.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Hedge {
+    /**
+     * the percentile of the observed latency to wait before sending a hedged request
+     * <p>
+     * Default to 95
+     *
+     * @return the percentile
+     */
+    double delayPercentile() default 95;
+
+    /**
+     * max hedged requests sent in addition to the first attempt
+     * <p>
+     * Default to 1
+     *
+     * @return max hedged requests
+     */
+    int maxHedges() default 1;
+
+    /**
+     * hedged requests allowed as a percentage of all the calls of the method
+     * <p>
+     * Default to 10
+     *
+     * @return the percentage
+     */
+    int budgetPercent() default 10;
+}
@@ -34,4 +34,45 @@ public @interface HttpApiScan {
      * @return the config file path
      */
     String[] configPaths() default "";
+
+    /**
+     * register a MBean with the live statistics of each http api interface, Default to false
+     *
+     * @return whether to register the MBeans
+     */
+    boolean jmxEnabled() default false;
+
+    /**
+     * find the interfaces in the {@link com.github.dadiyang.httpinvoker.index.HttpApiIndex} written at build time
+     * instead of scanning the classpath, Default to false.
+     * <p>
+     * The index is written by {@link com.github.dadiyang.httpinvoker.index.HttpApiIndexProcessor}, which has to be
+     * added to the annotation processors of the build of every jar with HttpApi interfaces under the base packages.
+     * A base package with no interface in the index is scanned anyway.
+     *
+     * @return whether to use the index
+     */
+    boolean useIndex() default false;
+
+    /**
+     * warm up the http api interfaces before the context finishes starting, see {@link com.github.dadiyang.httpinvoker.HttpApiProxyFactory#warmUp(int, int)}.
+     * Default to false
+     *
+     * @return whether to warm up the interfaces
+     */
+    boolean warmUp() default false;
+
+    /**
+     * the concurrent requests to send to each host while warming up, Default to 1
+     *
+     * @return the requests to send to each host
+     */
+    int warmUpConnections() default 1;
+
+    /**
+     * the calls of each method to replay against a stub while warming up, Default to 0
+     *
+     * @return the calls of each method
+     */
+    int warmUpCalls() default 0;
 }
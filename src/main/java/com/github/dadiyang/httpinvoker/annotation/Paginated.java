@@ -0,0 +1,59 @@
+package com.github.dadiyang.httpinvoker.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Fetch a paged list page by page for a method returning Stream&lt;T&gt; or Iterator&lt;T&gt;.
+ * <p>
+ * The argument of the {@link #pageParam()} parameter is the first page to fetch, the next pages are requested with the
+ * page number increased by one, or with the cursor found at {@link #cursorPath()} in the previous page.
+ * The pages are fetched lazily once the items are consumed, up to {@link #prefetch()} pages ahead in the background
+ * while the consumer processes the earlier ones. The last page is the one with no items, with fewer items than the
+ * argument of the {@link #sizeParam()} parameter, or with no next cursor.
+ * <p>
+ * Closing the Stream, or the Iterator which is also {@link AutoCloseable}, cancels the pages being fetched.
+ * An error of fetching a page is thrown to the consumer once the items before it are consumed,
+ * wrapped in an {@link java.io.UncheckedIOException} if it is an IOException.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Paginated {
+    /**
+     * the name of the {@link Param} taking the page number, or the cursor if {@link #cursorPath()} is set, Default to page
+     *
+     * @return the name of the page parameter
+     */
+    String pageParam() default "page";
+
+    /**
+     * the name of the {@link Param} taking the page size, a page with fewer items is the last one, Default to none
+     *
+     * @return the name of the size parameter
+     */
+    String sizeParam() default "";
+
+    /**
+     * the dot separated path of the items in a page, e.g. data.list, Default to the page itself being the items
+     *
+     * @return the path of the items
+     */
+    String itemsPath() default "";
+
+    /**
+     * the dot separated path of the next cursor in a page, e.g. data.next, Default to none for pages by number
+     *
+     * @return the path of the cursor
+     */
+    String cursorPath() default "";
+
+    /**
+     * the maximum number of pages fetched ahead of the consumer, Default to 2
+     *
+     * @return the number of pages
+     */
+    int prefetch() default 2;
+}
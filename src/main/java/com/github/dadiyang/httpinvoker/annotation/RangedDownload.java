@@ -0,0 +1,41 @@
+package com.github.dadiyang.httpinvoker.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Download the response body of a GET method returning Path/File, or having a Path/File {@link Sink} parameter,
+ * in several byte ranges in parallel.
+ * <p>
+ * The requestor probes the url with a HEAD request. If the server accepts byte ranges and the body is large enough,
+ * the ranges are fetched in parallel into the pre-allocated file, otherwise the body is downloaded in a single stream.
+ * The progress is kept in a sidecar file named after the target with a ".progress" suffix, so that calling again
+ * after an interrupted download resumes it instead of starting over, as long as the ETag or Last-Modified of the
+ * resource has not changed.
+ * <p>
+ * Only {@link com.github.dadiyang.httpinvoker.requestor.DefaultHttpRequestor} supports ranged downloads,
+ * other requestors download the body as usual.
+ * <p>
+ * A ranged download is never hedged, since the attempts would write the same file: a {@link Hedge} on the interface
+ * does not apply to it, and one on the method is rejected.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RangedDownload {
+    /**
+     * the number of ranges to fetch in parallel, Default to 4
+     *
+     * @return the number of ranges
+     */
+    int segments() default 4;
+
+    /**
+     * the minimum size of a range, a smaller body is fetched in fewer ranges, Default to 1MB
+     *
+     * @return the minimum size of a range in bytes
+     */
+    long minSegmentBytes() default 1024 * 1024;
+}
@@ -0,0 +1,70 @@
+package com.github.dadiyang.httpinvoker.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Limit the rate of requests sent to a partner api with quota.
+ * <p>
+ * It can be annotated to both class and method. The class's limit is shared by all of its methods,
+ * while a method annotated has a limit of its own.
+ * <p>
+ * The limits can be overridden by the properties, so that they can be tuned per environment:
+ * <ul>
+ * <li>{@code httpapi.ratelimit.[interface name].permitsPerSecond} and {@code httpapi.ratelimit.[interface name].burst} for class</li>
+ * <li>{@code httpapi.ratelimit.[interface name].[method name].permitsPerSecond} and {@code ....burst} for method</li>
+ * </ul>
+ * <p>
+ * A permit is taken for each request sent: a retry takes its own, and a {@link Hedge hedged} request is only sent
+ * if a permit is available at once. The exception is a {@link RangedDownload}, whose HEAD request and range requests
+ * are all sent under the single permit of the call.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface RateLimit {
+    /**
+     * @return requests allowed per second
+     */
+    double permitsPerSecond();
+
+    /**
+     * requests allowed to be sent at once after an idle period
+     * <p>
+     * Default to 1
+     *
+     * @return the burst size
+     */
+    int burst() default 1;
+
+    /**
+     * what to do when no permit is available
+     * <p>
+     * Default to WAIT
+     *
+     * @return the mode
+     */
+    Mode mode() default Mode.WAIT;
+
+    /**
+     * max milliseconds to wait for a permit in WAIT mode, the request is rejected if the wait would be longer
+     * <p>
+     * Default to 1000
+     *
+     * @return max milliseconds to wait
+     */
+    long maxWaitMillis() default 1000;
+
+    enum Mode {
+        /**
+         * wait for a permit for at most {@link #maxWaitMillis}
+         */
+        WAIT,
+        /**
+         * reject at once
+         */
+        REJECT
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.dadiyang.httpinvoker.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Indicates the parameter is the key to route the request by, so that the requests of the same key
+ * always go to the same endpoint and the cache of that endpoint stays hot.
+ * <p>
+ * The endpoint is chosen among the endpoints of the {@link HttpApi} by rendezvous hashing, so only the keys of a removed
+ * endpoint move when the endpoints change. If the chosen endpoint is ejected, refuses the connection or the request
+ * is retried, the endpoint ranked next for the key is used.
+ * <p>
+ * The parameter is only used for routing unless it is annotated by {@link Param} as well.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+@Documented
+public @interface RouteKey {
+}
@@ -0,0 +1,22 @@
+package com.github.dadiyang.httpinvoker.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Indicates the response body is written to the parameter instead of being decoded,
+ * so that a large download does not have to fit in memory.
+ * <p>
+ * The parameter should be an {@link java.io.OutputStream}, a {@link java.nio.channels.WritableByteChannel},
+ * a {@link java.nio.file.Path} or a {@link java.io.File}. Streams and channels are left open, files are created or
+ * truncated. The method may return void, the number of bytes written as long, or the Path/File written to.
+ * <p>
+ * A method returning Path or File without a sink parameter gets the body written to a temporary file.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+@Documented
+public @interface Sink {
+}
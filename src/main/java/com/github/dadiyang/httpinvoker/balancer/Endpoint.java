@@ -0,0 +1,123 @@
+package com.github.dadiyang.httpinvoker.balancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An upstream endpoint and its load statistics.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class Endpoint {
+    private static final double EWMA_ALPHA = 0.3;
+    private final String url;
+    private final long hash;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong ewmaNanos = new AtomicLong();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong samples = new AtomicLong();
+    private volatile long ejectedUntil;
+    private volatile int ejections;
+
+    public Endpoint(String url) {
+        this.url = url;
+        this.hash = LoadBalancer.hash(url);
+    }
+
+    void onStart() {
+        outstanding.incrementAndGet();
+    }
+
+    void onComplete(long nanos, boolean failed) {
+        outstanding.decrementAndGet();
+        samples.incrementAndGet();
+        if (failed) {
+            consecutiveFailures.incrementAndGet();
+        } else {
+            consecutiveFailures.set(0);
+        }
+        long current;
+        long next;
+        do {
+            current = ewmaNanos.get();
+            next = current == 0 ? nanos : (long) (current + (nanos - current) * EWMA_ALPHA);
+        } while (!ewmaNanos.compareAndSet(current, next));
+    }
+
+    /**
+     * the cost to send a request to this endpoint, the lower the better
+     */
+    double cost() {
+        return (double) ewmaNanos.get() * (outstanding.get() + 1);
+    }
+
+    boolean isEjected(long now) {
+        return ejectedUntil != 0 && now - ejectedUntil < 0;
+    }
+
+    void eject(long until) {
+        ejections++;
+        ejectedUntil = until;
+    }
+
+    /**
+     * bring the endpoint back after ejection, forget its history so that it will be probed again
+     */
+    void restore() {
+        ejectedUntil = 0;
+        consecutiveFailures.set(0);
+        ewmaNanos.set(0);
+        samples.set(0);
+    }
+
+    boolean isEjectionExpired(long now) {
+        return ejectedUntil != 0 && now - ejectedUntil >= 0;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    long getHash() {
+        return hash;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return the exponentially weighted moving average of the latency in nanoseconds
+     */
+    public long getEwmaNanos() {
+        return ewmaNanos.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public long getSamples() {
+        return samples.get();
+    }
+
+    public int getEjections() {
+        return ejections;
+    }
+
+    public boolean isEjected() {
+        return isEjected(System.nanoTime());
+    }
+
+    @Override
+    public String toString() {
+        return "Endpoint{" +
+                "url='" + url + '\'' +
+                ", outstanding=" + outstanding.get() +
+                ", ewmaNanos=" + ewmaNanos.get() +
+                ", consecutiveFailures=" + consecutiveFailures.get() +
+                ", ejected=" + isEjected() +
+                '}';
+    }
+}
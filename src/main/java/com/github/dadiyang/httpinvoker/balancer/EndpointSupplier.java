@@ -0,0 +1,27 @@
+package com.github.dadiyang.httpinvoker.balancer;
+
+import java.util.List;
+
+/**
+ * Supply the endpoints that the requests of an http api interface are balanced among.
+ * <p>
+ * By default, a config variable of the {@link com.github.dadiyang.httpinvoker.annotation.HttpApi} prefix whose value
+ * is a comma-separated list, such as {@code ${hosts}/city}, resolves to one endpoint per item,
+ * implement this interface to get the endpoints from elsewhere, e.g. a service registry.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public interface EndpointSupplier {
+    /**
+     * get the endpoints of the interface.
+     * <p>
+     * It is called on every request, so it should be cheap, e.g. return a cached list.
+     *
+     * @param apiClass the http api interface
+     * @param prefix   the resolved prefix of the interface
+     * @return the base urls of the endpoints, such as http://10.0.0.1:8080, which take the place of the scheme,
+     * host and port of the prefix. The prefix is used if it is empty
+     */
+    List<String> getEndpoints(Class<?> apiClass, String prefix);
+}
@@ -0,0 +1,267 @@
+package com.github.dadiyang.httpinvoker.balancer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balance requests among the endpoints of an http api interface using the power of two choices.
+ * <p>
+ * Two endpoints are picked randomly and the one with the lower cost, i.e. EWMA latency times outstanding requests,
+ * is chosen. Endpoints that keep failing or are much slower than the others are ejected for a while, longer
+ * each time they are ejected again, and then brought back. At most half of the endpoints can be ejected.
+ * <p>
+ * Requests with a route key are sent to the endpoint with the highest rendezvous hash score for the key instead,
+ * which gives stable per key affinity and only moves the keys of an endpoint when it is removed.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class LoadBalancer {
+    private static final Logger log = LoggerFactory.getLogger(LoadBalancer.class);
+    private static final int FAILURES_TO_EJECT = 5;
+    private static final double SLOW_RATIO = 5;
+    private static final long MIN_SAMPLES_TO_EJECT_SLOW = 20;
+    /**
+     * an endpoint is not considered slow unless it is at least this much slower than the best one,
+     * so that the noise of fast endpoints does not lead to ejection
+     */
+    private static final long MIN_SLOW_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long BASE_EJECTION_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long MAX_EJECTION_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final double MAX_EJECTION_RATIO = 0.5;
+    private final String name;
+    private volatile List<String> urls = Collections.emptyList();
+    private volatile Endpoint[] endpoints = new Endpoint[0];
+
+    public LoadBalancer(String name) {
+        this.name = name;
+    }
+
+    public LoadBalancer(String name, List<String> urls) {
+        this(name);
+        updateEndpoints(urls);
+    }
+
+    /**
+     * update the endpoints, the statistics of the endpoints still exist are kept
+     *
+     * @param urls the base urls of the endpoints
+     */
+    public void updateEndpoints(List<String> urls) {
+        if (urls.equals(this.urls)) {
+            return;
+        }
+        synchronized (this) {
+            if (urls.equals(this.urls)) {
+                return;
+            }
+            Map<String, Endpoint> existing = new HashMap<>();
+            for (Endpoint endpoint : endpoints) {
+                existing.put(endpoint.getUrl(), endpoint);
+            }
+            Endpoint[] updated = new Endpoint[urls.size()];
+            for (int i = 0; i < updated.length; i++) {
+                Endpoint endpoint = existing.get(urls.get(i));
+                updated[i] = endpoint != null ? endpoint : new Endpoint(urls.get(i));
+            }
+            this.endpoints = updated;
+            this.urls = new ArrayList<>(urls);
+        }
+    }
+
+    /**
+     * choose an endpoint to send a request
+     *
+     * @param exclude the endpoint not to choose unless there is no other one, e.g. the one just failed, nullable
+     * @return the endpoint
+     * @throws IllegalStateException if there is no endpoint
+     */
+    public Endpoint choose(Endpoint exclude) {
+        return chooseExcluding(exclude == null ? null : Collections.singletonList(exclude));
+    }
+
+    /**
+     * choose an endpoint to send a request
+     *
+     * @param excludes the endpoints not to choose unless there is no other one, e.g. those a hedged request
+     *                 is sent to already, nullable
+     * @return the endpoint
+     * @throws IllegalStateException if there is no endpoint
+     */
+    public Endpoint chooseExcluding(Collection<Endpoint> excludes) {
+        Endpoint[] all = endpoints;
+        int n = all.length;
+        if (n == 0) {
+            throw new IllegalStateException("no endpoint available for " + name);
+        }
+        if (n == 1) {
+            return all[0];
+        }
+        long now = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = pick(all, random.nextInt(n), excludes, now);
+        if (a < 0) {
+            // all the others are ejected
+            return excludes != null && !excludes.isEmpty() ? excludes.iterator().next() : all[random.nextInt(n)];
+        }
+        int b = pick(all, random.nextInt(n - 1) + a + 1, excludes, now);
+        if (b < 0 || b == a) {
+            return all[a];
+        }
+        return all[a].cost() <= all[b].cost() ? all[a] : all[b];
+    }
+
+    /**
+     * choose the endpoint with the highest rendezvous hash score for the key
+     *
+     * @param key      the route key
+     * @param excludes the endpoints not to choose unless there is no other one, e.g. those just failed, nullable
+     * @return the endpoint
+     * @throws IllegalStateException if there is no endpoint
+     */
+    public Endpoint choose(String key, Collection<Endpoint> excludes) {
+        Endpoint[] all = endpoints;
+        if (all.length == 0) {
+            throw new IllegalStateException("no endpoint available for " + name);
+        }
+        long keyHash = hash(key);
+        long now = System.nanoTime();
+        Endpoint best = null;
+        long bestScore = 0;
+        Endpoint fallback = null;
+        long fallbackScore = 0;
+        for (Endpoint endpoint : all) {
+            long score = score(keyHash, endpoint.getHash());
+            if (fallback == null || Long.compareUnsigned(score, fallbackScore) > 0) {
+                fallback = endpoint;
+                fallbackScore = score;
+            }
+            if (endpoint.isEjectionExpired(now)) {
+                endpoint.restore();
+            }
+            if (endpoint.isEjected(now) || (excludes != null && excludes.contains(endpoint))) {
+                continue;
+            }
+            if (best == null || Long.compareUnsigned(score, bestScore) > 0) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+        // every endpoint is ejected or excluded, use the one ranked first anyway
+        return best != null ? best : fallback;
+    }
+
+    /**
+     * record the start of a request
+     *
+     * @param endpoint the chosen endpoint
+     */
+    public void onStart(Endpoint endpoint) {
+        endpoint.onStart();
+    }
+
+    /**
+     * record the result of a request, eject the endpoint if it turns out to be an outlier
+     *
+     * @param endpoint the chosen endpoint
+     * @param nanos    the latency
+     * @param failed   whether the request failed
+     */
+    public void onComplete(Endpoint endpoint, long nanos, boolean failed) {
+        endpoint.onComplete(nanos, failed);
+        if (failed) {
+            if (endpoint.getConsecutiveFailures() >= FAILURES_TO_EJECT) {
+                eject(endpoint, "consecutive failures: " + endpoint.getConsecutiveFailures());
+            }
+        } else if (endpoint.getSamples() >= MIN_SAMPLES_TO_EJECT_SLOW && isSlow(endpoint)) {
+            eject(endpoint, "ewma latency: " + TimeUnit.NANOSECONDS.toMillis(endpoint.getEwmaNanos()) + " ms");
+        }
+    }
+
+    /**
+     * @return the endpoints and their statistics
+     */
+    public List<Endpoint> getEndpoints() {
+        return Collections.unmodifiableList(Arrays.asList(endpoints));
+    }
+
+    /**
+     * 64-bit FNV-1a hash
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * the rendezvous score of a key on an endpoint, mixed by the finalizer of MurmurHash3
+     */
+    static long score(long keyHash, long endpointHash) {
+        long h = keyHash ^ (endpointHash * 0x9e3779b97f4a7c15L);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private int pick(Endpoint[] all, int start, Collection<Endpoint> excludes, long now) {
+        int n = all.length;
+        for (int i = 0; i < n; i++) {
+            int index = (start + i) % n;
+            Endpoint endpoint = all[index];
+            if (endpoint.isEjectionExpired(now)) {
+                log.info("endpoint {} of {} is brought back", endpoint.getUrl(), name);
+                endpoint.restore();
+            }
+            if ((excludes == null || !excludes.contains(endpoint)) && !endpoint.isEjected(now)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isSlow(Endpoint endpoint) {
+        long now = System.nanoTime();
+        long best = Long.MAX_VALUE;
+        for (Endpoint other : endpoints) {
+            if (other != endpoint && !other.isEjected(now) && other.getSamples() >= MIN_SAMPLES_TO_EJECT_SLOW) {
+                best = Math.min(best, other.getEwmaNanos());
+            }
+        }
+        long ewma = endpoint.getEwmaNanos();
+        return best != Long.MAX_VALUE && ewma > best * SLOW_RATIO && ewma - best > MIN_SLOW_GAP_NANOS;
+    }
+
+    private synchronized void eject(Endpoint endpoint, String reason) {
+        long now = System.nanoTime();
+        if (endpoint.isEjected(now)) {
+            return;
+        }
+        Endpoint[] all = endpoints;
+        int ejected = 0;
+        for (Endpoint other : all) {
+            if (other.isEjected(now)) {
+                ejected++;
+            }
+        }
+        if (ejected + 1 > all.length * MAX_EJECTION_RATIO) {
+            log.warn("endpoint {} of {} is an outlier ({}), but too many endpoints are ejected already",
+                    endpoint.getUrl(), name, reason);
+            return;
+        }
+        long duration = Math.min(MAX_EJECTION_NANOS, BASE_EJECTION_NANOS * (endpoint.getEjections() + 1));
+        endpoint.eject(now + duration);
+        log.warn("eject endpoint {} of {} for {} s, {}", endpoint.getUrl(), name,
+                TimeUnit.NANOSECONDS.toSeconds(duration), reason);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.dadiyang.httpinvoker.hedge;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A budget which allows hedged requests only up to a percentage of all the calls.
+ * <p>
+ * Every call deposits {@code percent} units and every hedged request withdraws 100 units,
+ * the balance is capped so that a long quiet period can not be used for a burst of hedges.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class HedgeBudget {
+    private static final long HEDGE_COST = 100;
+    /**
+     * at most 10 hedged requests can be saved up
+     */
+    private static final long MAX_BALANCE = 10 * HEDGE_COST;
+    private final long deposit;
+    private final AtomicLong balance = new AtomicLong();
+
+    /**
+     * @param percent hedged requests allowed as a percentage of all the calls
+     */
+    public HedgeBudget(int percent) {
+        this.deposit = Math.max(0, Math.min(100, percent));
+    }
+
+    /**
+     * record a call
+     */
+    public void onCall() {
+        if (deposit <= 0) {
+            return;
+        }
+        long current;
+        do {
+            current = balance.get();
+            if (current >= MAX_BALANCE) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(MAX_BALANCE, current + deposit)));
+    }
+
+    /**
+     * try to withdraw a hedged request from the budget
+     *
+     * @return true if a hedged request is allowed
+     */
+    public boolean tryAcquire() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < HEDGE_COST) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - HEDGE_COST));
+        return true;
+    }
+}
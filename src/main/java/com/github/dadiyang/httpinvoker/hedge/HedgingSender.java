@@ -0,0 +1,328 @@
+package com.github.dadiyang.httpinvoker.hedge;
+
+import com.github.dadiyang.httpinvoker.HttpApiRuntime;
+import com.github.dadiyang.httpinvoker.annotation.Hedge;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings.Phase;
+import com.github.dadiyang.httpinvoker.requestor.HttpRequest;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import com.github.dadiyang.httpinvoker.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Send requests of a {@link Hedge}-annotated method.
+ * <p>
+ * The latency of the method is tracked in a sliding window, the first attempt is sent at once,
+ * and if it has not answered after the configured percentile of the observed latency,
+ * hedged requests are sent as long as the {@link HedgeBudget} allows.
+ * The first successful response wins and the other attempts are cancelled, their connections aborted if the requestor
+ * supports it and their responses discarded.
+ * <p>
+ * Each attempt sends its own copy of the request, so that only the transport timings and the sizes of the winner are
+ * kept in the request. The latency of the first attempt is recorded even if it loses, as the time it has taken until
+ * then, since recording only the winners would pull the percentile down and hedge more and more.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class HedgingSender {
+    private static final Logger log = LoggerFactory.getLogger(HedgingSender.class);
+    /**
+     * hedging starts after this number of calls are observed
+     */
+    private static final int MIN_SAMPLES = 20;
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+    /**
+     * how often the delay is computed again from the current window, while the previous one has too few samples
+     */
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final Hedge hedge;
+    private final ExecutorService executor;
+    private final HedgeBudget budget;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private volatile LatencyHistogram current = new LatencyHistogram();
+    /**
+     * the delay computed from the previous window when it slides, which does not change, 0 if it has too few samples
+     */
+    private volatile long previousDelay;
+    /**
+     * the delay last computed from the current window, and when
+     */
+    private volatile long currentDelay;
+    private final AtomicLong currentDelayAt = new AtomicLong(System.nanoTime());
+
+    public HedgingSender(Hedge hedge, ExecutorService executor) {
+        this.hedge = hedge;
+        this.executor = executor == null ? HttpApiRuntime.getDefaultExecutor() : executor;
+        this.budget = new HedgeBudget(hedge.budgetPercent());
+    }
+
+    /**
+     * send the request, hedging it if the first attempt is slower than usual
+     *
+     * @param requestor the requestor
+     * @param request   the request
+     * @return the first successful response
+     * @throws IOException the error of the last failed attempt if all attempts failed
+     */
+    public HttpResponse send(Requestor requestor, HttpRequest request) throws IOException {
+        return send(requestor, request, null);
+    }
+
+    /**
+     * send the request, hedging it if the first attempt is slower than usual
+     *
+     * @param requestor the requestor
+     * @param request   the request
+     * @param beforeHedge called on the calling thread before a hedged request is sent, which is skipped if it returns
+     *                    false, e.g. no permit of the rate limit is available, nullable
+     * @return the first successful response
+     * @throws IOException the error of the last failed attempt if all attempts failed
+     */
+    public HttpResponse send(Requestor requestor, HttpRequest request, BooleanSupplier beforeHedge) throws IOException {
+        budget.onCall();
+        long delay = hedgeDelayNanos();
+        if (delay <= 0 || hedge.maxHedges() <= 0) {
+            // not enough samples yet
+            long start = System.nanoTime();
+            HttpResponse response = requestor.sendRequest(request);
+            recordLatency(System.nanoTime() - start);
+            return response;
+        }
+        return sendHedged(requestor, request, delay, beforeHedge);
+    }
+
+    private HttpResponse sendHedged(Requestor requestor, HttpRequest request, long delay, BooleanSupplier beforeHedge) throws IOException {
+        Call call = new Call();
+        List<Attempt> attempts = new ArrayList<>(hedge.maxHedges() + 1);
+        attempts.add(submit(requestor, request, call, 0));
+        int pending = 1;
+        Exception lastError = null;
+        Attempt winner = null;
+        try {
+            while (pending > 0) {
+                boolean canHedge = attempts.size() <= hedge.maxHedges();
+                Attempt attempt = canHedge ? call.completed.poll(delay, TimeUnit.NANOSECONDS) : call.completed.take();
+                if (attempt == null) {
+                    // the attempts are slower than usual, hedge it if the budget allows
+                    if (budget.tryAcquire() && (beforeHedge == null || beforeHedge.getAsBoolean())) {
+                        log.debug("hedge request to {}, attempt: {}", request.getUrl(), attempts.size());
+                        attempts.add(submit(requestor, request, call, attempts.size()));
+                        pending++;
+                    } else {
+                        // no budget or permit left, just wait for the outstanding attempts
+                        attempts.add(null);
+                    }
+                    continue;
+                }
+                pending--;
+                if (attempt.error == null) {
+                    winner = attempt;
+                    break;
+                }
+                lastError = attempt.error;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for response of " + request.getUrl(), e);
+        } finally {
+            // the attempts completing from now on discard their responses themselves
+            for (Attempt loser : call.finish()) {
+                if (loser != winner) {
+                    discard(loser.response);
+                }
+            }
+            for (Attempt attempt : attempts) {
+                if (attempt != null && attempt != winner) {
+                    attempt.cancel();
+                }
+            }
+            Attempt first = attempts.get(0);
+            if (first.error == null) {
+                recordLatency(first.nanos >= 0 ? first.nanos : System.nanoTime() - first.start);
+            }
+        }
+        if (winner != null) {
+            winner.timings.adopt(request.getTimings());
+            request.setContentLength(winner.request.getContentLength());
+            request.setCompressedLength(winner.request.getCompressedLength());
+            return winner.response;
+        }
+        if (lastError instanceof IOException) {
+            throw (IOException) lastError;
+        }
+        if (lastError instanceof RuntimeException) {
+            throw (RuntimeException) lastError;
+        }
+        throw new IOException("send request error: " + request.getUrl(), lastError);
+    }
+
+    private Attempt submit(Requestor requestor, HttpRequest request, Call call, int index) {
+        HttpRequest copy = request.copy();
+        copy.setCancellable(true);
+        Attempt attempt = new Attempt(index, copy);
+        copy.setTimings(attempt.timings);
+        attempt.future = executor.submit(() -> {
+            try {
+                attempt.response = requestor.sendRequest(copy);
+            } catch (Exception e) {
+                attempt.error = e;
+            }
+            attempt.nanos = System.nanoTime() - attempt.start;
+            if (!call.offer(attempt)) {
+                // the loser, release its connection
+                discard(attempt.response);
+            }
+        });
+        return attempt;
+    }
+
+    private void discard(HttpResponse response) {
+        if (response == null) {
+            return;
+        }
+        try {
+            InputStream in = response.getBodyStream();
+            if (in != null) {
+                in.close();
+            }
+        } catch (Exception e) {
+            log.debug("discard hedged response error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the delay before sending a hedged request, or 0 if there are not enough samples
+     */
+    private long hedgeDelayNanos() {
+        long delay = previousDelay;
+        if (delay > 0) {
+            return delay;
+        }
+        // the first window, only counted until there are enough samples, then computed once in a while
+        delay = currentDelay;
+        long computedAt = currentDelayAt.get();
+        long now = System.nanoTime();
+        if ((delay <= 0 || now - computedAt >= REFRESH_NANOS) && currentDelayAt.compareAndSet(computedAt, now)) {
+            delay = delayOf(current);
+            currentDelay = delay;
+        }
+        return delay;
+    }
+
+    private long delayOf(LatencyHistogram histogram) {
+        return histogram.getCount() < MIN_SAMPLES ? 0 : histogram.getPercentile(hedge.delayPercentile());
+    }
+
+    private void recordLatency(long nanos) {
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start > WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            // slide the window
+            LatencyHistogram previous = current;
+            current = new LatencyHistogram();
+            previousDelay = delayOf(previous);
+        }
+        current.record(nanos);
+    }
+
+    /**
+     * the attempts of a call completed and not yet taken, handed over under the lock so that each attempt completing
+     * after the call is done is sure to be discarded either by the call or by itself
+     */
+    private static class Call {
+        private final BlockingQueue<Attempt> completed = new LinkedBlockingQueue<>();
+        private boolean done;
+
+        /**
+         * @return false if the call is done, the attempt should discard its response
+         */
+        synchronized boolean offer(Attempt attempt) {
+            if (done) {
+                return false;
+            }
+            completed.add(attempt);
+            return true;
+        }
+
+        /**
+         * @return the attempts completed and not taken by the call
+         */
+        synchronized List<Attempt> finish() {
+            done = true;
+            List<Attempt> left = new ArrayList<>(completed.size());
+            completed.drainTo(left);
+            return left;
+        }
+    }
+
+    private static class Attempt {
+        private final int index;
+        private final HttpRequest request;
+        private final AttemptTimings timings = new AttemptTimings();
+        private final long start = System.nanoTime();
+        private Future<?> future;
+        private volatile HttpResponse response;
+        private volatile Exception error;
+        private volatile long nanos = -1;
+
+        Attempt(int index, HttpRequest request) {
+            this.index = index;
+            this.request = request;
+        }
+
+        void cancel() {
+            request.cancel();
+            if (!future.isDone()) {
+                future.cancel(true);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Attempt{index=" + index + '}';
+        }
+    }
+
+    /**
+     * the transport timings of an attempt, kept apart from the call until the attempt wins,
+     * then recorded into the timings of the call as well, e.g. the time of reading the body lazily
+     */
+    private static class AttemptTimings extends PhaseTimings {
+        private volatile PhaseTimings target;
+
+        @Override
+        public void record(Phase phase, long nanos) {
+            super.record(phase, nanos);
+            PhaseTimings target = this.target;
+            if (target != null) {
+                target.record(phase, nanos);
+            }
+        }
+
+        /**
+         * @param target the timings of the call, nullable
+         */
+        void adopt(PhaseTimings target) {
+            if (target == null) {
+                return;
+            }
+            this.target = target;
+            for (Phase phase : Phase.values()) {
+                if (isAvailable(phase)) {
+                    target.record(phase, get(phase));
+                }
+            }
+        }
+    }
+}
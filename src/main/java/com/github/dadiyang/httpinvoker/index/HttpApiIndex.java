@@ -0,0 +1,72 @@
+package com.github.dadiyang.httpinvoker.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The index of the {@link com.github.dadiyang.httpinvoker.annotation.HttpApi} interfaces written at build time by
+ * {@link HttpApiIndexProcessor}, which lets the Spring integration find the interfaces without scanning the classpath.
+ * <p>
+ * The index lists the binary name of an interface per line. The indexes of all the jars are merged, so every jar
+ * with HttpApi interfaces in a package listed by the index should be compiled with the processor, otherwise set the
+ * system property {@value #IGNORE_PROPERTY} to true to scan the classpath as before.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class HttpApiIndex {
+    public static final String LOCATION = "META-INF/http-api.index";
+    public static final String IGNORE_PROPERTY = "http-api.index.ignore";
+
+    private HttpApiIndex() {
+    }
+
+    /**
+     * @param classLoader the class loader to find the indexes with
+     * @return the names of the interfaces in all the indexes, null if there is no index or it is ignored
+     * @throws IOException if reading an index failed
+     */
+    public static Set<String> load(ClassLoader classLoader) throws IOException {
+        if (Boolean.getBoolean(IGNORE_PROPERTY)) {
+            return null;
+        }
+        Enumeration<URL> urls = classLoader == null ? ClassLoader.getSystemResources(LOCATION) : classLoader.getResources(LOCATION);
+        if (!urls.hasMoreElements()) {
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        while (urls.hasMoreElements()) {
+            try (InputStream in = urls.nextElement().openStream()) {
+                read(in, names);
+            }
+        }
+        return names;
+    }
+
+    static void read(InputStream in, Set<String> names) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                names.add(line);
+            }
+        }
+    }
+
+    /**
+     * @return whether the class is in the package or one of its sub packages
+     */
+    public static boolean isInPackage(String className, String basePackage) {
+        return basePackage.isEmpty()
+                || (className.startsWith(basePackage) && className.length() > basePackage.length()
+                && className.charAt(basePackage.length()) == '.');
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.dadiyang.httpinvoker.index;
+
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An annotation processor writing the {@link HttpApiIndex} of the {@link HttpApi} interfaces compiled.
+ * <p>
+ * It is not registered as a service, so that a project only gets an index if it asks for one: add it to the annotation
+ * processors of the build, e.g. by {@code -processor com.github.dadiyang.httpinvoker.index.HttpApiIndexProcessor},
+ * and enable {@link com.github.dadiyang.httpinvoker.annotation.HttpApiScan#useIndex()}.
+ * An index left by an incremental build is merged, the interfaces removed since are skipped when it is read.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@SupportedAnnotationTypes("com.github.dadiyang.httpinvoker.annotation.HttpApi")
+public class HttpApiIndexProcessor extends AbstractProcessor {
+    private final Set<String> interfaces = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(HttpApi.class)) {
+            if (element.getKind() == ElementKind.INTERFACE) {
+                interfaces.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+            }
+        }
+        if (roundEnv.processingOver() && !interfaces.isEmpty()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        try {
+            try {
+                FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", HttpApiIndex.LOCATION);
+                try (InputStream in = existing.openInputStream()) {
+                    HttpApiIndex.read(in, interfaces);
+                }
+            } catch (IOException e) {
+                // no index yet
+            }
+            FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", HttpApiIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(index.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String name : interfaces) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "failed to write " + HttpApiIndex.LOCATION + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.dadiyang.httpinvoker.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Waiting for a permit of the rate limiter or the concurrency limiter before the request can go to the wire.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Name("com.github.dadiyang.httpinvoker.Acquire")
+@Label("HTTP API Acquire")
+@Category("HTTP API Invoker")
+@Description("Waiting for a permit of the rate limiter or the concurrency limiter")
+@StackTrace(false)
+public class AcquireEvent extends Event {
+    @Label("Interface")
+    String api;
+    @Label("Method")
+    String method;
+    @Label("Limiter")
+    String limiter;
+    @Label("Acquired")
+    boolean acquired;
+}
@@ -0,0 +1,29 @@
+package com.github.dadiyang.httpinvoker.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * An attempt of sending the request of a call, the attempts after the first one are retries.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Name("com.github.dadiyang.httpinvoker.Attempt")
+@Label("HTTP API Attempt")
+@Category("HTTP API Invoker")
+@Description("An attempt of sending the request, the attempts after the first one are retries")
+@StackTrace(false)
+public class AttemptEvent extends Event {
+    @Label("Interface")
+    String api;
+    @Label("Method")
+    String method;
+    @Label("Attempt")
+    int attempt;
+    @Label("URL")
+    String url;
+    @Label("Status Code")
+    int statusCode;
+    @Label("Error")
+    String error;
+}
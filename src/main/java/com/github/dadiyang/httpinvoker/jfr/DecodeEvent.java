@@ -0,0 +1,26 @@
+package com.github.dadiyang.httpinvoker.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Decoding the response to the return value by the ResponseProcessor.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Name("com.github.dadiyang.httpinvoker.Decode")
+@Label("HTTP API Decode")
+@Category("HTTP API Invoker")
+@Description("Decoding the response to the return value by the ResponseProcessor")
+@StackTrace(false)
+public class DecodeEvent extends Event {
+    @Label("Interface")
+    String api;
+    @Label("Method")
+    String method;
+    @Label("Return Type")
+    String returnType;
+    @Label("Response Bytes")
+    @DataAmount
+    long responseBytes;
+}
@@ -0,0 +1,37 @@
+package com.github.dadiyang.httpinvoker.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A call of a HttpApi interface method, from binding the arguments to decoding the result.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+@Name("com.github.dadiyang.httpinvoker.Invocation")
+@Label("HTTP API Invocation")
+@Category("HTTP API Invoker")
+@Description("A call of a HttpApi interface method, including retries and decoding")
+@StackTrace(false)
+public class InvocationEvent extends Event {
+    @Label("Interface")
+    String api;
+    @Label("Method")
+    String method;
+    @Label("URL Template")
+    String urlTemplate;
+    @Label("URL")
+    String url;
+    @Label("Status Code")
+    int statusCode;
+    @Label("Request Bytes")
+    @DataAmount
+    long requestBytes;
+    @Label("Response Bytes")
+    @DataAmount
+    long responseBytes;
+    @Label("Attempts")
+    int attempts;
+    @Label("Error")
+    String error;
+}
@@ -0,0 +1,126 @@
+package com.github.dadiyang.httpinvoker.jfr;
+
+import com.github.dadiyang.httpinvoker.metrics.CallRecord;
+
+import java.lang.reflect.Method;
+
+/**
+ * The implementation of {@link JfrTracer} using the jdk.jfr events, created reflectively by {@link JfrTracer#get()}.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+class JfrEventTracer extends JfrTracer {
+
+    @Override
+    public Object beginInvocation() {
+        InvocationEvent event = new InvocationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endInvocation(Object handle, CallRecord record, String urlTemplate) {
+        if (handle == null) {
+            return;
+        }
+        InvocationEvent event = (InvocationEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.api = record.getApiClass().getName();
+            event.method = record.getMethod().getName();
+            event.urlTemplate = urlTemplate;
+            event.url = record.getUrl();
+            event.statusCode = record.getStatusCode();
+            event.requestBytes = record.getRequestBytes();
+            event.responseBytes = record.getResponseBytes();
+            event.attempts = record.getAttempts();
+            event.error = record.getError() == null ? null : record.getError().toString();
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginAttempt() {
+        AttemptEvent event = new AttemptEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endAttempt(Object handle, Class<?> api, Method method, int attempt, String url,
+                           int statusCode, Throwable error) {
+        if (handle == null) {
+            return;
+        }
+        AttemptEvent event = (AttemptEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.api = api.getName();
+            event.method = method.getName();
+            event.attempt = attempt;
+            event.url = url;
+            event.statusCode = statusCode;
+            event.error = error == null ? null : error.toString();
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginDecode() {
+        DecodeEvent event = new DecodeEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endDecode(Object handle, Class<?> api, Method method, long responseBytes) {
+        if (handle == null) {
+            return;
+        }
+        DecodeEvent event = (DecodeEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.api = api.getName();
+            event.method = method.getName();
+            event.returnType = method.getGenericReturnType().getTypeName();
+            event.responseBytes = responseBytes;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginAcquire() {
+        AcquireEvent event = new AcquireEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endAcquire(Object handle, Class<?> api, Method method, String limiter, boolean acquired) {
+        if (handle == null) {
+            return;
+        }
+        AcquireEvent event = (AcquireEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.api = api.getName();
+            event.method = method.getName();
+            event.limiter = limiter;
+            event.acquired = acquired;
+            event.commit();
+        }
+    }
+}
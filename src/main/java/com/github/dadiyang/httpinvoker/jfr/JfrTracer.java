@@ -0,0 +1,90 @@
+package com.github.dadiyang.httpinvoker.jfr;
+
+import com.github.dadiyang.httpinvoker.metrics.CallRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+
+/**
+ * Emits Java Flight Recorder events for the calls, so that they can be correlated with GC and lock events.
+ * <p>
+ * Only the implementation refers to jdk.jfr, and it is loaded only if the running JVM has Flight Recorder,
+ * so the library still works on the JVMs without it. Every begin method returns null if the event is disabled
+ * and the matching end method does nothing then, so it costs nearly nothing when not recording.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public abstract class JfrTracer {
+    private static final Logger log = LoggerFactory.getLogger(JfrTracer.class);
+    private static final String JFR_EVENT = "jdk.jfr.Event";
+    private static final String IMPLEMENTATION = "com.github.dadiyang.httpinvoker.jfr.JfrEventTracer";
+    private static final JfrTracer INSTANCE = create();
+
+    /**
+     * @return the tracer, null if Flight Recorder is not available in the running JVM
+     */
+    public static JfrTracer get() {
+        return INSTANCE;
+    }
+
+    private static JfrTracer create() {
+        try {
+            Class.forName(JFR_EVENT);
+            return (JfrTracer) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (Throwable e) {
+            log.debug("Flight Recorder is not available: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the handle of the invocation event, null if it is disabled
+     */
+    public abstract Object beginInvocation();
+
+    /**
+     * @param event       the handle returned by {@link #beginInvocation()}, nullable
+     * @param record      the record of the call
+     * @param urlTemplate the url with the variables not filled
+     */
+    public abstract void endInvocation(Object event, CallRecord record, String urlTemplate);
+
+    /**
+     * @return the handle of the attempt event, null if it is disabled
+     */
+    public abstract Object beginAttempt();
+
+    /**
+     * @param event      the handle returned by {@link #beginAttempt()}, nullable
+     * @param attempt    the attempt number, starts from 1
+     * @param statusCode the status code of the response, 0 if no response
+     * @param error      the exception thrown by the attempt, nullable
+     */
+    public abstract void endAttempt(Object event, Class<?> api, Method method, int attempt, String url,
+                                    int statusCode, Throwable error);
+
+    /**
+     * @return the handle of the decode event, null if it is disabled
+     */
+    public abstract Object beginDecode();
+
+    /**
+     * @param event         the handle returned by {@link #beginDecode()}, nullable
+     * @param responseBytes the size of the response body, -1 if unknown
+     */
+    public abstract void endDecode(Object event, Class<?> api, Method method, long responseBytes);
+
+    /**
+     * @return the handle of the acquire event, null if it is disabled
+     */
+    public abstract Object beginAcquire();
+
+    /**
+     * @param event    the handle returned by {@link #beginAcquire()}, nullable
+     * @param limiter  the name of the limiter
+     * @param acquired whether the permit is acquired or rejected
+     */
+    public abstract void endAcquire(Object event, Class<?> api, Method method, String limiter, boolean acquired);
+}
@@ -0,0 +1,106 @@
+package com.github.dadiyang.httpinvoker.jmx;
+
+import com.github.dadiyang.httpinvoker.HttpApiInvoker;
+import com.github.dadiyang.httpinvoker.balancer.Endpoint;
+import com.github.dadiyang.httpinvoker.balancer.LoadBalancer;
+import com.github.dadiyang.httpinvoker.limiter.AdaptiveConcurrencyLimiter;
+import com.github.dadiyang.httpinvoker.metrics.InMemoryMetricsRecorder;
+import com.github.dadiyang.httpinvoker.metrics.MetricsSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The MBean of a HttpApi interface proxy, registered by {@link JmxRegistry}.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class HttpApiClient implements HttpApiClientMXBean {
+    private final Class<?> apiClass;
+    private final HttpApiInvoker invoker;
+    private final InMemoryMetricsRecorder recorder;
+
+    /**
+     * @param recorder the recorder which the invoker records the calls into
+     */
+    public HttpApiClient(Class<?> apiClass, HttpApiInvoker invoker, InMemoryMetricsRecorder recorder) {
+        this.apiClass = apiClass;
+        this.invoker = invoker;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public String getApiName() {
+        return apiClass.getName();
+    }
+
+    @Override
+    public long getCalls() {
+        long calls = 0;
+        for (MetricsSnapshot snapshot : recorder.getSnapshots()) {
+            calls += snapshot.getCalls();
+        }
+        return calls;
+    }
+
+    @Override
+    public long getErrors() {
+        long errors = 0;
+        for (MetricsSnapshot snapshot : recorder.getSnapshots()) {
+            errors += snapshot.getErrors();
+        }
+        return errors;
+    }
+
+    @Override
+    public long getInFlight() {
+        long inFlight = 0;
+        for (MetricsSnapshot snapshot : recorder.getSnapshots()) {
+            inFlight += snapshot.getInFlight();
+        }
+        return inFlight;
+    }
+
+    @Override
+    public long getRetries() {
+        long retries = 0;
+        for (MetricsSnapshot snapshot : recorder.getSnapshots()) {
+            retries += snapshot.getRetries();
+        }
+        return retries;
+    }
+
+    @Override
+    public List<MetricsSnapshot> getMethods() {
+        return recorder.getSnapshots();
+    }
+
+    @Override
+    public List<String> getEndpoints() {
+        LoadBalancer balancer = invoker.getLoadBalancer();
+        if (balancer == null) {
+            return Collections.emptyList();
+        }
+        List<String> endpoints = new ArrayList<>();
+        for (Endpoint endpoint : balancer.getEndpoints()) {
+            endpoints.add(endpoint.toString());
+        }
+        return endpoints;
+    }
+
+    @Override
+    public List<String> getConcurrencyLimiters() {
+        List<String> limiters = new ArrayList<>();
+        for (AdaptiveConcurrencyLimiter limiter : invoker.getConcurrencyLimiters().values()) {
+            limiters.add(limiter.toString());
+        }
+        return limiters;
+    }
+
+    @Override
+    public void resetStatistics() {
+        recorder.reset();
+    }
+}
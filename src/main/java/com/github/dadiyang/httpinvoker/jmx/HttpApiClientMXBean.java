@@ -0,0 +1,58 @@
+package com.github.dadiyang.httpinvoker.jmx;
+
+import com.github.dadiyang.httpinvoker.metrics.MetricsSnapshot;
+
+import java.util.List;
+
+/**
+ * The live statistics of a HttpApi interface proxy, latencies are in nanoseconds.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public interface HttpApiClientMXBean {
+    /**
+     * @return the full name of the interface
+     */
+    String getApiName();
+
+    /**
+     * @return the number of completed calls of all methods
+     */
+    long getCalls();
+
+    /**
+     * @return the number of calls of all methods completed exceptionally
+     */
+    long getErrors();
+
+    /**
+     * @return the number of calls of all methods in flight
+     */
+    long getInFlight();
+
+    /**
+     * @return the number of retries of all methods
+     */
+    long getRetries();
+
+    /**
+     * @return the statistics of each method called so far
+     */
+    List<MetricsSnapshot> getMethods();
+
+    /**
+     * @return the endpoints balanced among and their statistics, empty if the interface has only one endpoint
+     */
+    List<String> getEndpoints();
+
+    /**
+     * @return the concurrency limiters and their statistics, empty if the interface is not annotated by @ConcurrencyLimit
+     */
+    List<String> getConcurrencyLimiters();
+
+    /**
+     * clear the statistics of the methods
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,73 @@
+package com.github.dadiyang.httpinvoker.jmx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registers the MBeans of the proxies created by a factory to the platform MBeanServer,
+ * and unregisters them all when the factory is closed.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class JmxRegistry {
+    private static final Logger log = LoggerFactory.getLogger(JmxRegistry.class);
+    private static final String DOMAIN = "com.github.dadiyang.httpinvoker";
+    private final List<ObjectName> names = new ArrayList<>();
+
+    /**
+     * register the MBean of a proxy
+     *
+     * @param client the MBean
+     * @return the name registered as, null if it fails to register
+     */
+    public synchronized ObjectName register(HttpApiClient client) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            String base = DOMAIN + ":type=HttpApi,name=" + client.getApiName();
+            ObjectName name = new ObjectName(base);
+            // the same interface may be proxied by more than one factory
+            for (int i = 2; ; i++) {
+                try {
+                    server.registerMBean(client, name);
+                    break;
+                } catch (InstanceAlreadyExistsException e) {
+                    name = new ObjectName(base + ",id=" + i);
+                }
+            }
+            names.add(name);
+            return name;
+        } catch (Exception e) {
+            log.warn("register MBean of {} error: {}", client.getApiName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * unregister all the MBeans registered by this registry
+     */
+    public synchronized void unregisterAll() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : names) {
+            try {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                log.warn("unregister MBean {} error: {}", name, e.getMessage());
+            }
+        }
+        names.clear();
+    }
+
+    public synchronized List<ObjectName> getNames() {
+        return new ArrayList<>(names);
+    }
+}
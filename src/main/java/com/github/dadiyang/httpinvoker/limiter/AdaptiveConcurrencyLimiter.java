@@ -0,0 +1,206 @@
+package com.github.dadiyang.httpinvoker.limiter;
+
+import com.github.dadiyang.httpinvoker.annotation.ConcurrencyLimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrency limiter whose limit adapts to the measured latency using additive increase and multiplicative decrease.
+ * <p>
+ * While the latency stays within {@code tolerance} times of the best latency observed recently and the limit is
+ * actually used, the limit grows by one. When the latency rises above that or a call fails, the limit shrinks by 10%,
+ * at most once for the calls started before the previous decrease.
+ * <p>
+ * Acquiring is a CAS on the in-flight count, the lock is only taken by the calls which need to wait.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final long MIN_RTT_RESET_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long maxWaitNanos;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong minRtt = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong minRttResetAt = new AtomicLong(System.nanoTime());
+    private final AtomicLong lastDecreaseAt = new AtomicLong(System.nanoTime());
+    private final LongAdder rejected = new LongAdder();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    public AdaptiveConcurrencyLimiter(String name, ConcurrencyLimit config) {
+        this(name, config.initialLimit(), config.minLimit(), config.maxLimit(), config.tolerance(),
+                config.maxWaitMillis());
+    }
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                      double tolerance, long maxWaitMillis) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("illegal limit range: [" + minLimit + ", " + maxLimit + "]");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = Math.max(1, tolerance);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        this.limit = new AtomicInteger(Math.max(minLimit, Math.min(maxLimit, initialLimit)));
+    }
+
+    /**
+     * acquire a permit to send a call, waiting for at most the configured max wait time
+     *
+     * @return the start time of the call in nanoseconds, should be passed to {@link #release}
+     * @throws LimitExceededException if no permit is available in time
+     */
+    public long acquire() {
+        if (tryAcquire()) {
+            return System.nanoTime();
+        }
+        if (maxWaitNanos > 0 && awaitPermit()) {
+            return System.nanoTime();
+        }
+        rejected.increment();
+        throw new LimitExceededException("concurrency limit of " + name + " exceeded, limit: " + limit.get()
+                + ", inFlight: " + inFlight.get());
+    }
+
+    /**
+     * release a permit and adjust the limit according to the result of the call
+     *
+     * @param startNanos the value returned by {@link #acquire}
+     * @param failed     whether the call failed
+     */
+    public void release(long startNanos, boolean failed) {
+        long now = System.nanoTime();
+        int current = inFlight.getAndDecrement();
+        adjustLimit(startNanos, now, failed, current);
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private boolean awaitPermit() {
+        long remaining = maxWaitNanos;
+        waiting.incrementAndGet();
+        lock.lock();
+        try {
+            while (!tryAcquire()) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+            waiting.decrementAndGet();
+        }
+    }
+
+    private void adjustLimit(long startNanos, long now, boolean failed, int inFlightBeforeRelease) {
+        long rtt = now - startNanos;
+        long resetAt = minRttResetAt.get();
+        if (now - resetAt > MIN_RTT_RESET_NANOS && minRttResetAt.compareAndSet(resetAt, now)) {
+            // forget the old baseline so that the limiter follows a slower but healthy upstream
+            minRtt.set(rtt);
+        }
+        long min = updateMinRtt(rtt);
+        if (failed || rtt > min * tolerance) {
+            long last = lastDecreaseAt.get();
+            // calls started before the previous decrease have been accounted for already
+            if (startNanos > last && lastDecreaseAt.compareAndSet(last, now)) {
+                int current;
+                int next;
+                do {
+                    current = limit.get();
+                    next = Math.max(minLimit, Math.min(current - 1, (int) (current * BACKOFF_RATIO)));
+                } while (!limit.compareAndSet(current, next));
+            }
+        } else if (inFlightBeforeRelease * 2 >= limit.get()) {
+            // increase only when the limit is actually used
+            int current;
+            do {
+                current = limit.get();
+                if (current >= maxLimit) {
+                    return;
+                }
+            } while (!limit.compareAndSet(current, current + 1));
+        }
+    }
+
+    private long updateMinRtt(long rtt) {
+        long current;
+        do {
+            current = minRtt.get();
+            if (rtt >= current) {
+                return current;
+            }
+        } while (!minRtt.compareAndSet(current, rtt));
+        return rtt;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the current limit
+     */
+    public int getLimit() {
+        return limit.get();
+    }
+
+    /**
+     * @return the calls in flight
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of calls rejected
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveConcurrencyLimiter{" +
+                "name='" + name + '\'' +
+                ", limit=" + limit.get() +
+                ", inFlight=" + inFlight.get() +
+                ", rejected=" + rejected.sum() +
+                '}';
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.dadiyang.httpinvoker.limiter;
+
+/**
+ * Thrown when a call is rejected by a client side limiter before being sent.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class LimitExceededException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.dadiyang.httpinvoker.limiter;
+
+import com.github.dadiyang.httpinvoker.annotation.RateLimit;
+import com.github.dadiyang.httpinvoker.propertyresolver.PropertyResolver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free token bucket rate limiter.
+ * <p>
+ * The bucket is kept as the theoretical arrival time of the next request (GCRA) in a single {@link AtomicLong},
+ * so that taking a permit is one CAS and no lock is contended on the hot path.
+ * A request is allowed when it arrives no earlier than {@code burst - 1} intervals before that time.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class TokenBucketRateLimiter {
+    private static final String CONFIG_PREFIX = "httpapi.ratelimit.";
+    private static final String PERMITS_PER_SECOND = ".permitsPerSecond";
+    private static final String BURST = ".burst";
+    private final String name;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final RateLimit.Mode mode;
+    private final long maxWaitNanos;
+    private final AtomicLong nextFreeAt;
+    private final LongAdder rejected = new LongAdder();
+
+    public TokenBucketRateLimiter(String name, double permitsPerSecond, int burst, RateLimit.Mode mode, long maxWaitMillis) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("illegal rate limit of " + name + ", permitsPerSecond: "
+                    + permitsPerSecond + ", burst: " + burst);
+        }
+        this.name = name;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = intervalNanos * (burst - 1);
+        this.mode = mode;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        this.nextFreeAt = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    /**
+     * create a limiter by the annotation, with the limits overridden by the properties if exist
+     *
+     * @param configKey        the key of the properties, i.e. the interface name or the interface name with the method name
+     * @param rateLimit        the annotation
+     * @param propertyResolver the property resolver, nullable
+     * @return the limiter
+     */
+    public static TokenBucketRateLimiter create(String configKey, RateLimit rateLimit, PropertyResolver propertyResolver) {
+        double permitsPerSecond = rateLimit.permitsPerSecond();
+        int burst = rateLimit.burst();
+        if (propertyResolver != null) {
+            String key = CONFIG_PREFIX + configKey + PERMITS_PER_SECOND;
+            if (propertyResolver.containsProperty(key)) {
+                permitsPerSecond = Double.parseDouble(propertyResolver.getProperty(key).trim());
+            }
+            key = CONFIG_PREFIX + configKey + BURST;
+            if (propertyResolver.containsProperty(key)) {
+                burst = Integer.parseInt(propertyResolver.getProperty(key).trim());
+            }
+        }
+        return new TokenBucketRateLimiter(configKey, permitsPerSecond, burst, rateLimit.mode(), rateLimit.maxWaitMillis());
+    }
+
+    /**
+     * take a permit, waiting for it in WAIT mode
+     *
+     * @throws LimitExceededException if no permit is available in time
+     */
+    public void acquire() {
+        long waitNanos = reserve();
+        if (waitNanos < 0) {
+            rejected.increment();
+            throw new LimitExceededException("rate limit of " + name + " exceeded");
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LimitExceededException("interrupted while waiting for rate limit of " + name);
+            }
+        }
+    }
+
+    /**
+     * take a permit without waiting
+     *
+     * @return true if a permit is taken
+     */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        long current;
+        long next;
+        do {
+            current = nextFreeAt.get();
+            long start = Math.max(current, now - burstNanos);
+            if (start > now) {
+                return false;
+            }
+            next = start + intervalNanos;
+        } while (!nextFreeAt.compareAndSet(current, next));
+        return true;
+    }
+
+    /**
+     * reserve a permit
+     *
+     * @return nanoseconds to wait before the permit can be used, or -1 if it can not be reserved
+     */
+    private long reserve() {
+        long now = System.nanoTime();
+        long current;
+        long start;
+        do {
+            current = nextFreeAt.get();
+            start = Math.max(current, now - burstNanos);
+            long wait = start - now;
+            if (wait > 0 && (mode == RateLimit.Mode.REJECT || wait > maxWaitNanos)) {
+                return -1;
+            }
+        } while (!nextFreeAt.compareAndSet(current, start + intervalNanos));
+        return Math.max(0, start - now);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return requests allowed per second
+     */
+    public double getPermitsPerSecond() {
+        return (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+    }
+
+    /**
+     * @return the number of requests rejected
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+/**
+ * An immutable record of an attempt of sending the request of a call.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class AttemptRecord {
+    private final int attempt;
+    private final String url;
+    private final int statusCode;
+    private final long durationNanos;
+    private final Throwable error;
+
+    public AttemptRecord(int attempt, String url, int statusCode, long durationNanos, Throwable error) {
+        this.attempt = attempt;
+        this.url = url;
+        this.statusCode = statusCode;
+        this.durationNanos = durationNanos;
+        this.error = error;
+    }
+
+    /**
+     * @return the number of the attempt, starts from 1
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the status code of the response, 0 if no response is received
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the exception thrown by the attempt, null if a response is received
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "AttemptRecord{" +
+                "attempt=" + attempt +
+                ", url='" + url + '\'' +
+                ", statusCode=" + statusCode +
+                ", durationNanos=" + durationNanos +
+                (error == null ? "" : ", error=" + error) +
+                '}';
+    }
+}
@@ -0,0 +1,193 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * The record of a call of a HttpApi interface method, filled in by the invoker as the call goes on.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class CallRecord {
+    private final Class<?> apiClass;
+    private final Method method;
+    private final long startNanos;
+    private long durationNanos;
+    private String url;
+    private int statusCode;
+    private long requestBytes = -1;
+    private long responseBytes = -1;
+    private long requestCompressedBytes = -1;
+    private long responseCompressedBytes = -1;
+    private int attempts;
+    private Throwable error;
+    private PhaseTimings timings;
+    private List<String> serverTimings;
+
+    public CallRecord(Class<?> apiClass, Method method) {
+        this.apiClass = apiClass;
+        this.method = method;
+        this.startNanos = System.nanoTime();
+    }
+
+    public Class<?> getApiClass() {
+        return apiClass;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} when the call started
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return the duration of the whole call in nanoseconds, including retries and decoding
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * mark the call completed now
+     */
+    public void complete() {
+        this.durationNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return the url the last attempt was sent to, null if the call failed before sending
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    /**
+     * @return the status code of the last response, 0 if no response is received
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * @return the size of the request body of the last attempt in bytes, -1 if unknown
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public void setRequestBytes(long requestBytes) {
+        this.requestBytes = requestBytes;
+    }
+
+    /**
+     * @return the size of the response body in bytes, -1 if unknown
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public void setResponseBytes(long responseBytes) {
+        this.responseBytes = responseBytes;
+    }
+
+    /**
+     * @return the size of the compressed request body on the wire in bytes, -1 if it is not compressed
+     */
+    public long getRequestCompressedBytes() {
+        return requestCompressedBytes;
+    }
+
+    public void setRequestCompressedBytes(long requestCompressedBytes) {
+        this.requestCompressedBytes = requestCompressedBytes;
+    }
+
+    /**
+     * @return the size of the compressed response body on the wire in bytes, -1 if it is not compressed or unknown
+     */
+    public long getResponseCompressedBytes() {
+        return responseCompressedBytes;
+    }
+
+    public void setResponseCompressedBytes(long responseCompressedBytes) {
+        this.responseCompressedBytes = responseCompressedBytes;
+    }
+
+    /**
+     * @return the number of attempts sent, 0 if the call failed before sending
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return the number of retries of the call
+     */
+    public int getRetries() {
+        return Math.max(0, attempts - 1);
+    }
+
+    /**
+     * @return the exception thrown by the call, null if it succeeded
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public void setError(Throwable error) {
+        this.error = error;
+    }
+
+    /**
+     * @return the time spent in each phase of the call
+     */
+    public PhaseTimings getTimings() {
+        return timings;
+    }
+
+    public void setTimings(PhaseTimings timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * @return the raw values of the Server-Timing headers of the last response, null if there is none
+     */
+    public List<String> getServerTimings() {
+        return serverTimings;
+    }
+
+    public void setServerTimings(List<String> serverTimings) {
+        this.serverTimings = serverTimings;
+    }
+
+    /**
+     * parse the Server-Timing headers of the last response, nothing happens if there is none
+     *
+     * @param listener receives each metric reported by the server
+     */
+    public void forEachServerTiming(ServerTimingParser.Listener listener) {
+        if (serverTimings == null) {
+            return;
+        }
+        for (String header : serverTimings) {
+            ServerTimingParser.parse(header, listener);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+/**
+ * Attached to the exception thrown by a call as a suppressed exception to tell where the time went.
+ * <p>
+ * It carries no stack trace as it is only a message.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class CallTimingsException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final transient PhaseTimings timings;
+
+    public CallTimingsException(long durationNanos, PhaseTimings timings) {
+        super(String.format("call took %.3fms: %s", durationNanos / 1e6, timings), null, false, false);
+        this.timings = timings;
+    }
+
+    public PhaseTimings getTimings() {
+        return timings;
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+/**
+ * A {@link MetricsRecorder} recording the calls into several recorders.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class CompositeMetricsRecorder implements MetricsRecorder {
+    private final MetricsRecorder[] recorders;
+
+    public CompositeMetricsRecorder(MetricsRecorder... recorders) {
+        this.recorders = recorders.clone();
+    }
+
+    /**
+     * combine the recorders, ignoring the null ones
+     *
+     * @return the only non-null recorder, the composite of them, or null if all of them are null
+     */
+    public static MetricsRecorder of(MetricsRecorder first, MetricsRecorder second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        return new CompositeMetricsRecorder(first, second);
+    }
+
+    @Override
+    public void onStart(CallRecord record) {
+        for (MetricsRecorder recorder : recorders) {
+            recorder.onStart(record);
+        }
+    }
+
+    @Override
+    public void onComplete(CallRecord record) {
+        for (MetricsRecorder recorder : recorders) {
+            recorder.onComplete(record);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable record of how a call was executed, carried by {@link com.github.dadiyang.httpinvoker.requestor.HttpResult}.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class ExecutionRecord {
+    private final List<AttemptRecord> attempts;
+    private final long durationNanos;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final int hedges;
+    private final PhaseTimings timings;
+
+    public ExecutionRecord(List<AttemptRecord> attempts, long durationNanos, long requestBytes, long responseBytes,
+                           int hedges, PhaseTimings timings) {
+        this.attempts = Collections.unmodifiableList(new ArrayList<>(attempts));
+        this.durationNanos = durationNanos;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.hedges = hedges;
+        this.timings = new PhaseTimings(timings);
+    }
+
+    /**
+     * @return the attempts in order, the last one is the one succeeded
+     */
+    public List<AttemptRecord> getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return the number of the attempt succeeded, starts from 1
+     */
+    public int getSucceededAttempt() {
+        return attempts.size();
+    }
+
+    /**
+     * @return the duration of the call until the value is decoded in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the size of the request body in bytes, -1 if unknown
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * @return the size of the response body in bytes, -1 if unknown
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * @return the number of hedged requests sent besides the attempts
+     */
+    public int getHedges() {
+        return hedges;
+    }
+
+    public boolean isHedged() {
+        return hedges > 0;
+    }
+
+    /**
+     * @param phase the phase of the call
+     * @return the time spent in the phase in nanoseconds, -1 if it is unavailable
+     */
+    public long getPhaseNanos(PhaseTimings.Phase phase) {
+        return timings.get(phase);
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionRecord{" +
+                "attempts=" + attempts +
+                ", durationNanos=" + durationNanos +
+                ", requestBytes=" + requestBytes +
+                ", responseBytes=" + responseBytes +
+                ", hedges=" + hedges +
+                ", timings=" + timings +
+                '}';
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings.Phase;
+import com.github.dadiyang.httpinvoker.util.LatencyHistogram;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MetricsRecorder} keeping the metrics of every interface method in memory,
+ * which can be exported by {@link #getSnapshots()}.
+ * <p>
+ * The counters are striped {@link LongAdder}s and the latencies are recorded in {@link LatencyHistogram}s,
+ * so recording does not contend between threads.
+ * <p>
+ * The durations reported by the upstream in the Server-Timing header are kept per metric name next to the latency
+ * observed by the client, at most {@value #MAX_SERVER_TIMINGS} names per method.
+ * <p>
+ * The compression ratio of each direction is the size on the wire of the compressed bodies divided by their size
+ * before compression, counting only the calls whose body is compressed.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class InMemoryMetricsRecorder implements MetricsRecorder {
+    private static final Phase[] PHASES = Phase.values();
+    private static final int MAX_SERVER_TIMINGS = 32;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private final Map<Method, MethodMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public void onStart(CallRecord record) {
+        getMetrics(record).inFlight.increment();
+    }
+
+    @Override
+    public void onComplete(CallRecord record) {
+        MethodMetrics m = getMetrics(record);
+        m.inFlight.decrement();
+        m.calls.increment();
+        m.latency.record(record.getDurationNanos());
+        if (record.getError() != null) {
+            m.errors.increment();
+        }
+        m.retries.add(record.getRetries());
+        if (record.getRequestBytes() > 0) {
+            m.requestBytes.add(record.getRequestBytes());
+        }
+        if (record.getResponseBytes() > 0) {
+            m.responseBytes.add(record.getResponseBytes());
+        }
+        if (record.getRequestCompressedBytes() >= 0 && record.getRequestBytes() > 0) {
+            m.requestCompression[0].add(record.getRequestCompressedBytes());
+            m.requestCompression[1].add(record.getRequestBytes());
+        }
+        if (record.getResponseCompressedBytes() >= 0 && record.getResponseBytes() > 0) {
+            m.responseCompression[0].add(record.getResponseCompressedBytes());
+            m.responseCompression[1].add(record.getResponseBytes());
+        }
+        m.statusClasses[statusClassOf(record.getStatusCode())].increment();
+        PhaseTimings timings = record.getTimings();
+        if (timings != null) {
+            for (Phase phase : PHASES) {
+                if (timings.isAvailable(phase)) {
+                    m.phaseNanos[phase.ordinal()].add(timings.get(phase));
+                    m.phaseCounts[phase.ordinal()].increment();
+                }
+            }
+        }
+        if (record.getServerTimings() != null) {
+            record.forEachServerTiming(m);
+        }
+    }
+
+    /**
+     * @return the snapshots of the metrics of all methods called so far
+     */
+    public List<MetricsSnapshot> getSnapshots() {
+        List<MetricsSnapshot> snapshots = new ArrayList<>(metrics.size());
+        for (MethodMetrics m : metrics.values()) {
+            snapshots.add(m.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * @param method the interface method
+     * @return the snapshot of the metrics of the method, null if it has not been called
+     */
+    public MetricsSnapshot getSnapshot(Method method) {
+        MethodMetrics m = metrics.get(method);
+        return m == null ? null : m.snapshot();
+    }
+
+    /**
+     * clear all the metrics
+     */
+    public void reset() {
+        metrics.clear();
+    }
+
+    private MethodMetrics getMetrics(CallRecord record) {
+        MethodMetrics m = metrics.get(record.getMethod());
+        if (m == null) {
+            m = metrics.computeIfAbsent(record.getMethod(), k -> new MethodMetrics(record.getApiClass(), k));
+        }
+        return m;
+    }
+
+    /**
+     * @return 1 to 5 for 1xx to 5xx, 0 for no response or unknown status codes
+     */
+    static int statusClassOf(int statusCode) {
+        int statusClass = statusCode / 100;
+        return statusClass >= 1 && statusClass <= 5 ? statusClass : 0;
+    }
+
+    private static class MethodMetrics implements ServerTimingParser.Listener {
+        private final String apiName;
+        private final String methodName;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        /**
+         * the compressed and the original sizes of the compressed bodies
+         */
+        private final LongAdder[] requestCompression = {new LongAdder(), new LongAdder()};
+        private final LongAdder[] responseCompression = {new LongAdder(), new LongAdder()};
+        private final LongAdder[] statusClasses = new LongAdder[6];
+        private final LongAdder[] phaseNanos = new LongAdder[PHASES.length];
+        private final LongAdder[] phaseCounts = new LongAdder[PHASES.length];
+        private final Map<String, LongAdder[]> serverTimings = new ConcurrentHashMap<>();
+
+        MethodMetrics(Class<?> apiClass, Method method) {
+            this.apiName = apiClass.getName();
+            this.methodName = method.getName();
+            for (int i = 0; i < statusClasses.length; i++) {
+                statusClasses[i] = new LongAdder();
+            }
+            for (int i = 0; i < PHASES.length; i++) {
+                phaseNanos[i] = new LongAdder();
+                phaseCounts[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        public void onMetric(String name, double durationMillis) {
+            if (durationMillis < 0) {
+                return;
+            }
+            LongAdder[] sumAndCount = serverTimings.get(name);
+            if (sumAndCount == null) {
+                if (serverTimings.size() >= MAX_SERVER_TIMINGS) {
+                    // do not let a misbehaving upstream grow the map without bound
+                    return;
+                }
+                sumAndCount = serverTimings.computeIfAbsent(name, k -> new LongAdder[]{new LongAdder(), new LongAdder()});
+            }
+            sumAndCount[0].add((long) (durationMillis * NANOS_PER_MILLI));
+            sumAndCount[1].increment();
+        }
+
+        MetricsSnapshot snapshot() {
+            long[] statusCounts = new long[statusClasses.length];
+            for (int i = 0; i < statusCounts.length; i++) {
+                statusCounts[i] = statusClasses[i].sum();
+            }
+            long[] phaseMeans = new long[PHASES.length];
+            for (int i = 0; i < phaseMeans.length; i++) {
+                long count = phaseCounts[i].sum();
+                phaseMeans[i] = count == 0 ? -1 : phaseNanos[i].sum() / count;
+            }
+            Map<String, Long> serverTimingMeans = new TreeMap<>();
+            for (Map.Entry<String, LongAdder[]> entry : serverTimings.entrySet()) {
+                long count = entry.getValue()[1].sum();
+                if (count > 0) {
+                    serverTimingMeans.put(entry.getKey(), entry.getValue()[0].sum() / count);
+                }
+            }
+            long[] percentiles = latency.getPercentiles(50, 99, 99.9);
+            return new MetricsSnapshot(apiName, methodName, calls.sum(), errors.sum(), inFlight.sum(), retries.sum(),
+                    requestBytes.sum(), responseBytes.sum(), statusCounts, latency.getMean(),
+                    percentiles[0], percentiles[1], percentiles[2], phaseMeans, serverTimingMeans,
+                    ratioOf(requestCompression), ratioOf(responseCompression));
+        }
+
+        private static double ratioOf(LongAdder[] compression) {
+            long original = compression[1].sum();
+            return original == 0 ? -1 : (double) compression[0].sum() / original;
+        }
+    }
+}
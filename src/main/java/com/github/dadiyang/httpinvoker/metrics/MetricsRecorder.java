@@ -0,0 +1,26 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+/**
+ * SPI to record the metrics of the calls of the HttpApi interfaces.
+ * <p>
+ * Both methods are called on the calling thread of every call, so the implementations should be cheap and must not block.
+ *
+ * @author dadiyang
+ * @see InMemoryMetricsRecorder
+ * @since 1.2.0
+ */
+public interface MetricsRecorder {
+    /**
+     * called before the call starts
+     *
+     * @param record the record of the call, only the interface and method are set
+     */
+    void onStart(CallRecord record);
+
+    /**
+     * called after the call completes, either normally or exceptionally
+     *
+     * @param record the record of the call
+     */
+    void onComplete(CallRecord record);
+}
@@ -0,0 +1,190 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the metrics of an interface method, latencies are in nanoseconds.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class MetricsSnapshot {
+    private final String apiName;
+    private final String methodName;
+    private final long calls;
+    private final long errors;
+    private final long inFlight;
+    private final long retries;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final long[] statusCounts;
+    private final long mean;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long[] phaseMeans;
+    private final Map<String, Long> serverTimingMeans;
+    private final double requestCompressionRatio;
+    private final double responseCompressionRatio;
+
+    public MetricsSnapshot(String apiName, String methodName, long calls, long errors, long inFlight, long retries,
+                           long requestBytes, long responseBytes, long[] statusCounts,
+                           long mean, long p50, long p99, long p999, long[] phaseMeans) {
+        this(apiName, methodName, calls, errors, inFlight, retries, requestBytes, responseBytes, statusCounts,
+                mean, p50, p99, p999, phaseMeans, Collections.<String, Long>emptyMap());
+    }
+
+    public MetricsSnapshot(String apiName, String methodName, long calls, long errors, long inFlight, long retries,
+                           long requestBytes, long responseBytes, long[] statusCounts,
+                           long mean, long p50, long p99, long p999, long[] phaseMeans,
+                           Map<String, Long> serverTimingMeans) {
+        this(apiName, methodName, calls, errors, inFlight, retries, requestBytes, responseBytes, statusCounts,
+                mean, p50, p99, p999, phaseMeans, serverTimingMeans, -1, -1);
+    }
+
+    public MetricsSnapshot(String apiName, String methodName, long calls, long errors, long inFlight, long retries,
+                           long requestBytes, long responseBytes, long[] statusCounts,
+                           long mean, long p50, long p99, long p999, long[] phaseMeans,
+                           Map<String, Long> serverTimingMeans, double requestCompressionRatio,
+                           double responseCompressionRatio) {
+        this.apiName = apiName;
+        this.methodName = methodName;
+        this.calls = calls;
+        this.errors = errors;
+        this.inFlight = inFlight;
+        this.retries = retries;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.statusCounts = statusCounts.clone();
+        this.mean = mean;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.phaseMeans = phaseMeans.clone();
+        this.serverTimingMeans = Collections.unmodifiableMap(new LinkedHashMap<>(serverTimingMeans));
+        this.requestCompressionRatio = requestCompressionRatio;
+        this.responseCompressionRatio = responseCompressionRatio;
+    }
+
+    /**
+     * @return the full name of the interface
+     */
+    public String getApiName() {
+        return apiName;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * @return the number of completed calls
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return the number of calls completed exceptionally
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the number of calls in flight when the snapshot was taken
+     */
+    public long getInFlight() {
+        return inFlight;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * @param statusClass 1 to 5 for 1xx to 5xx, 0 for the calls without response
+     * @return the number of calls whose last response is in the status class
+     */
+    public long getStatusCount(int statusClass) {
+        return statusClass >= 0 && statusClass < statusCounts.length ? statusCounts[statusClass] : 0;
+    }
+
+    public long getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    /**
+     * @param phase the phase of the calls
+     * @return the mean time spent in the phase in nanoseconds, -1 if it is unavailable
+     */
+    public long getPhaseMean(PhaseTimings.Phase phase) {
+        return phaseMeans[phase.ordinal()];
+    }
+
+    /**
+     * @return the mean durations in nanoseconds reported by the upstream in the Server-Timing header, by metric name
+     */
+    public Map<String, Long> getServerTimingMeans() {
+        return serverTimingMeans;
+    }
+
+    /**
+     * @return the size of the compressed request bodies divided by their original size, -1 if none is compressed
+     */
+    public double getRequestCompressionRatio() {
+        return requestCompressionRatio;
+    }
+
+    /**
+     * @return the size of the compressed response bodies divided by their decompressed size, -1 if none is compressed
+     */
+    public double getResponseCompressionRatio() {
+        return responseCompressionRatio;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{" +
+                "api=" + apiName + "." + methodName +
+                ", calls=" + calls +
+                ", errors=" + errors +
+                ", inFlight=" + inFlight +
+                ", retries=" + retries +
+                ", requestBytes=" + requestBytes +
+                ", responseBytes=" + responseBytes +
+                ", 2xx=" + getStatusCount(2) +
+                ", 4xx=" + getStatusCount(4) +
+                ", 5xx=" + getStatusCount(5) +
+                ", mean=" + mean +
+                ", p50=" + p50 +
+                ", p99=" + p99 +
+                ", p999=" + p999 +
+                (serverTimingMeans.isEmpty() ? "" : ", serverTimingMeans=" + serverTimingMeans) +
+                (requestCompressionRatio < 0 ? "" : ", requestCompressionRatio=" + requestCompressionRatio) +
+                (responseCompressionRatio < 0 ? "" : ", responseCompressionRatio=" + responseCompressionRatio) +
+                '}';
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The nanoseconds a call spent in each phase, so that the client overhead can be told apart from the upstream latency.
+ * <p>
+ * The phases measured by the transport are only available if the requestor supports them,
+ * e.g. connect is not exposed by Jsoup.
+ * When a request is hedged, the transport phases are those of the attempt which wins.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class PhaseTimings {
+    private static final Phase[] PHASES = Phase.values();
+    private final long[] nanos = new long[PHASES.length];
+
+    public PhaseTimings() {
+        Arrays.fill(nanos, -1);
+    }
+
+    /**
+     * copy the timings recorded so far
+     *
+     * @param other the timings to copy
+     */
+    public PhaseTimings(PhaseTimings other) {
+        System.arraycopy(other.nanos, 0, nanos, 0, nanos.length);
+    }
+
+    /**
+     * record the time spent in the phase, replacing the one recorded before
+     *
+     * @param phase the phase
+     * @param nanos the time spent in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        this.nanos[phase.ordinal()] = Math.max(0, nanos);
+    }
+
+    /**
+     * @param phase the phase
+     * @return the time spent in the phase in nanoseconds, -1 if it is unavailable
+     */
+    public long get(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public boolean isAvailable(Phase phase) {
+        return nanos[phase.ordinal()] >= 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(PHASES.length * 16);
+        for (Phase phase : PHASES) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(phase.name().toLowerCase(Locale.ROOT)).append('=');
+            long value = nanos[phase.ordinal()];
+            if (value < 0) {
+                sb.append("n/a");
+            } else {
+                sb.append(String.format(Locale.ROOT, "%.3fms", value / 1e6));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * the phases of a call in order
+     */
+    public enum Phase {
+        /**
+         * filling the config variables and choosing the endpoint
+         */
+        RESOLVE,
+        /**
+         * binding the arguments to the request
+         */
+        BIND,
+        /**
+         * running the RequestPreprocessor
+         */
+        PREPROCESS,
+        /**
+         * sending the request until the requestor returns the response, including waiting for limiters and retries
+         */
+        SEND,
+        /**
+         * opening the connection, including resolving the host and the TLS handshake, measured by the transport
+         * sending requests with HttpURLConnection directly, i.e. uploads, compressed bodies and ranged downloads
+         */
+        CONNECT,
+        /**
+         * from sending the request to receiving the response headers, measured by the transport
+         */
+        TTFB,
+        /**
+         * reading the full response body, measured by the transport
+         */
+        BODY,
+        /**
+         * decoding the response body by the ResponseProcessor, not including reading the body
+         */
+        DECODE
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+/**
+ * Parses the Server-Timing response header, e.g. {@code db;dur=53.2;desc="query", cache;dur=2.1},
+ * in a single pass without regular expressions or splitting.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public final class ServerTimingParser {
+    private static final String DUR = "dur";
+
+    private ServerTimingParser() {
+    }
+
+    /**
+     * parse a Server-Timing header value
+     *
+     * @param header   the header value, may contain several metrics separated by comma
+     * @param listener receives each metric with its duration in milliseconds, -1 if the metric has no duration
+     */
+    public static void parse(String header, Listener listener) {
+        int len = header.length();
+        int i = 0;
+        while (i < len) {
+            i = skipWhitespace(header, i);
+            int nameStart = i;
+            while (i < len && header.charAt(i) != ';' && header.charAt(i) != ',') {
+                i++;
+            }
+            String name = header.substring(nameStart, trimEnd(header, nameStart, i));
+            double duration = -1;
+            // the parameters
+            while (i < len && header.charAt(i) == ';') {
+                i = skipWhitespace(header, i + 1);
+                int keyStart = i;
+                while (i < len && header.charAt(i) != '=' && header.charAt(i) != ';' && header.charAt(i) != ',') {
+                    i++;
+                }
+                int keyEnd = trimEnd(header, keyStart, i);
+                if (i >= len || header.charAt(i) != '=') {
+                    continue;
+                }
+                i = skipWhitespace(header, i + 1);
+                int valueStart;
+                int valueEnd;
+                if (i < len && header.charAt(i) == '"') {
+                    valueStart = ++i;
+                    while (i < len && header.charAt(i) != '"') {
+                        if (header.charAt(i) == '\\') {
+                            i++;
+                        }
+                        i++;
+                    }
+                    valueEnd = Math.min(i, len);
+                    // skip the closing quote and anything up to the next delimiter
+                    while (i < len && header.charAt(i) != ';' && header.charAt(i) != ',') {
+                        i++;
+                    }
+                } else {
+                    valueStart = i;
+                    while (i < len && header.charAt(i) != ';' && header.charAt(i) != ',') {
+                        i++;
+                    }
+                    valueEnd = trimEnd(header, valueStart, i);
+                }
+                if (keyEnd - keyStart == DUR.length() && header.regionMatches(true, keyStart, DUR, 0, DUR.length())) {
+                    duration = parseDuration(header, valueStart, valueEnd);
+                }
+            }
+            if (!name.isEmpty()) {
+                listener.onMetric(name, duration);
+            }
+            // skip the comma
+            i++;
+        }
+    }
+
+    private static double parseDuration(String header, int start, int end) {
+        try {
+            return Double.parseDouble(header.substring(start, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int skipWhitespace(String str, int i) {
+        while (i < str.length() && Character.isWhitespace(str.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(String str, int start, int end) {
+        while (end > start && Character.isWhitespace(str.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * receives the metrics parsed
+     */
+    public interface Listener {
+        /**
+         * @param name           the name of the metric
+         * @param durationMillis the duration in milliseconds, -1 if the metric has no duration
+         */
+        void onMetric(String name, double durationMillis);
+    }
+}
@@ -0,0 +1,360 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A response body read completely, either into chunks taken from a pool, or into a temporary file
+ * which is memory-mapped once the body is read.
+ * <p>
+ * The first chunk is sized after the Content-Length of the response, or after the size of the bodies the method
+ * received before, so that most bodies fit into a single array and can be decoded where they are.
+ * A body larger than the spill size of the request is moved into the temporary file, which is deleted as soon as
+ * it is mapped where the file system allows it, and a body larger than the maximum size fails with an IOException.
+ * <p>
+ * {@link #release()} gives the chunks back to the pool. This class is not thread-safe.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class BodyBuffer {
+    /**
+     * the largest array the VM can allocate safely
+     */
+    private static final long MAX_LENGTH = Integer.MAX_VALUE - 8;
+    private static final int TRANSFER_SIZE = 64 * 1024;
+    private final long maxBytes;
+    private final long spillBytes;
+    private final List<byte[]> chunks = new ArrayList<>(2);
+    /**
+     * the number of bytes in the last chunk
+     */
+    private int lastFill;
+    private long length;
+    private Path file;
+    private MappedByteBuffer mapped;
+    private boolean spilled;
+    /**
+     * the body as a single array once it is asked for, which may be a chunk handed over to the caller
+     */
+    private byte[] bytes;
+    private boolean released;
+
+    private BodyBuffer(long maxBytes, long spillBytes) {
+        this.maxBytes = maxBytes;
+        this.spillBytes = spillBytes;
+    }
+
+    /**
+     * read the stream to the end, which is left open, e.g. by a custom requestor buffering the bodies in the pooled chunks
+     *
+     * @param in            the body
+     * @param contentLength the size of the body, -1 if unknown
+     * @param request       the request whose body limits apply, nullable
+     * @return the body read
+     * @throws IOException if reading failed or the body is larger than the maximum size of the request
+     */
+    public static BodyBuffer read(InputStream in, long contentLength, HttpRequest request) throws IOException {
+        long maxBytes = request == null ? -1 : request.getMaxBodyBytes();
+        long spillBytes = request == null ? -1 : request.getSpillBodyBytes();
+        if (maxBytes >= 0 && contentLength > maxBytes) {
+            throw tooLarge(maxBytes);
+        }
+        long expected = contentLength >= 0 || request == null ? contentLength : request.getExpectedBodyBytes();
+        BodyBuffer buffer = new BodyBuffer(maxBytes, spillBytes);
+        try {
+            if (in == null) {
+                return buffer;
+            }
+            if (spillBytes >= 0 && expected > spillBytes) {
+                buffer.spill(in);
+            } else {
+                buffer.readIntoChunks(in, contentLength, expected);
+            }
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+        return buffer;
+    }
+
+    private void readIntoChunks(InputStream in, long contentLength, long expected) throws IOException {
+        byte[] chunk;
+        if (contentLength > BufferPool.MAX_SIZE && contentLength <= MAX_LENGTH) {
+            // a large body of a known size is read into an array of its size, which is not pooled
+            chunk = new byte[(int) contentLength];
+        } else {
+            chunk = BufferPool.acquire(BufferPool.sizeFor(expected));
+        }
+        chunks.add(chunk);
+        int fill = 0;
+        for (; ; ) {
+            int n;
+            if (fill < chunk.length) {
+                n = in.read(chunk, fill, chunk.length - fill);
+                if (n < 0) {
+                    break;
+                }
+                fill += n;
+            } else {
+                // look for the end before taking another chunk
+                int b = in.read();
+                if (b < 0) {
+                    break;
+                }
+                chunk = BufferPool.acquire((int) Math.min(chunk.length * 2L, BufferPool.MAX_SIZE));
+                chunks.add(chunk);
+                chunk[0] = (byte) b;
+                n = 1;
+                fill = 1;
+            }
+            lastFill = fill;
+            length += n;
+            checkLength();
+            if (spillBytes >= 0 && length > spillBytes) {
+                spill(in);
+                return;
+            }
+        }
+        lastFill = fill;
+    }
+
+    /**
+     * move the chunks read so far and the rest of the stream into a temporary file, and map it
+     */
+    private void spill(InputStream in) throws IOException {
+        spilled = true;
+        file = Files.createTempFile("http-api-body-", ".tmp");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (ByteBuffer slice : slices()) {
+                while (slice.hasRemaining()) {
+                    channel.write(slice);
+                }
+            }
+            releaseChunks();
+            byte[] transfer = BufferPool.acquire(TRANSFER_SIZE);
+            try {
+                int n;
+                while ((n = in.read(transfer)) >= 0) {
+                    length += n;
+                    checkLength();
+                    ByteBuffer slice = ByteBuffer.wrap(transfer, 0, n);
+                    while (slice.hasRemaining()) {
+                        channel.write(slice);
+                    }
+                }
+            } finally {
+                BufferPool.release(transfer);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        try {
+            Files.delete(file);
+            file = null;
+        } catch (IOException e) {
+            // some file systems do not delete a mapped file, delete it on release
+        }
+    }
+
+    private void checkLength() throws IOException {
+        if (maxBytes >= 0 && length > maxBytes) {
+            throw tooLarge(maxBytes);
+        }
+        if (length > MAX_LENGTH) {
+            throw new IOException("the response body is too large to buffer, write it to a Sink instead");
+        }
+    }
+
+    private static IOException tooLarge(long maxBytes) {
+        return new IOException("the response body is larger than the limit of " + maxBytes + " bytes");
+    }
+
+    /**
+     * @return the views of the body in order
+     */
+    private ByteBuffer[] slices() {
+        if (released) {
+            throw new IllegalStateException("the response body has been released");
+        }
+        if (mapped != null) {
+            return new ByteBuffer[]{mapped.duplicate()};
+        }
+        ByteBuffer[] slices = new ByteBuffer[chunks.size()];
+        for (int i = 0; i < slices.length; i++) {
+            byte[] chunk = chunks.get(i);
+            slices[i] = ByteBuffer.wrap(chunk, 0, i == slices.length - 1 ? lastFill : chunk.length);
+        }
+        return slices;
+    }
+
+    /**
+     * @return the size of the body in bytes
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return whether the body is buffered in a temporary file
+     */
+    public boolean isSpilled() {
+        return spilled;
+    }
+
+    /**
+     * @return whether the body has nothing but whitespaces, without decoding it
+     */
+    public boolean isBlank() {
+        for (ByteBuffer slice : slices()) {
+            while (slice.hasRemaining()) {
+                if ((slice.get() & 0xFF) > ' ') {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the array holding the whole body from index 0 if it is read into a single chunk, otherwise null
+     */
+    byte[] array() {
+        if (released) {
+            throw new IllegalStateException("the response body has been released");
+        }
+        if (bytes != null) {
+            return bytes;
+        }
+        return mapped == null && chunks.size() == 1 ? chunks.get(0) : null;
+    }
+
+    /**
+     * @return a stream of the body, which is valid until the body is released
+     */
+    public InputStream newInputStream() {
+        final ByteBuffer[] slices = slices();
+        return new InputStream() {
+            private int index;
+
+            private ByteBuffer current() {
+                while (index < slices.length && !slices[index].hasRemaining()) {
+                    index++;
+                }
+                return index < slices.length ? slices[index] : null;
+            }
+
+            @Override
+            public int read() {
+                ByteBuffer slice = current();
+                return slice == null ? -1 : slice.get() & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                ByteBuffer slice = current();
+                if (slice == null) {
+                    return -1;
+                }
+                int n = Math.min(len, slice.remaining());
+                slice.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                ByteBuffer slice = current();
+                return slice == null ? 0 : slice.remaining();
+            }
+        };
+    }
+
+    /**
+     * @return the whole body, the array is created once and may be the chunk the body was read into
+     */
+    public byte[] toByteArray() {
+        if (bytes != null) {
+            return bytes;
+        }
+        ByteBuffer[] slices = slices();
+        if (mapped == null && slices.length == 1 && lastFill == chunks.get(0).length) {
+            // hand the chunk over instead of copying it, it is not given back to the pool then
+            bytes = chunks.get(0);
+            return bytes;
+        }
+        byte[] result = new byte[(int) length];
+        int position = 0;
+        for (ByteBuffer slice : slices) {
+            int n = slice.remaining();
+            slice.get(result, position, n);
+            position += n;
+        }
+        bytes = result;
+        return bytes;
+    }
+
+    /**
+     * @return the body decoded with the charset
+     */
+    public String toString(Charset charset) {
+        byte[] array = array();
+        if (array != null) {
+            return new String(array, 0, (int) length, charset);
+        }
+        return new String(toByteArray(), charset);
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public long writeTo(WritableByteChannel target) throws IOException {
+        for (ByteBuffer slice : slices()) {
+            while (slice.hasRemaining()) {
+                target.write(slice);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * give the chunks back to the pool and drop the temporary file, the body cannot be read afterwards,
+     * except the array returned by {@link #toByteArray()} which is kept
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        releaseChunks();
+        mapped = null;
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+            file = null;
+        }
+    }
+
+    private void releaseChunks() {
+        for (byte[] chunk : chunks) {
+            if (chunk != bytes) {
+                BufferPool.release(chunk);
+            }
+        }
+        chunks.clear();
+    }
+}
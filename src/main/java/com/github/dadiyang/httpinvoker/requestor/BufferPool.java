@@ -0,0 +1,68 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * A pool of byte arrays in power of two sizes from 4KB to 1MB, which the response bodies are read into.
+ * <p>
+ * Each size keeps at most 16 arrays and at most 4MB, so that the pool retains about 16MB at worst.
+ * The array given back last is taken first, which is likely still in the cache.
+ * An array not given back is simply garbage collected.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+class BufferPool {
+    static final int MIN_SIZE = 4 * 1024;
+    static final int MAX_SIZE = 1024 * 1024;
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+    private static final int MAX_SHIFT = Integer.numberOfTrailingZeros(MAX_SIZE);
+    private static final int MAX_ARRAYS = 16;
+    private static final int MAX_BYTES_PER_SIZE = 4 * 1024 * 1024;
+    private static final LinkedBlockingDeque<byte[]>[] POOLS = createPools();
+
+    private BufferPool() {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static LinkedBlockingDeque<byte[]>[] createPools() {
+        LinkedBlockingDeque<byte[]>[] pools = new LinkedBlockingDeque[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = new LinkedBlockingDeque<>(Math.min(MAX_ARRAYS, MAX_BYTES_PER_SIZE >> (MIN_SHIFT + i)));
+        }
+        return pools;
+    }
+
+    /**
+     * @param minSize the minimum size of the array, no more than {@link #MAX_SIZE}
+     * @return an array of the smallest pooled size holding the given size, whose content is undefined
+     */
+    static byte[] acquire(int minSize) {
+        int size = sizeFor(minSize);
+        byte[] array = POOLS[Integer.numberOfTrailingZeros(size) - MIN_SHIFT].pollFirst();
+        return array == null ? new byte[size] : array;
+    }
+
+    /**
+     * give the array back, which must not be used afterwards, arrays of the sizes not pooled are dropped
+     */
+    static void release(byte[] array) {
+        int size = array.length;
+        if (size >= MIN_SIZE && size <= MAX_SIZE && Integer.bitCount(size) == 1) {
+            POOLS[Integer.numberOfTrailingZeros(size) - MIN_SHIFT].offerFirst(array);
+        }
+    }
+
+    /**
+     * @return the smallest pooled size holding the given size
+     */
+    static int sizeFor(long minSize) {
+        if (minSize <= MIN_SIZE) {
+            return MIN_SIZE;
+        }
+        if (minSize >= MAX_SIZE) {
+            return MAX_SIZE;
+        }
+        return Integer.highestOneBit((int) minSize - 1) << 1;
+    }
+}
@@ -1,16 +1,25 @@
 package com.github.dadiyang.httpinvoker.requestor;
 
 import com.alibaba.fastjson.JSON;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings.Phase;
 import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -44,6 +53,10 @@ public class DefaultHttpRequestor implements Requestor {
         Response response;
         String url = request.getUrl();
         int timeout = request.getTimeout();
+        if (m == Method.GET && request.getDownloadTarget() != null) {
+            log.debug("download {} to {}", url, request.getDownloadTarget());
+            return new RangedDownloader().download(request);
+        }
         if (!m.hasBody()) {
             String qs = toQueryString(request.getData());
             String fullUrl = request.getUrl() + qs;
@@ -51,58 +64,108 @@ public class DefaultHttpRequestor implements Requestor {
             Connection conn = Jsoup.connect(fullUrl)
                     .method(m)
                     .timeout(timeout)
-                    // unlimited size
+                    // not truncated by Jsoup, the size is limited while buffering the body
                     .maxBodySize(0)
                     .ignoreContentType(true)
                     .ignoreHttpErrors(true);
             addHeadersAndCookies(request, conn);
             setContentType(request, conn);
-            response = conn.execute();
+            abortOnCancel(request, conn);
+            response = execute(conn, request);
         } else {
             Connection conn = Jsoup.connect(url)
                     .method(m)
                     .timeout(timeout)
-                    // unlimited size
+                    // not truncated by Jsoup, the size is limited while buffering the body
                     .maxBodySize(0)
                     .ignoreContentType(true)
                     .ignoreHttpErrors(true);
             addHeadersAndCookies(request, conn);
             setContentType(request, conn);
+            abortOnCancel(request, conn);
             Map<String, Object> data = request.getData();
             // body first
             if (request.getBody() != null) {
                 Object bodyParam = request.getBody();
                 // if the body param is InputStream, upload it
-                if (isUploadRequest(request, bodyParam)) {
+                if (isUploadRequest(bodyParam)) {
                     log.debug("upload file {} request to {} ", m, url);
-                    response = uploadFile(request);
+                    return uploadFile(request);
                 } else {
                     if (useJson(request, bodyParam)) {
-                        response = conn.requestBody(JSON.toJSONString(bodyParam)).execute();
+                        String json = toJsonBody(request, bodyParam);
+                        if (shouldCompress(request)) {
+                            log.debug("send {} request with gzip body to {}", m, url);
+                            return new GzipBodySender().send(request, json);
+                        }
+                        response = execute(conn.requestBody(json), request);
                     } else {
                         Map<String, String> map = toMapStringString(bodyParam);
-                        response = conn.data(map).execute();
+                        response = execute(conn.data(map), request);
                     }
                 }
             } else if (data == null
                     || data.isEmpty()) {
                 log.debug("send {} request to {}", m, url);
-                response = conn.execute();
+                response = execute(conn, request);
             } else {
                 if (useJson(request, data)) {
-                    response = conn.requestBody(JSON.toJSONString(data)).execute();
+                    String json = toJsonBody(request, data);
+                    if (shouldCompress(request)) {
+                        log.debug("send {} request with gzip body to {}", m, url);
+                        return new GzipBodySender().send(request, json);
+                    }
+                    response = execute(conn.requestBody(json), request);
                 } else {
                     Map<String, String> map = toMapStringString(data);
-                    response = conn.data(map).execute();
+                    response = execute(conn.data(map), request);
                 }
             }
         }
-        return new JsoupHttpResponse(response);
+        return new JsoupHttpResponse(response, request);
+    }
+
+    /**
+     * execute the request and record the time to the response headers, the body is read lazily by {@link JsoupHttpResponse}
+     */
+    private Response execute(Connection conn, HttpRequest request) throws IOException {
+        long start = System.nanoTime();
+        Response response = conn.execute();
+        if (request.getTimings() != null) {
+            request.getTimings().record(Phase.TTFB, System.nanoTime() - start);
+        }
+        return response;
+    }
+
+    /**
+     * let a cancellable request abort its connection, which Jsoup does not expose,
+     * by opening the connection through a handler registering it
+     */
+    private static void abortOnCancel(HttpRequest request, Connection conn) throws MalformedURLException {
+        if (request.isCancellable()) {
+            conn.url(new URL(null, conn.request().url().toExternalForm(), new AbortableHandler(request)));
+        }
+    }
+
+    /**
+     * encode the body to json and record its size
+     */
+    private String toJsonBody(HttpRequest request, Object body) {
+        String json = JSON.toJSONString(body);
+        request.setContentLength(utf8Length(json));
+        return json;
+    }
+
+    /**
+     * whether the encoded body is large enough to compress
+     */
+    private boolean shouldCompress(HttpRequest request) {
+        return request.getCompressMinBytes() >= 0 && request.getContentLength() >= request.getCompressMinBytes();
     }
 
     private void setContentType(HttpRequest request, Connection conn) {
         // set a default Content-Type if not provided
-        if (request.getHeaders() == null || !request.getHeaders().containsKey(CONTENT_TYPE)) {
+        if (request.getHttpHeaders() == null || !request.getHttpHeaders().contains(CONTENT_TYPE)) {
             conn.header(CONTENT_TYPE, APPLICATION_JSON);
         }
     }
@@ -112,28 +175,35 @@ public class DefaultHttpRequestor implements Requestor {
      */
     private boolean useJson(HttpRequest request, Object param) {
         // collection can only be send by json currently
-        return isCollection(param) || request.getHeaders() == null
-                || Objects.equals(request.getHeaders().get(CONTENT_TYPE), APPLICATION_JSON);
+        return isCollection(param) || request.getHttpHeaders() == null
+                || Objects.equals(request.getHttpHeaders().get(CONTENT_TYPE), APPLICATION_JSON);
     }
 
     private void addHeadersAndCookies(HttpRequest request, Connection conn) {
-        if (request.getHeaders() != null) {
-            conn.headers(request.getHeaders());
+        HttpHeaders headers = request.getHttpHeaders();
+        if (headers != null) {
+            for (int i = 0; i < headers.size(); i++) {
+                conn.header(headers.name(i), headers.value(i));
+            }
         }
         if (request.getCookies() != null) {
             conn.cookies(request.getCookies());
         }
     }
 
-    private boolean isUploadRequest(HttpRequest request, Object bodyParam) {
-        return bodyParam != null && (InputStream.class.isAssignableFrom(bodyParam.getClass())
-                || File.class.isAssignableFrom(request.getBody().getClass()));
+    private boolean isUploadRequest(Object bodyParam) {
+        return bodyParam instanceof InputStream
+                || bodyParam instanceof File
+                || bodyParam instanceof Path
+                || bodyParam instanceof FileChannel;
     }
 
     /**
+     * upload the files of the request as a multipart request streamed by {@link MultipartUploader}
+     *
      * @param request the request
      */
-    private Response uploadFile(HttpRequest request) throws IOException {
+    private HttpResponse uploadFile(HttpRequest request) throws IOException {
         Map<String, Object> paramMap = request.getData();
         String formKey = DEFAULT_UPLOAD_FORM_KEY;
         if (request.getFileFormKey() != null
@@ -142,7 +212,7 @@ public class DefaultHttpRequestor implements Requestor {
         } else if (paramMap != null && paramMap.containsKey(FORM_KEY)) {
             formKey = paramMap.get(FORM_KEY).toString();
         }
-        Map<String, String> params = new HashMap<>();
+        Map<String, String> params = new LinkedHashMap<>();
         if (paramMap != null) {
             for (Map.Entry<String, Object> entry : paramMap.entrySet()) {
                 if (entry.getKey() != null && entry.getValue() != null) {
@@ -150,30 +220,54 @@ public class DefaultHttpRequestor implements Requestor {
                 }
             }
         }
-        Connection conn = Jsoup.connect(request.getUrl());
-        conn.method(Method.POST)
-                .timeout(request.getTimeout())
-                .ignoreHttpErrors(true)
-                // unlimited size
-                .maxBodySize(0)
-                .ignoreContentType(true);
-        addHeadersAndCookies(request, conn);
-        String fileName = "fileName";
-        InputStream in;
-        if (File.class.isAssignableFrom(request.getBody().getClass())) {
-            File file = (File) request.getBody();
-            in = new FileInputStream(file);
-            fileName = file.getName();
+        Map<String, Object> files = new LinkedHashMap<>();
+        if (request.getFileParts() != null && request.getFileParts().size() > 1) {
+            for (Map.Entry<String, Object> part : request.getFileParts().entrySet()) {
+                files.put(part.getKey().isEmpty() ? DEFAULT_UPLOAD_FORM_KEY : part.getKey(), part.getValue());
+            }
         } else {
-            in = (InputStream) request.getBody();
+            files.put(formKey, request.getBody());
         }
-        if (!params.isEmpty()) {
-            conn.data(params);
-            if (params.containsKey(FILE_NAME)) {
+        Map<String, String> fileNames = new HashMap<>(files.size() * 2);
+        for (Map.Entry<String, Object> file : files.entrySet()) {
+            String fileName = FILE_NAME;
+            if (files.size() == 1 && params.containsKey(FILE_NAME)) {
                 fileName = params.get(FILE_NAME);
+            } else if (file.getValue() instanceof File) {
+                fileName = ((File) file.getValue()).getName();
+            } else if (file.getValue() instanceof Path) {
+                fileName = ((Path) file.getValue()).getFileName().toString();
+            }
+            fileNames.put(file.getKey(), fileName);
+        }
+        return new MultipartUploader().upload(request, params, files, fileNames);
+    }
+
+    /**
+     * open the connections with the default handler, registering them to be disconnected when the request is cancelled
+     */
+    private static class AbortableHandler extends URLStreamHandler {
+        private final HttpRequest request;
+
+        AbortableHandler(HttpRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            return register(new URL(url.toExternalForm()).openConnection());
+        }
+
+        @Override
+        protected URLConnection openConnection(URL url, Proxy proxy) throws IOException {
+            return register(new URL(url.toExternalForm()).openConnection(proxy));
+        }
+
+        private URLConnection register(URLConnection conn) {
+            if (conn instanceof HttpURLConnection) {
+                request.onCancel(((HttpURLConnection) conn)::disconnect);
             }
+            return conn;
         }
-        conn.data(formKey, fileName, in);
-        return conn.execute();
     }
 }
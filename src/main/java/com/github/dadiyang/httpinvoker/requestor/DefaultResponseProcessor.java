@@ -3,10 +3,16 @@ package com.github.dadiyang.httpinvoker.requestor;
 import com.alibaba.fastjson.JSON;
 
 import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.nio.charset.Charset;
 import java.util.Objects;
 
+import static com.github.dadiyang.httpinvoker.util.ParamUtils.getRawType;
+
 /**
  * @author huangxuyang
  * date 2019/2/21
@@ -14,35 +20,61 @@ import java.util.Objects;
 public class DefaultResponseProcessor implements ResponseProcessor {
     @Override
     public Object process(HttpResponse response, Method method) {
+        return process(response, method, method.getGenericReturnType());
+    }
+
+    @Override
+    public Object process(HttpResponse response, Method method, Type returnType) {
+        Class<?> rawType = getRawType(returnType);
         // not need a return value
-        if (Objects.equals(method.getReturnType(), Void.class)
-                || Objects.equals(method.getReturnType(), void.class)) {
+        if (Objects.equals(rawType, Void.class)
+                || Objects.equals(rawType, void.class)) {
             return null;
         }
-        String body = response.getBody();
-        if (body == null || body.trim().isEmpty()) {
+        // tell an empty body without decoding it into a String
+        BodyBuffer buffer = response.getBodyBuffer();
+        if (buffer != null ? buffer.isBlank() : isBlank(response.getBody())) {
             return null;
         }
         // return body if return type is Object
-        if (method.getReturnType() == Object.class) {
+        if (rawType == Object.class
+                || rawType == String.class
+                || rawType == CharSequence.class) {
             return response.getBody();
         }
-        if (method.getReturnType() == String.class
-                || method.getReturnType() == CharSequence.class) {
-            return body;
-        }
-        if (method.getReturnType() == byte[].class) {
+        if (rawType == byte[].class) {
             return response.getBodyAsBytes();
         }
-        if (method.getReturnType().isAssignableFrom(BufferedInputStream.class)) {
+        if (rawType.isAssignableFrom(BufferedInputStream.class)) {
             return response.getBodyStream();
         }
-        if (method.getReturnType().isAssignableFrom(response.getClass())) {
+        if (rawType.isAssignableFrom(response.getClass())) {
             return response;
         }
-        // get generic return type
-        Type type = method.getGenericReturnType();
-        type = type == null ? method.getReturnType() : type;
-        return JSON.parseObject(response.getBodyAsBytes(), type);
+        // parse with the generic type
+        if (buffer == null) {
+            return JSON.parseObject(response.getBodyAsBytes(), returnType);
+        }
+        return parseObject(buffer, response.getCharset(), returnType);
+    }
+
+    /**
+     * decode the bytes where they are buffered, a body in several chunks or in a file is streamed to the parser
+     */
+    private static Object parseObject(BodyBuffer buffer, String charsetName, Type returnType) {
+        Charset charset = HttpResponse.charsetOf(charsetName);
+        byte[] array = buffer.array();
+        if (array != null) {
+            return JSON.parseObject(array, 0, (int) buffer.length(), charset, returnType);
+        }
+        try (InputStream in = buffer.newInputStream()) {
+            return JSON.parseObject(in, charset, returnType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isBlank(String body) {
+        return body == null || body.trim().isEmpty();
     }
 }
@@ -0,0 +1,56 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A response whose body has been downloaded into a file by the requestor.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class DownloadedHttpResponse extends HttpResponse {
+    /**
+     * the suffix of the sidecar file keeping the progress of a ranged download
+     */
+    public static final String PROGRESS_SUFFIX = ".progress";
+    private final Path file;
+    private final long length;
+
+    public DownloadedHttpResponse(int statusCode, String statusMessage, String contentType,
+                                  HttpHeaders headers, Path file, long length) {
+        super(statusCode, statusMessage, contentType);
+        setHttpHeaders(headers);
+        this.file = file;
+        this.length = length;
+    }
+
+    /**
+     * @return the file the body has been downloaded into
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+
+    /**
+     * copy the downloaded file to the target
+     */
+    @Override
+    public long writeBodyTo(WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < length) {
+                position += channel.transferTo(position, length - position, target);
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * A compact multimap of http headers, whose names are case-insensitive.
+ * <p>
+ * The headers are kept in insertion order in parallel arrays along with the case-insensitive hash of each name,
+ * so looking up a header compares a few ints instead of hashing into a map, and no entry objects are allocated.
+ * A header with several values takes an entry for each value.
+ * <p>
+ * {@link #asMap()} and {@link #asMultiMap()} are views created once and backed by the headers, which are not copied.
+ * This class is not thread-safe.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class HttpHeaders {
+    private static final int DEFAULT_CAPACITY = 8;
+    private String[] names;
+    private String[] values;
+    private int[] hashes;
+    private int size;
+    /**
+     * the number of distinct names, computed by the views on demand, -1 after the names change
+     */
+    private int distinctNames = -1;
+    private Map<String, String> mapView;
+    private Map<String, List<String>> multiMapView;
+
+    public HttpHeaders() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the expected number of header values
+     */
+    public HttpHeaders(int capacity) {
+        names = new String[capacity];
+        values = new String[capacity];
+        hashes = new int[capacity];
+    }
+
+    /**
+     * @param headers the headers with all their values, nullable
+     * @return a copy of the headers
+     */
+    public static HttpHeaders of(Map<String, List<String>> headers) {
+        if (headers == null) {
+            return new HttpHeaders(0);
+        }
+        HttpHeaders result = new HttpHeaders(headers.size() + 2);
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                // e.g. the status line of HttpURLConnection
+                continue;
+            }
+            for (String value : entry.getValue()) {
+                result.add(entry.getKey(), value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param headers the headers with a single value each, nullable
+     * @return a copy of the headers
+     */
+    public static HttpHeaders fromMap(Map<String, String> headers) {
+        if (headers == null) {
+            return new HttpHeaders(0);
+        }
+        HttpHeaders result = new HttpHeaders(headers.size() + 2);
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (entry.getKey() != null) {
+                result.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * add a value of the header, keeping the values added before
+     */
+    public HttpHeaders add(String name, String value) {
+        Objects.requireNonNull(name, "the name of a header should not be null");
+        if (size == names.length) {
+            int capacity = Math.max(DEFAULT_CAPACITY, size * 2);
+            names = Arrays.copyOf(names, capacity);
+            values = Arrays.copyOf(values, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        names[size] = name;
+        values[size] = value;
+        hashes[size] = hash(name);
+        size++;
+        distinctNames = -1;
+        return this;
+    }
+
+    /**
+     * set the value of the header, replacing all of its values
+     */
+    public HttpHeaders set(String name, String value) {
+        int i = indexOf(name, 0);
+        if (i < 0) {
+            return add(name, value);
+        }
+        values[i] = value;
+        removeFrom(name, i + 1);
+        return this;
+    }
+
+    /**
+     * remove all the values of the header
+     *
+     * @return whether the header was present
+     */
+    public boolean remove(String name) {
+        return removeFrom(name, 0);
+    }
+
+    private boolean removeFrom(String name, int from) {
+        int hash = hash(name);
+        int j = from;
+        for (int i = from; i < size; i++) {
+            if (hashes[i] == hash && names[i].equalsIgnoreCase(name)) {
+                continue;
+            }
+            names[j] = names[i];
+            values[j] = values[i];
+            hashes[j] = hashes[i];
+            j++;
+        }
+        boolean removed = j < size;
+        Arrays.fill(names, j, size, null);
+        Arrays.fill(values, j, size, null);
+        size = j;
+        if (removed) {
+            distinctNames = -1;
+        }
+        return removed;
+    }
+
+    /**
+     * @return the first value of the header, null if it is absent
+     */
+    public String get(String name) {
+        int i = indexOf(name, 0);
+        return i < 0 ? null : values[i];
+    }
+
+    /**
+     * @return all the values of the header, an empty list if it is absent
+     */
+    public List<String> getAll(String name) {
+        int first = indexOf(name, 0);
+        if (first < 0) {
+            return Collections.emptyList();
+        }
+        int next = indexOf(name, first + 1);
+        if (next < 0) {
+            return Collections.singletonList(values[first]);
+        }
+        List<String> all = new ArrayList<>(4);
+        all.add(values[first]);
+        for (int i = next; i >= 0; i = indexOf(name, i + 1)) {
+            all.add(values[i]);
+        }
+        return all;
+    }
+
+    public boolean contains(String name) {
+        return indexOf(name, 0) >= 0;
+    }
+
+    /**
+     * @param name the name of the header
+     * @param from the index to start from
+     * @return the index of the first value of the header since the given index, -1 if there is none
+     */
+    public int indexOf(String name, int from) {
+        int hash = hash(name);
+        for (int i = from; i < size; i++) {
+            if (hashes[i] == hash && names[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of header values
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the name of the header value at the index, as it was added
+     */
+    public String name(int index) {
+        checkIndex(index);
+        return names[index];
+    }
+
+    /**
+     * @return the header value at the index
+     */
+    public String value(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+
+    /**
+     * call the action with every header value in order
+     */
+    public void forEach(BiConsumer<String, String> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(names[i], values[i]);
+        }
+    }
+
+    /**
+     * @return a view of the first value of each header, looking up case-insensitively,
+     * putting a value replaces all the values of the header
+     */
+    public Map<String, String> asMap() {
+        if (mapView == null) {
+            mapView = new MapView();
+        }
+        return mapView;
+    }
+
+    /**
+     * @return a read-only view of all the values of each header, looking up case-insensitively
+     */
+    public Map<String, List<String>> asMultiMap() {
+        if (multiMapView == null) {
+            multiMapView = new MultiMapView();
+        }
+        return multiMapView;
+    }
+
+    /**
+     * @return whether the header at the index is the first one of its name
+     */
+    private boolean isFirst(int index) {
+        return indexOf(names[index], 0) == index;
+    }
+
+    /**
+     * the number of distinct header names, counted once until the names change
+     */
+    private int distinctNames() {
+        if (distinctNames < 0) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (isFirst(i)) {
+                    count++;
+                }
+            }
+            distinctNames = count;
+        }
+        return distinctNames;
+    }
+
+    /**
+     * a hash of the name ignoring the case of ascii letters, which is all a header name may contain
+     */
+    private static int hash(String name) {
+        int h = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            h = 31 * h + (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(names[i]).append(": ").append(values[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * iterates the first entry of each header name
+     */
+    private abstract class FirstEntryIterator<V> implements Iterator<Map.Entry<String, V>> {
+        private int next = advance(0);
+        private int last = -1;
+
+        private int advance(int from) {
+            for (int i = from; i < size; i++) {
+                if (isFirst(i)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public Map.Entry<String, V> next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = advance(next + 1);
+            return entryOf(last);
+        }
+
+        abstract V valueOf(int index);
+
+        Map.Entry<String, V> entryOf(int index) {
+            return new AbstractMap.SimpleImmutableEntry<>(names[index], valueOf(index));
+        }
+
+        /**
+         * set the value of the header, going on with the header after it
+         */
+        void setValue(String name, String value) {
+            String nextName = next >= 0 ? names[next] : null;
+            set(name, value);
+            if (nextName != null) {
+                // the later values of the header are removed, which may shift the next one
+                next = indexOf(nextName, 0);
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            String name = names[last];
+            int removedBefore = 0;
+            for (int i = 0; i < next; i++) {
+                if (hashes[i] == hashes[last] && names[i].equalsIgnoreCase(name)) {
+                    removedBefore++;
+                }
+            }
+            HttpHeaders.this.remove(name);
+            if (next >= 0) {
+                next -= removedBefore;
+                // the later values of the header are removed as well
+                next = advance(next);
+            }
+            last = -1;
+        }
+    }
+
+    private class MapView extends AbstractMap<String, String> {
+        private final Set<Entry<String, String>> entrySet = new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new FirstEntryIterator<String>() {
+                    @Override
+                    String valueOf(int index) {
+                        return values[index];
+                    }
+
+                    @Override
+                    Entry<String, String> entryOf(int index) {
+                        return new WriteThroughEntry(this, names[index], values[index]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return distinctNames();
+            }
+        };
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return entrySet;
+        }
+
+        @Override
+        public String get(Object key) {
+            return key instanceof String ? HttpHeaders.this.get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && contains((String) key);
+        }
+
+        @Override
+        public String put(String key, String value) {
+            String old = HttpHeaders.this.get(key);
+            set(key, value);
+            return old;
+        }
+
+        @Override
+        public String remove(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            String old = HttpHeaders.this.get((String) key);
+            HttpHeaders.this.remove((String) key);
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(names, 0, size, null);
+            Arrays.fill(values, 0, size, null);
+            size = 0;
+            distinctNames = -1;
+        }
+
+        @Override
+        public int size() {
+            return distinctNames();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    /**
+     * an entry of {@link #asMap()}, setting its value replaces all the values of the header
+     */
+    private static class WriteThroughEntry extends AbstractMap.SimpleEntry<String, String> {
+        private static final long serialVersionUID = 1L;
+        private final transient FirstEntryIterator<String> iterator;
+
+        WriteThroughEntry(FirstEntryIterator<String> iterator, String name, String value) {
+            super(name, value);
+            this.iterator = iterator;
+        }
+
+        @Override
+        public String setValue(String value) {
+            iterator.setValue(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    private class MultiMapView extends AbstractMap<String, List<String>> {
+        private final Set<Entry<String, List<String>>> entrySet = new AbstractSet<Entry<String, List<String>>>() {
+            @Override
+            public Iterator<Entry<String, List<String>>> iterator() {
+                Iterator<Entry<String, List<String>>> iterator = new FirstEntryIterator<List<String>>() {
+                    @Override
+                    List<String> valueOf(int index) {
+                        return getAll(names[index]);
+                    }
+                };
+                return new Iterator<Entry<String, List<String>>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, List<String>> next() {
+                        return iterator.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return distinctNames();
+            }
+        };
+
+        @Override
+        public Set<Entry<String, List<String>>> entrySet() {
+            return entrySet;
+        }
+
+        @Override
+        public List<String> get(Object key) {
+            if (!(key instanceof String) || !contains((String) key)) {
+                return null;
+            }
+            return Collections.unmodifiableList(getAll((String) key));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && contains((String) key);
+        }
+
+        @Override
+        public int size() {
+            return distinctNames();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
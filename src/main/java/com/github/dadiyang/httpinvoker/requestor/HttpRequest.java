@@ -1,7 +1,12 @@
 package com.github.dadiyang.httpinvoker.requestor;
 
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings;
+
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * @author huangxuyang
@@ -11,11 +16,29 @@ public class HttpRequest {
     private String method = "GET";
     private int timeout = 30000;
     private String url;
-    private Map<String, String> headers;
+    private HttpHeaders headers;
     private Map<String, String> cookies;
     private Map<String, Object> data;
     private Object body;
     private String fileFormKey;
+    private Map<String, Object> fileParts;
+    private Path downloadTarget;
+    private int downloadSegments = 1;
+    private long minSegmentBytes;
+    private long contentLength = -1;
+    private long compressedLength = -1;
+    private int compressMinBytes = -1;
+    private long maxBodyBytes = -1;
+    private long spillBodyBytes = -1;
+    private long expectedBodyBytes = -1;
+    private PhaseTimings timings;
+    private ExecutorService executor;
+    private boolean cancellable;
+    private volatile boolean cancelled;
+    /**
+     * aborting the connection of the request, registered by the requestor
+     */
+    private volatile Runnable abort;
 
     public HttpRequest(String url) {
         this.url = url;
@@ -32,6 +55,34 @@ public class HttpRequest {
         this.timeout = timeout;
     }
 
+    /**
+     * a copy sharing the headers, the params and the body of the request, e.g. for an attempt of a hedged request
+     *
+     * @return the copy, not cancelled
+     */
+    public HttpRequest copy() {
+        HttpRequest copy = new HttpRequest(url, method, timeout);
+        copy.headers = headers;
+        copy.cookies = cookies;
+        copy.data = data;
+        copy.body = body;
+        copy.fileFormKey = fileFormKey;
+        copy.fileParts = fileParts;
+        copy.downloadTarget = downloadTarget;
+        copy.downloadSegments = downloadSegments;
+        copy.minSegmentBytes = minSegmentBytes;
+        copy.contentLength = contentLength;
+        copy.compressedLength = compressedLength;
+        copy.compressMinBytes = compressMinBytes;
+        copy.maxBodyBytes = maxBodyBytes;
+        copy.spillBodyBytes = spillBodyBytes;
+        copy.expectedBodyBytes = expectedBodyBytes;
+        copy.timings = timings;
+        copy.executor = executor;
+        copy.cancellable = cancellable;
+        return copy;
+    }
+
     public String getMethod() {
         return method;
     }
@@ -48,19 +99,40 @@ public class HttpRequest {
         this.timeout = timeout;
     }
 
+    /**
+     * @return a view of the headers looking up case-insensitively, putting a header into which replaces its values,
+     * null if no header is set
+     */
     public Map<String, String> getHeaders() {
-        return headers;
+        return headers == null ? null : headers.asMap();
     }
 
+    /**
+     * @param headers the headers, which are copied
+     */
     public void setHeaders(Map<String, String> headers) {
+        this.headers = headers == null ? null : HttpHeaders.fromMap(headers);
+    }
+
+    /**
+     * @return the headers, null if no header is set
+     */
+    public HttpHeaders getHttpHeaders() {
+        return headers;
+    }
+
+    public void setHttpHeaders(HttpHeaders headers) {
         this.headers = headers;
     }
 
+    /**
+     * set the header, replacing its former value
+     */
     public void addHeader(String key, String value) {
         if (headers == null) {
-            headers = new HashMap<>(8);
+            headers = new HttpHeaders();
         }
-        headers.put(key, value);
+        headers.set(key, value);
     }
 
     public void addCookie(String key, String value) {
@@ -116,4 +188,198 @@ public class HttpRequest {
     public void setFileFormKey(String fileFormKey) {
         this.fileFormKey = fileFormKey;
     }
+
+    /**
+     * @return the files to upload by their form keys in the order added, null if there is none
+     */
+    public Map<String, Object> getFileParts() {
+        return fileParts;
+    }
+
+    /**
+     * add a file to upload as a part of a multipart request
+     *
+     * @param formKey the name of the part
+     * @param file    a File, Path, FileChannel or InputStream
+     */
+    public void addFilePart(String formKey, Object file) {
+        if (fileParts == null) {
+            fileParts = new LinkedHashMap<>(4);
+        }
+        fileParts.put(formKey, file);
+    }
+
+    /**
+     * @return the file to download the response body into in parallel ranges, null if it is a normal request
+     */
+    public Path getDownloadTarget() {
+        return downloadTarget;
+    }
+
+    /**
+     * download the response body into the file in parallel ranges if the requestor supports it
+     *
+     * @param target          the file to download into
+     * @param segments        the number of ranges to fetch in parallel
+     * @param minSegmentBytes the minimum size of a range
+     */
+    public void setRangedDownload(Path target, int segments, long minSegmentBytes) {
+        this.downloadTarget = target;
+        this.downloadSegments = segments;
+        this.minSegmentBytes = minSegmentBytes;
+    }
+
+    public int getDownloadSegments() {
+        return downloadSegments;
+    }
+
+    public long getMinSegmentBytes() {
+        return minSegmentBytes;
+    }
+
+    /**
+     * @return the size of the encoded request body in bytes, -1 if unknown or not sent yet
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * set by the requestor after encoding the body
+     *
+     * @param contentLength the size of the encoded request body in bytes
+     */
+    public void setContentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * @return the size of the request body on the wire after compression in bytes, -1 if it is not compressed
+     */
+    public long getCompressedLength() {
+        return compressedLength;
+    }
+
+    /**
+     * set by the requestor after compressing the body
+     *
+     * @param compressedLength the size of the compressed request body in bytes
+     */
+    public void setCompressedLength(long compressedLength) {
+        this.compressedLength = compressedLength;
+    }
+
+    /**
+     * @return the minimum size of a request body to compress it with gzip, -1 if the body should not be compressed
+     */
+    public int getCompressMinBytes() {
+        return compressMinBytes;
+    }
+
+    /**
+     * compress the request body with gzip if it is at least the given size and the requestor supports it
+     *
+     * @param compressMinBytes the minimum size of the body to compress in bytes, -1 to never compress
+     */
+    public void setCompressMinBytes(int compressMinBytes) {
+        this.compressMinBytes = compressMinBytes;
+    }
+
+    /**
+     * @return the maximum size of the response body to buffer in bytes, -1 for unlimited
+     */
+    public long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    /**
+     * @return the size above which the response body is buffered in a temporary file, -1 to never spill
+     */
+    public long getSpillBodyBytes() {
+        return spillBodyBytes;
+    }
+
+    /**
+     * limit the size of the response body the requestor buffers
+     *
+     * @param maxBytes   the maximum size in bytes, -1 for unlimited
+     * @param spillBytes the size above which the body is buffered in a temporary file, -1 to never spill
+     */
+    public void setBodyLimit(long maxBytes, long spillBytes) {
+        this.maxBodyBytes = maxBytes;
+        this.spillBodyBytes = spillBytes;
+    }
+
+    /**
+     * @return the expected size of the response body to buffer it without a Content-Length, -1 if unknown
+     */
+    public long getExpectedBodyBytes() {
+        return expectedBodyBytes;
+    }
+
+    public void setExpectedBodyBytes(long expectedBodyBytes) {
+        this.expectedBodyBytes = expectedBodyBytes;
+    }
+
+    /**
+     * @return the timings the requestor records the transport phases into, nullable
+     */
+    public PhaseTimings getTimings() {
+        return timings;
+    }
+
+    public void setTimings(PhaseTimings timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * @return the executor to run the parallel parts of the request on, e.g. the ranges of a download,
+     * null for the default one of the requestor
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return whether the request may be cancelled by another thread, e.g. an attempt of a hedged request,
+     * so that the requestor should register how to abort its connection by {@link #onCancel(Runnable)}
+     */
+    public boolean isCancellable() {
+        return cancellable;
+    }
+
+    public void setCancellable(boolean cancellable) {
+        this.cancellable = cancellable;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * register how to abort the connection of the request, which is run at once if the request is cancelled already
+     *
+     * @param abort aborting the connection, e.g. disconnecting it
+     */
+    public void onCancel(Runnable abort) {
+        this.abort = abort;
+        if (cancelled) {
+            abort.run();
+        }
+    }
+
+    /**
+     * cancel the request, aborting its connection if the requestor has registered how to
+     */
+    public void cancel() {
+        cancelled = true;
+        Runnable abort = this.abort;
+        if (abort != null) {
+            abort.run();
+        }
+    }
 }
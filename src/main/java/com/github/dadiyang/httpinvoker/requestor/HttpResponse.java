@@ -1,8 +1,16 @@
 package com.github.dadiyang.httpinvoker.requestor;
 
 import java.io.BufferedInputStream;
-import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -11,6 +19,10 @@ import java.util.Map;
  * date 2018/12/6
  */
 public class HttpResponse {
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String IDENTITY = "identity";
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
     /**
      * Get the status code of the response.
      */
@@ -45,8 +57,17 @@ public class HttpResponse {
      * <p>This method is useful for writing large responses to disk, without buffering them completely into memory first.</p>
      */
     private BufferedInputStream bodyStream;
+    /**
+     * the body read by the requestor, which the other body methods are derived from lazily
+     */
+    private BodyBuffer bodyBuffer;
 
-    private Map<String, List<String>> headers;
+    private HttpHeaders headers;
+    /**
+     * the read-only views of the headers, created once
+     */
+    private Map<String, String> headerView;
+    private Map<String, List<String>> multiHeaderView;
 
     /**
      * Retrieve all of the request/response cookies as a map
@@ -54,6 +75,10 @@ public class HttpResponse {
      * @return cookies
      */
     private Map<String, String> cookies;
+    /**
+     * the size of the compressed body read from the wire, -1 if unknown
+     */
+    private long compressedLength = -1;
 
     public HttpResponse() {
     }
@@ -97,6 +122,9 @@ public class HttpResponse {
     }
 
     public byte[] getBodyAsBytes() {
+        if (bodyAsBytes == null && bodyBuffer != null) {
+            bodyAsBytes = bodyBuffer.toByteArray();
+        }
         return bodyAsBytes;
     }
 
@@ -113,6 +141,9 @@ public class HttpResponse {
     }
 
     public String getBody() {
+        if (body == null && bodyBuffer != null) {
+            body = bodyBuffer.toString(charsetOf(getCharset()));
+        }
         return body;
     }
 
@@ -120,32 +151,109 @@ public class HttpResponse {
         this.body = body;
     }
 
+    /**
+     * @return the body read by the requestor, null if the requestor does not buffer it
+     */
+    public BodyBuffer getBodyBuffer() {
+        return bodyBuffer;
+    }
+
+    public void setBodyBuffer(BodyBuffer bodyBuffer) {
+        this.bodyBuffer = bodyBuffer;
+    }
+
+    /**
+     * give the buffer of the body back to the pool once it has been decoded,
+     * the body cannot be read afterwards unless it was got as a String or an array already
+     */
+    public void release() {
+        if (bodyBuffer != null) {
+            bodyBuffer.release();
+        }
+    }
+
+    /**
+     * @return a read-only view of the first value of each header, looking up case-insensitively
+     */
     public Map<String, String> getHeaders() {
-        LinkedHashMap<String, String> map = new LinkedHashMap<>(headers.size());
-        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
-            String header = entry.getKey();
-            List<String> values = entry.getValue();
-            if (values.size() > 0) {
-                map.put(header, values.get(0));
-            }
+        if (headerView == null) {
+            headerView = Collections.unmodifiableMap(getHttpHeaders().asMap());
         }
-        return map;
+        return headerView;
     }
 
+    /**
+     * @param headers the headers with all their values, which are copied
+     */
     public void setHeaders(Map<String, List<String>> headers) {
+        setHttpHeaders(HttpHeaders.of(headers));
+    }
+
+    /**
+     * @return the headers, an empty one if they are not set
+     */
+    public HttpHeaders getHttpHeaders() {
+        if (headers == null) {
+            headers = new HttpHeaders(0);
+        }
+        return headers;
+    }
+
+    public void setHttpHeaders(HttpHeaders headers) {
         this.headers = headers;
+        this.headerView = null;
+        this.multiHeaderView = null;
     }
 
+    /**
+     * @return a read-only view of all the values of each header, looking up case-insensitively
+     */
     public Map<String, List<String>> multiHeaders() {
-        return headers;
+        if (multiHeaderView == null) {
+            multiHeaderView = Collections.unmodifiableMap(getHttpHeaders().asMultiMap());
+        }
+        return multiHeaderView;
     }
 
+    /**
+     * @return the first value of the header split by semicolons, an empty list if it is absent
+     */
     public List<String> getHeaders(String name) {
-        return Arrays.asList(getHeader(name).split(";\\s?"));
+        String header = getHeader(name);
+        if (header == null) {
+            return Collections.emptyList();
+        }
+        List<String> parts = new ArrayList<>(4);
+        int start = 0;
+        int semicolon;
+        while ((semicolon = header.indexOf(';', start)) >= 0) {
+            parts.add(header.substring(start, semicolon));
+            start = semicolon + 1;
+            // skip a whitespace after the semicolon
+            if (start < header.length() && Character.isWhitespace(header.charAt(start))) {
+                start++;
+            }
+        }
+        parts.add(header.substring(start));
+        // drop the trailing empty parts like String.split
+        for (int i = parts.size() - 1; i > 0 && parts.get(i).isEmpty(); i--) {
+            parts.remove(i);
+        }
+        return parts;
     }
 
     public String getHeader(String name) {
-        return getHeaders().get(name);
+        return getHttpHeaders().get(name);
+    }
+
+    /**
+     * look up the values of a header case-insensitively without copying the headers
+     *
+     * @param name the name of the header
+     * @return all the values of the header, an empty list if it is absent
+     */
+    public List<String> getHeaderValues(String name) {
+        return getHttpHeaders().getAll(name);
     }
 
     public Map<String, String> getCookies() {
@@ -159,4 +267,112 @@ public class HttpResponse {
     public String getCookie(String name) {
         return getCookies().get(name);
     }
+
+    /**
+     * @return the size of the response body in bytes according to the Content-Length header or the buffered body,
+     * -1 if unknown. The size of a compressed body is the size after decompression.
+     */
+    public long getContentLength() {
+        String length = isCompressed() ? null : getHeader(CONTENT_LENGTH);
+        if (length != null) {
+            return parseContentLength(length);
+        }
+        if (bodyBuffer != null) {
+            return bodyBuffer.length();
+        }
+        return bodyAsBytes == null ? -1 : bodyAsBytes.length;
+    }
+
+    /**
+     * @return whether the body is sent with a Content-Encoding, e.g. gzip
+     */
+    public boolean isCompressed() {
+        String encoding = getHeader(CONTENT_ENCODING);
+        return encoding != null && !encoding.isEmpty() && !IDENTITY.equalsIgnoreCase(encoding);
+    }
+
+    /**
+     * @return the size of the compressed body on the wire in bytes, -1 if the body is not compressed or the size is unknown
+     */
+    public long getCompressedLength() {
+        if (compressedLength >= 0 || !isCompressed()) {
+            return compressedLength;
+        }
+        return parseContentLength(getHeader(CONTENT_LENGTH));
+    }
+
+    /**
+     * set by the requestor if it decompresses the body itself
+     *
+     * @param compressedLength the size of the compressed body on the wire in bytes
+     */
+    public void setCompressedLength(long compressedLength) {
+        this.compressedLength = compressedLength;
+    }
+
+    /**
+     * write the body to the target without buffering it in memory if it has not been read yet,
+     * the body stream is closed afterwards, so that the connection can be released
+     *
+     * @param target the channel to write to, which is left open
+     * @return the number of bytes written
+     * @throws IOException if reading the body or writing the target failed
+     */
+    public long writeBodyTo(WritableByteChannel target) throws IOException {
+        if (bodyStream != null) {
+            try (InputStream in = bodyStream) {
+                return transfer(in, target);
+            }
+        }
+        if (bodyAsBytes == null && bodyBuffer != null) {
+            return bodyBuffer.writeTo(target);
+        }
+        byte[] bytes = bodyAsBytes;
+        if (bytes == null && body != null) {
+            bytes = body.getBytes(charsetOf(charset));
+        }
+        if (bytes == null) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        return bytes.length;
+    }
+
+    /**
+     * copy the stream to the channel through a fixed size direct buffer
+     */
+    static long transfer(InputStream in, WritableByteChannel target) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(in);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+        long total = 0;
+        while (source.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                total += target.write(buffer);
+            }
+            buffer.clear();
+        }
+        return total;
+    }
+
+    /**
+     * @return the charset of the name, UTF-8 if it is null
+     */
+    static Charset charsetOf(String name) {
+        return name == null ? StandardCharsets.UTF_8 : Charset.forName(name);
+    }
+
+    static long parseContentLength(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 }
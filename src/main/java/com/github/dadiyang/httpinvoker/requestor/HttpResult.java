@@ -0,0 +1,47 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import com.github.dadiyang.httpinvoker.metrics.ExecutionRecord;
+
+/**
+ * Declare a method returning HttpResult&lt;T&gt; to get the decoded value along with how the call was executed,
+ * e.g. which attempt succeeded and how long each attempt took.
+ *
+ * @param <T> the type of the decoded value
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class HttpResult<T> {
+    private final T value;
+    private final int statusCode;
+    private final ExecutionRecord execution;
+
+    public HttpResult(T value, int statusCode, ExecutionRecord execution) {
+        this.value = value;
+        this.statusCode = statusCode;
+        this.execution = execution;
+    }
+
+    /**
+     * @return the value decoded by the ResponseProcessor
+     */
+    public T getValue() {
+        return value;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public ExecutionRecord getExecution() {
+        return execution;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpResult{" +
+                "value=" + value +
+                ", statusCode=" + statusCode +
+                ", execution=" + execution +
+                '}';
+    }
+}
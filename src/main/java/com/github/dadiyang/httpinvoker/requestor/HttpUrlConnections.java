@@ -0,0 +1,243 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings.Phase;
+
+import java.io.*;
+import java.net.HttpCookie;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The helpers shared by the requestors sending requests with {@link HttpURLConnection} directly.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+class HttpUrlConnections {
+    static final String CONTENT_TYPE = "Content-Type";
+    static final String CONTENT_ENCODING = "Content-Encoding";
+    static final String GZIP = "gzip";
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private HttpUrlConnections() {
+    }
+
+    /**
+     * open a connection to the url, with the timeout, the headers, except Content-Type, and the cookies of the request
+     */
+    static HttpURLConnection open(HttpRequest request, String url, String method) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestMethod(method);
+        conn.setUseCaches(false);
+        conn.setConnectTimeout(request.getTimeout());
+        conn.setReadTimeout(request.getTimeout());
+        addHeadersAndCookies(request, conn);
+        return conn;
+    }
+
+    /**
+     * exchange on the connection, which is disconnected if the exchange fails
+     *
+     * @return the result of the exchange
+     */
+    static <T> T exchange(HttpURLConnection conn, Exchange<T> exchange) throws IOException {
+        try {
+            return exchange.on(conn);
+        } catch (IOException | RuntimeException e) {
+            // the connection is reused only if the response has been read completely
+            conn.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * set the headers, except Content-Type, and the cookies of the request to the connection
+     */
+    private static void addHeadersAndCookies(HttpRequest request, HttpURLConnection conn) {
+        HttpHeaders headers = request.getHttpHeaders();
+        if (headers != null) {
+            for (int i = 0; i < headers.size(); i++) {
+                if (!CONTENT_TYPE.equalsIgnoreCase(headers.name(i))) {
+                    conn.addRequestProperty(headers.name(i), headers.value(i));
+                }
+            }
+        }
+        if (request.getCookies() != null && !request.getCookies().isEmpty()) {
+            StringBuilder cookie = new StringBuilder();
+            for (Map.Entry<String, String> entry : request.getCookies().entrySet()) {
+                if (cookie.length() > 0) {
+                    cookie.append("; ");
+                }
+                cookie.append(entry.getKey()).append('=').append(entry.getValue());
+            }
+            conn.setRequestProperty("Cookie", cookie.toString());
+        }
+    }
+
+    /**
+     * open the connection explicitly, recording the time it takes, including resolving the host and the TLS handshake,
+     * as the connect phase of the request
+     */
+    static void connect(HttpURLConnection conn, HttpRequest request) throws IOException {
+        long start = System.nanoTime();
+        conn.connect();
+        if (request.getTimings() != null) {
+            request.getTimings().record(Phase.CONNECT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * wait for the response after the request body has been sent, recording the time to the first byte,
+     * and read it into a {@link BodyBuffer}
+     */
+    static HttpResponse readResponse(HttpURLConnection conn, HttpRequest request) throws IOException {
+        long start = System.nanoTime();
+        int code = conn.getResponseCode();
+        if (request.getTimings() != null) {
+            request.getTimings().record(Phase.TTFB, System.nanoTime() - start);
+        }
+        InputStream in = code >= HttpURLConnection.HTTP_BAD_REQUEST ? conn.getErrorStream() : conn.getInputStream();
+        return toResponse(conn, in, request);
+    }
+
+    /**
+     * read the response of the connection into a {@link BodyBuffer}, a gzip body is decompressed while reading
+     *
+     * @param in      the body, nullable
+     * @param request the request whose body limits apply
+     */
+    static HttpResponse toResponse(HttpURLConnection conn, InputStream in, HttpRequest request) throws IOException {
+        HttpResponse response = new HttpResponse(conn.getResponseCode(), conn.getResponseMessage(), conn.getContentType());
+        HttpHeaders headers = headersOf(conn);
+        Map<String, String> cookies = new LinkedHashMap<>();
+        for (int i = headers.indexOf("Set-Cookie", 0); i >= 0; i = headers.indexOf("Set-Cookie", i + 1)) {
+            for (HttpCookie cookie : HttpCookie.parse(headers.value(i))) {
+                cookies.put(cookie.getName(), cookie.getValue());
+            }
+        }
+        response.setHttpHeaders(headers);
+        response.setCookies(cookies);
+        Charset charset = charsetOf(conn.getContentType());
+        response.setCharset(charset.name());
+        if (in == null) {
+            response.setBodyBuffer(BodyBuffer.read(null, 0, request));
+            return response;
+        }
+        CountingInputStream counting = null;
+        InputStream source = in;
+        long contentLength = conn.getContentLengthLong();
+        if (GZIP.equalsIgnoreCase(conn.getContentEncoding())) {
+            counting = new CountingInputStream(in);
+            source = new GZIPInputStream(counting, BUFFER_SIZE);
+            contentLength = -1;
+        }
+        // read completely so that the connection can be reused
+        try (InputStream input = source) {
+            response.setBodyBuffer(BodyBuffer.read(input, contentLength, request));
+        }
+        if (counting != null) {
+            response.setCompressedLength(counting.getCount());
+        }
+        return response;
+    }
+
+    static HttpHeaders headersOf(HttpURLConnection conn) {
+        // the status line with a null key is skipped
+        return HttpHeaders.of(conn.getHeaderFields());
+    }
+
+    private static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                String p = param.trim();
+                if (p.regionMatches(true, 0, "charset=", 0, 8)) {
+                    try {
+                        return Charset.forName(p.substring(8).replace("\"", "").trim());
+                    } catch (RuntimeException ignored) {
+                        // fall back to UTF-8
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * what is done on a connection, from sending the request to reading the response
+     */
+    interface Exchange<T> {
+        T on(HttpURLConnection conn) throws IOException;
+    }
+
+    /**
+     * counts the bytes read from the wire before decompressing
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * counts the bytes written to the wire after compressing
+     */
+    static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
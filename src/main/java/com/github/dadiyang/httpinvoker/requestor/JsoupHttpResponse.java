@@ -1,8 +1,13 @@
 package com.github.dadiyang.httpinvoker.requestor;
 
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings;
 import org.jsoup.Connection;
 
 import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 import java.util.Map;
 
@@ -12,9 +17,69 @@ import java.util.Map;
  */
 public class JsoupHttpResponse extends HttpResponse {
     private final Connection.Response response;
+    private final PhaseTimings timings;
+    /**
+     * the request whose body limits apply, nullable
+     */
+    private final HttpRequest request;
+    private boolean buffered;
+    private HttpHeaders headers;
+    /**
+     * the number of bytes of the body written by {@link #writeBodyTo}, -1 if it is not streamed
+     */
+    private long streamed = -1;
 
     public JsoupHttpResponse(Connection.Response response) {
+        this(response, (PhaseTimings) null);
+    }
+
+    /**
+     * @param timings the timings to record the time of reading the body into, nullable
+     */
+    public JsoupHttpResponse(Connection.Response response, PhaseTimings timings) {
+        this.response = response;
+        this.timings = timings;
+        this.request = null;
+    }
+
+    /**
+     * @param request the request whose timings are recorded into and whose body limits apply
+     */
+    public JsoupHttpResponse(Connection.Response response, HttpRequest request) {
         this.response = response;
+        this.timings = request.getTimings();
+        this.request = request;
+    }
+
+    /**
+     * Jsoup reads the body lazily, so read it up here to tell the time spent on it.
+     * The body is read into a {@link BodyBuffer} instead of the array Jsoup would allocate.
+     */
+    private void bufferUp() {
+        if (buffered) {
+            return;
+        }
+        long start = System.nanoTime();
+        String rawLength = getHeader("Content-Length");
+        BodyBuffer body;
+        try {
+            if (response.method() == Connection.Method.HEAD || "0".equals(rawLength)) {
+                // Jsoup does not open the stream of an empty body
+                body = BodyBuffer.read(null, 0, request);
+            } else {
+                // closing the stream read to the end releases the connection for reuse
+                try (InputStream in = response.bodyStream()) {
+                    body = BodyBuffer.read(in, isCompressed() ? -1 : parseContentLength(rawLength), request);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        setBodyBuffer(body);
+        buffered = true;
+        if (timings != null) {
+            timings.record(PhaseTimings.Phase.BODY, System.nanoTime() - start);
+        }
     }
 
     @Override
@@ -39,27 +104,52 @@ public class JsoupHttpResponse extends HttpResponse {
 
     @Override
     public byte[] getBodyAsBytes() {
-        return response.bodyAsBytes();
+        bufferUp();
+        return super.getBodyAsBytes();
     }
 
     @Override
     public BufferedInputStream getBodyStream() {
+        if (buffered) {
+            return new BufferedInputStream(getBodyBuffer().newInputStream());
+        }
         return response.bodyStream();
     }
 
     @Override
     public String getBody() {
-        return response.body();
+        bufferUp();
+        return super.getBody();
     }
 
     @Override
-    public Map<String, String> getHeaders() {
-        return response.headers();
+    public BodyBuffer getBodyBuffer() {
+        bufferUp();
+        return super.getBodyBuffer();
     }
 
+    /**
+     * copy the headers from Jsoup once, whose lookups scan and allocate every time
+     */
+    @Override
+    public HttpHeaders getHttpHeaders() {
+        if (headers == null) {
+            headers = HttpHeaders.of(response.multiHeaders());
+        }
+        return headers;
+    }
+
+    /**
+     * @return the values of the header joined by commas like Jsoup does, null if it is absent
+     */
     @Override
     public String getHeader(String name) {
-        return response.header(name);
+        HttpHeaders all = getHttpHeaders();
+        int first = all.indexOf(name, 0);
+        if (first < 0 || all.indexOf(name, first + 1) < 0) {
+            return first < 0 ? null : all.value(first);
+        }
+        return String.join(", ", all.getAll(name));
     }
 
     @Override
@@ -72,13 +162,37 @@ public class JsoupHttpResponse extends HttpResponse {
         return response.cookie(name);
     }
 
+    /**
+     * @return all the values of the header, an empty list if it is absent
+     */
     @Override
-    public Map<String, List<String>> multiHeaders() {
-        return response.multiHeaders();
+    public List<String> getHeaders(String name) {
+        return getHttpHeaders().getAll(name);
     }
 
     @Override
-    public List<String> getHeaders(String name) {
-        return response.headers(name);
+    public long getContentLength() {
+        // Jsoup decompresses a gzip body, whose Content-Length is the compressed size
+        long length = isCompressed() ? -1 : parseContentLength(getHeader("Content-Length"));
+        if (length < 0 && buffered) {
+            return getBodyBuffer().length();
+        }
+        return length < 0 ? streamed : length;
+    }
+
+    @Override
+    public long writeBodyTo(WritableByteChannel target) throws IOException {
+        if (buffered) {
+            return getBodyBuffer().writeTo(target);
+        }
+        long start = System.nanoTime();
+        // closing the stream read to the end releases the connection for reuse
+        try (InputStream in = response.bodyStream()) {
+            streamed = transfer(in, target);
+        }
+        if (timings != null) {
+            timings.record(PhaseTimings.Phase.BODY, System.nanoTime() - start);
+        }
+        return streamed;
     }
 }
@@ -0,0 +1,213 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Streams a multipart/form-data request with {@link HttpURLConnection}, without buffering the files in memory.
+ * <p>
+ * The body is sent in fixed length streaming mode when the size of every part is known, otherwise in chunked mode.
+ * Files are transferred with {@link FileChannel#transferTo}. For a body larger than 1MB or of unknown size,
+ * {@code Expect: 100-continue} is sent so that a request rejected by the server is aborted before the files are
+ * transmitted.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+class MultipartUploader {
+    private static final Logger log = LoggerFactory.getLogger(MultipartUploader.class);
+    private static final int CHUNK_SIZE = 64 * 1024;
+    /**
+     * smaller bodies are sent right away, waiting for 100 Continue costs a round trip
+     */
+    private static final long EXPECT_CONTINUE_THRESHOLD = 1024 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final String CRLF = "\r\n";
+    private static final String OCTET_STREAM = "application/octet-stream";
+    private final String boundary = "----HttpApiInvoker" + UUID.randomUUID().toString().replace("-", "");
+
+    /**
+     * @param request   the request, whose headers and cookies are sent as well
+     * @param params    the text fields
+     * @param files     the files by their form keys, each one is a File, Path, FileChannel or InputStream
+     * @param fileNames the file names by the form keys
+     * @return the response with the body read
+     */
+    HttpResponse upload(HttpRequest request, Map<String, String> params,
+                        Map<String, Object> files, Map<String, String> fileNames) throws IOException {
+        List<byte[]> fieldParts = new ArrayList<>(params.size());
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            fieldParts.add(utf8("--" + boundary + CRLF
+                    + "Content-Disposition: form-data; name=\"" + escape(param.getKey()) + "\"" + CRLF + CRLF
+                    + param.getValue() + CRLF));
+        }
+        List<byte[]> fileHeaders = new ArrayList<>(files.size());
+        long length = 0;
+        for (byte[] part : fieldParts) {
+            length += part.length;
+        }
+        for (Map.Entry<String, Object> file : files.entrySet()) {
+            byte[] header = utf8("--" + boundary + CRLF
+                    + "Content-Disposition: form-data; name=\"" + escape(file.getKey())
+                    + "\"; filename=\"" + escape(fileNames.get(file.getKey())) + "\"" + CRLF
+                    + HttpUrlConnections.CONTENT_TYPE + ": " + OCTET_STREAM + CRLF + CRLF);
+            fileHeaders.add(header);
+            long size = sizeOf(file.getValue());
+            length = length < 0 || size < 0 ? -1 : length + header.length + size + CRLF.length();
+        }
+        byte[] end = utf8("--" + boundary + "--" + CRLF);
+        if (length >= 0) {
+            length += end.length;
+            request.setContentLength(length);
+        }
+        long bodyLength = length;
+        boolean expectContinue = length < 0 || length >= EXPECT_CONTINUE_THRESHOLD;
+        return HttpUrlConnections.exchange(open(request, bodyLength, expectContinue), conn -> {
+            HttpUrlConnections.connect(conn, request);
+            OutputStream out;
+            try {
+                out = conn.getOutputStream();
+            } catch (ProtocolException e) {
+                // rejected by the server before sending the body, only the status is kept by the connection,
+                // asking it for anything else would send the request again
+                int code = conn.getResponseCode();
+                if (code > 0) {
+                    return rejected(code, conn.getResponseMessage());
+                }
+                throw e;
+            } catch (SocketTimeoutException e) {
+                if (!expectContinue) {
+                    throw e;
+                }
+                // the server neither accepts nor rejects the expectation, send the body anyway
+                log.warn("{} does not answer Expect: 100-continue, upload without it", request.getUrl());
+                conn.disconnect();
+                return HttpUrlConnections.exchange(open(request, bodyLength, false), retry -> {
+                    HttpUrlConnections.connect(retry, request);
+                    writeBody(retry.getOutputStream(), fieldParts, files.values(), fileHeaders, end);
+                    return HttpUrlConnections.readResponse(retry, request);
+                });
+            }
+            writeBody(out, fieldParts, files.values(), fileHeaders, end);
+            return HttpUrlConnections.readResponse(conn, request);
+        });
+    }
+
+    private static void writeBody(OutputStream out, List<byte[]> fieldParts, Collection<Object> files,
+                                  List<byte[]> fileHeaders, byte[] end) throws IOException {
+        try {
+            WritableByteChannel target = Channels.newChannel(out);
+            for (byte[] part : fieldParts) {
+                out.write(part);
+            }
+            int i = 0;
+            for (Object file : files) {
+                out.write(fileHeaders.get(i++));
+                transfer(file, out, target);
+                out.write(utf8(CRLF));
+            }
+            out.write(end);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param length the length of the body, -1 if unknown
+     */
+    private HttpURLConnection open(HttpRequest request, long length, boolean expectContinue) throws IOException {
+        HttpURLConnection conn = HttpUrlConnections.open(request, request.getUrl(), "POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty(HttpUrlConnections.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+        if (expectContinue) {
+            conn.setRequestProperty("Expect", "100-continue");
+        }
+        if (length >= 0) {
+            conn.setFixedLengthStreamingMode(length);
+        } else {
+            conn.setChunkedStreamingMode(CHUNK_SIZE);
+        }
+        return conn;
+    }
+
+    private static HttpResponse rejected(int code, String message) {
+        HttpResponse response = new HttpResponse(code, message, null);
+        response.setHttpHeaders(new HttpHeaders(0));
+        response.setCookies(Collections.<String, String>emptyMap());
+        response.setBodyAsBytes(new byte[0]);
+        response.setBody("");
+        return response;
+    }
+
+    /**
+     * @return the number of bytes to send, -1 if unknown
+     */
+    private static long sizeOf(Object file) throws IOException {
+        if (file instanceof File) {
+            return ((File) file).length();
+        }
+        if (file instanceof Path) {
+            return Files.size((Path) file);
+        }
+        if (file instanceof FileChannel) {
+            FileChannel channel = (FileChannel) file;
+            return channel.size() - channel.position();
+        }
+        return -1;
+    }
+
+    private static void transfer(Object file, OutputStream out, WritableByteChannel target) throws IOException {
+        if (file instanceof File || file instanceof Path) {
+            Path path = file instanceof File ? ((File) file).toPath() : (Path) file;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                transfer(channel, 0, channel.size(), target);
+            }
+        } else if (file instanceof FileChannel) {
+            // the channel belongs to the caller, so it is left open and transferred from its current position
+            FileChannel channel = (FileChannel) file;
+            long position = channel.position();
+            long count = channel.size() - position;
+            transfer(channel, position, count, target);
+            channel.position(position + count);
+        } else {
+            InputStream in = (InputStream) file;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long n = channel.transferTo(position + transferred, count - transferred, target);
+            if (n <= 0) {
+                throw new EOFException("the file is truncated while uploading, expected " + count + " bytes but " + transferred);
+            }
+            transferred += n;
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
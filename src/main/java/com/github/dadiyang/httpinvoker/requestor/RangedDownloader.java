@@ -0,0 +1,346 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import com.github.dadiyang.httpinvoker.HttpApiRuntime;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings.Phase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.github.dadiyang.httpinvoker.util.ParamUtils.toQueryString;
+
+/**
+ * Downloads the body of a GET request into a file in several byte ranges in parallel.
+ * <p>
+ * The url is probed with a HEAD request first. If the server accepts byte ranges and the body is large enough,
+ * the file is pre-allocated and each range is fetched by its own connection and written to its position of the file.
+ * Otherwise the body is downloaded in a single stream. The next offset of each range is saved to a sidecar file
+ * every few megabytes, so that a failed download can be resumed by the next call, as long as the length and the
+ * ETag or Last-Modified of the resource have not changed.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+class RangedDownloader {
+    private static final Logger log = LoggerFactory.getLogger(RangedDownloader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * the bytes a range downloads between saving the progress, which flushes the file to the disk
+     */
+    private static final long SAVE_INTERVAL = 4 * 1024 * 1024;
+    private static final int PARTIAL_CONTENT = 206;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int NOT_IMPLEMENTED = 501;
+
+    /**
+     * @param request the GET request with a download target
+     * @return the response whose body has been downloaded into the target, or the response of a failed probe
+     */
+    HttpResponse download(HttpRequest request) throws IOException {
+        String url = request.getUrl() + toQueryString(request.getData());
+        Path target = request.getDownloadTarget();
+        HttpURLConnection head = HttpUrlConnections.open(request, url, "HEAD");
+        HttpUrlConnections.connect(head, request);
+        long start = System.nanoTime();
+        int code = head.getResponseCode();
+        if (request.getTimings() != null) {
+            request.getTimings().record(Phase.TTFB, System.nanoTime() - start);
+        }
+        if (code == METHOD_NOT_ALLOWED || code == NOT_IMPLEMENTED) {
+            log.debug("{} does not support HEAD, download it in a single stream", url);
+            return downloadWhole(request, url, target);
+        }
+        if (code < HttpURLConnection.HTTP_OK || code >= HttpURLConnection.HTTP_MULT_CHOICE) {
+            return HttpUrlConnections.toResponse(head, null, request);
+        }
+        long length = head.getContentLengthLong();
+        boolean acceptRanges = "bytes".equalsIgnoreCase(head.getHeaderField("Accept-Ranges"));
+        int segments = length <= 0 ? 0 : (int) Math.min(request.getDownloadSegments(), length / request.getMinSegmentBytes());
+        if (!acceptRanges || segments < 2) {
+            return downloadWhole(request, url, target);
+        }
+        String validator = head.getHeaderField("ETag");
+        if (validator == null) {
+            validator = head.getHeaderField("Last-Modified");
+        }
+        Path progressFile = target.resolveSibling(target.getFileName() + DownloadedHttpResponse.PROGRESS_SUFFIX);
+        Progress progress = Progress.load(progressFile, target, length, validator);
+        if (progress == null) {
+            progress = new Progress(progressFile, length, validator, segments);
+            try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+                file.setLength(length);
+            }
+        } else {
+            log.debug("resume downloading {} to {}", url, target);
+        }
+        try (FileChannel file = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            fetchRanges(request, url, progress, file);
+            if (file.size() != length || !progress.isComplete()) {
+                throw new IOException("the download of " + url + " is incomplete, expected " + length
+                        + " bytes but " + file.size());
+            }
+        }
+        Files.deleteIfExists(progressFile);
+        return new DownloadedHttpResponse(code, head.getResponseMessage(), head.getContentType(),
+                HttpUrlConnections.headersOf(head), target, length);
+    }
+
+    /**
+     * fetch the unfinished ranges in parallel, and save the progress if any of them fails
+     */
+    private void fetchRanges(HttpRequest request, String url, Progress progress, FileChannel file) throws IOException {
+        AtomicBoolean aborted = new AtomicBoolean();
+        ExecutorService executor = request.getExecutor() != null ? request.getExecutor() : HttpApiRuntime.getDefaultExecutor();
+        List<Future<?>> futures = new ArrayList<>(progress.size());
+        for (int i = 0; i < progress.size(); i++) {
+            if (progress.isComplete(i)) {
+                continue;
+            }
+            int segment = i;
+            futures.add(executor.submit(() -> {
+                fetchRange(request, url, progress, segment, file, aborted);
+                return null;
+            }));
+        }
+        IOException failure = null;
+        // wait for every range, so that nothing is written to the file after returning
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause()
+                            : new IOException("failed to download " + url, e.getCause());
+                    aborted.set(true);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = new InterruptedIOException("interrupted while downloading " + url);
+                    aborted.set(true);
+                }
+            }
+        }
+        if (failure != null) {
+            try {
+                progress.save(file);
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+            throw failure;
+        }
+    }
+
+    private void fetchRange(HttpRequest request, String url, Progress progress, int segment,
+                            FileChannel file, AtomicBoolean aborted) throws IOException {
+        HttpURLConnection conn = HttpUrlConnections.open(request, url, "GET");
+        conn.setRequestProperty("Range", "bytes=" + progress.next(segment) + "-" + progress.end(segment));
+        if (progress.validator != null) {
+            conn.setRequestProperty("If-Range", progress.validator);
+        }
+        HttpUrlConnections.exchange(conn, c -> {
+            readRange(c, url, progress, segment, file, aborted);
+            return null;
+        });
+    }
+
+    private static void readRange(HttpURLConnection conn, String url, Progress progress, int segment,
+                                  FileChannel file, AtomicBoolean aborted) throws IOException {
+        long position = progress.next(segment);
+        long end = progress.end(segment);
+        int code = conn.getResponseCode();
+        if (code != PARTIAL_CONTENT) {
+            // e.g. the resource has changed since probed
+            throw new IOException(url + " does not return the range " + position + "-" + end
+                    + ", statusCode: " + code + ", statusMsg: " + conn.getResponseMessage());
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long unsaved = 0;
+        try (ReadableByteChannel in = Channels.newChannel(conn.getInputStream())) {
+            while (position <= end) {
+                if (aborted.get()) {
+                    throw new InterruptedIOException("another range of " + url + " failed");
+                }
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, end - position + 1));
+                int n = in.read(buffer);
+                if (n < 0) {
+                    throw new EOFException("the range " + progress.start(segment) + "-" + end + " of " + url
+                            + " is truncated at " + position);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    position += file.write(buffer, position);
+                }
+                progress.advance(segment, position);
+                unsaved += n;
+                if (unsaved >= SAVE_INTERVAL) {
+                    progress.save(file);
+                    unsaved = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * download the body in a single stream, for a server not supporting ranges or a small body
+     */
+    private HttpResponse downloadWhole(HttpRequest request, String url, Path target) throws IOException {
+        return HttpUrlConnections.exchange(HttpUrlConnections.open(request, url, "GET"), conn -> {
+            int code = conn.getResponseCode();
+            if (code < HttpURLConnection.HTTP_OK || code >= HttpURLConnection.HTTP_MULT_CHOICE) {
+                return HttpUrlConnections.toResponse(conn, conn.getErrorStream(), request);
+            }
+            long length;
+            try (InputStream in = conn.getInputStream();
+                 FileChannel file = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                length = HttpResponse.transfer(in, file);
+            }
+            // the progress of a former ranged download is useless now
+            Files.deleteIfExists(target.resolveSibling(target.getFileName() + DownloadedHttpResponse.PROGRESS_SUFFIX));
+            return new DownloadedHttpResponse(code, conn.getResponseMessage(), conn.getContentType(),
+                    HttpUrlConnections.headersOf(conn), target, length);
+        });
+    }
+
+    /**
+     * The ranges of a download and how far each of them has gone, saved as a properties file.
+     */
+    private static class Progress {
+        private final Path file;
+        private final long length;
+        private final String validator;
+        private final long[] starts;
+        private final long[] ends;
+        private final AtomicLongArray next;
+
+        Progress(Path file, long length, String validator, int segments) {
+            this.file = file;
+            this.length = length;
+            this.validator = validator;
+            this.starts = new long[segments];
+            this.ends = new long[segments];
+            this.next = new AtomicLongArray(segments);
+            long size = length / segments;
+            for (int i = 0; i < segments; i++) {
+                starts[i] = i * size;
+                ends[i] = i == segments - 1 ? length - 1 : starts[i] + size - 1;
+                next.set(i, starts[i]);
+            }
+        }
+
+        private Progress(Path file, long length, String validator, long[] starts, long[] ends, long[] next) {
+            this.file = file;
+            this.length = length;
+            this.validator = validator;
+            this.starts = starts;
+            this.ends = ends;
+            this.next = new AtomicLongArray(next);
+        }
+
+        /**
+         * @return the saved progress of the same resource, null if there is none or the resource has changed
+         */
+        static Progress load(Path file, Path target, long length, String validator) throws IOException {
+            if (validator == null || !Files.exists(file) || !Files.exists(target) || Files.size(target) != length) {
+                return null;
+            }
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            try {
+                if (Long.parseLong(properties.getProperty("length")) != length
+                        || !validator.equals(properties.getProperty("validator"))) {
+                    return null;
+                }
+                int segments = Integer.parseInt(properties.getProperty("segments"));
+                long[] starts = new long[segments];
+                long[] ends = new long[segments];
+                long[] next = new long[segments];
+                for (int i = 0; i < segments; i++) {
+                    String[] range = properties.getProperty("segment." + i).split(",");
+                    starts[i] = Long.parseLong(range[0]);
+                    next[i] = Long.parseLong(range[1]);
+                    ends[i] = Long.parseLong(range[2]);
+                    if (next[i] < starts[i] || ends[i] >= length) {
+                        return null;
+                    }
+                }
+                return new Progress(file, length, validator, starts, ends, next);
+            } catch (RuntimeException e) {
+                log.warn("ignore the corrupted download progress {}", file, e);
+                return null;
+            }
+        }
+
+        /**
+         * flush the downloaded bytes to the disk and then save the progress, replacing the former one atomically
+         */
+        synchronized void save(FileChannel target) throws IOException {
+            target.force(false);
+            Properties properties = new Properties();
+            properties.setProperty("length", String.valueOf(length));
+            properties.setProperty("validator", validator == null ? "" : validator);
+            properties.setProperty("segments", String.valueOf(size()));
+            for (int i = 0; i < size(); i++) {
+                properties.setProperty("segment." + i, starts[i] + "," + next.get(i) + "," + ends[i]);
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        int size() {
+            return starts.length;
+        }
+
+        long start(int segment) {
+            return starts[segment];
+        }
+
+        long end(int segment) {
+            return ends[segment];
+        }
+
+        long next(int segment) {
+            return next.get(segment);
+        }
+
+        void advance(int segment, long position) {
+            next.set(segment, position);
+        }
+
+        boolean isComplete(int segment) {
+            return next.get(segment) > ends[segment];
+        }
+
+        boolean isComplete() {
+            for (int i = 0; i < size(); i++) {
+                if (!isComplete(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
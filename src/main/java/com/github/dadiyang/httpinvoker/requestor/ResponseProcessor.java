@@ -1,6 +1,7 @@
 package com.github.dadiyang.httpinvoker.requestor;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 
 /**
  * process response after got response.
@@ -20,4 +21,28 @@ public interface ResponseProcessor {
      * @return the proxied method's return value
      */
     Object process(HttpResponse response, Method method);
+
+    /**
+     * processing response to a value of the given type, e.g. the T of a method returning HttpResult&lt;T&gt;,
+     * or a page of a Paginated method
+     * <p>
+     * the default implementation calls {@link #process(HttpResponse, Method)} if the type is the return type of
+     * the method, and fails otherwise instead of returning a value of the wrong type,
+     * so a processor used on such methods should override it
+     *
+     * @param response   response
+     * @param method     the proxied method
+     * @param returnType the type of the value to return
+     * @return the value
+     * @throws UnsupportedOperationException if the type is not the return type of the method
+     * @since 1.2.0
+     */
+    default Object process(HttpResponse response, Method method, Type returnType) {
+        if (!returnType.equals(method.getGenericReturnType())) {
+            throw new UnsupportedOperationException(getClass().getName() + " can not process response to "
+                    + returnType.getTypeName() + " for " + method + ", override process(HttpResponse, Method, Type) "
+                    + "to support HttpResult or Paginated methods");
+        }
+        return process(response, method);
+    }
 }
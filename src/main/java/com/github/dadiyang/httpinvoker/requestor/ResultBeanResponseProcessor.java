@@ -9,6 +9,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 
 /**
  * 注册响应处理器，用于对后台返回的结果都是类似 {code: 0, msg/message: 'success', data: 'OK'} 的结构，
@@ -28,6 +29,11 @@ public class ResultBeanResponseProcessor implements ResponseProcessor {
 
     @Override
     public Object process(HttpResponse response, Method method) {
+        return process(response, method, method.getGenericReturnType());
+    }
+
+    @Override
+    public Object process(HttpResponse response, Method method, Type returnType) {
         // 对返回值进行解析，code 为 0，则返回反序列化 data 的值，否则抛出异常
         String rs = response.getBody();
         if (rs == null || rs.trim().isEmpty()) {
@@ -36,13 +42,13 @@ public class ResultBeanResponseProcessor implements ResponseProcessor {
         JSONObject obj = JSON.parseObject(rs);
         if (isNotResultBean(obj)) {
             // 非 ResultBean 则解析整个返回结果
-            return parseObject(method, rs);
+            return parseObject(returnType, rs);
         }
         //  标准的 ResultBean 包装类处理，进行解包处理，即只取 data 的值
         int expectedCode = getExpectedCode(method);
         if (obj.getIntValue(CODE) == expectedCode) {
             // code 为期望的值时说明返回结果是正确的
-            return parseObject(method, obj.getString(DATA));
+            return parseObject(returnType, obj.getString(DATA));
         } else {
             // 否则为接口返回错误
             HttpReq req = method.getAnnotation(HttpReq.class);
@@ -65,11 +71,11 @@ public class ResultBeanResponseProcessor implements ResponseProcessor {
     /**
      * 支持泛型的反序列化方法
      */
-    private Object parseObject(Method method, String dataString) {
+    private Object parseObject(Type returnType, String dataString) {
         if (dataString == null || dataString.trim().isEmpty()) {
             return null;
         }
-        return JSON.parseObject(dataString, method.getGenericReturnType());
+        return JSON.parseObject(dataString, returnType);
     }
 
     /**
@@ -1,40 +1,74 @@
 package com.github.dadiyang.httpinvoker.spring;
 
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
 import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.balancer.EndpointSupplier;
+import com.github.dadiyang.httpinvoker.index.HttpApiIndex;
+import com.github.dadiyang.httpinvoker.metrics.MetricsRecorder;
 import com.github.dadiyang.httpinvoker.propertyresolver.PropertyResolver;
 import com.github.dadiyang.httpinvoker.requestor.RequestPreprocessor;
 import com.github.dadiyang.httpinvoker.requestor.Requestor;
 import com.github.dadiyang.httpinvoker.requestor.ResponseProcessor;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
-import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.support.GenericBeanDefinition;
 import org.springframework.context.annotation.ClassPathBeanDefinitionScanner;
+import org.springframework.context.annotation.ScannedGenericBeanDefinition;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * scan the given basePackages and register bean of includeAnn-annotated interfaces' implementation that HttpProxyBeanFactory generated
+ * <p>
+ * If the index is enabled, the interfaces are looked up in the {@link HttpApiIndex} written at build time instead of
+ * scanning the classpath. All the proxies are created lazily by a single {@link HttpApiProxyFactory} registered as a bean.
  *
  * @author huangxuyang
  * date 2018/11/1
  */
 public class ClassPathHttpApiScanner extends ClassPathBeanDefinitionScanner {
-    private static final String HTTP_API_PREFIX = "$HttpApi$";
+    /**
+     * the name of the bean of the factory shared by the proxies
+     */
+    public static final String PROXY_FACTORY_BEAN_NAME = HttpApiProxyFactory.class.getName();
+    /**
+     * the name of the bean warming up the proxies
+     */
+    public static final String WARM_UP_BEAN_NAME = HttpApiWarmUp.class.getName();
     private Class<? extends FactoryBean> factoryBean;
     private Class<? extends Annotation> includeAnn;
     private PropertyResolver propertyResolver;
     private Requestor requestor;
     private RequestPreprocessor requestPreprocessor;
     private ResponseProcessor responseProcessor;
+    private EndpointSupplier endpointSupplier;
+    private MetricsRecorder metricsRecorder;
+    private boolean jmxEnabled;
+    private boolean useIndex;
+    private boolean warmUp;
+    private int warmUpConnections;
+    private int warmUpCalls;
     private BeanDefinitionRegistry registry;
+    /**
+     * the interfaces in the index, null if there is no index
+     */
+    private Set<String> index;
+    private boolean indexLoaded;
 
     public ClassPathHttpApiScanner(BeanDefinitionRegistry registry, PropertyResolver propertyResolver,
                                    Requestor requestor, RequestPreprocessor requestPreprocessor,
@@ -50,6 +84,37 @@ public class ClassPathHttpApiScanner extends ClassPathBeanDefinitionScanner {
         this.responseProcessor = responseProcessor;
     }
 
+    public void setEndpointSupplier(EndpointSupplier endpointSupplier) {
+        this.endpointSupplier = endpointSupplier;
+    }
+
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    /**
+     * find the interfaces in the index written at build time if there is one, instead of scanning the classpath
+     */
+    public void setUseIndex(boolean useIndex) {
+        this.useIndex = useIndex;
+    }
+
+    /**
+     * register a bean warming up the proxies when the context starts
+     *
+     * @param connectionsPerHost the concurrent requests to send to each host
+     * @param syntheticCalls     the calls of each method to replay against a stub
+     */
+    public void setWarmUp(int connectionsPerHost, int syntheticCalls) {
+        this.warmUp = true;
+        this.warmUpConnections = connectionsPerHost;
+        this.warmUpCalls = syntheticCalls;
+    }
+
     @Override
     public Set<BeanDefinitionHolder> doScan(String... basePackages) {
         Set<BeanDefinitionHolder> beanDefinitions = super.doScan(basePackages);
@@ -59,6 +124,60 @@ public class ClassPathHttpApiScanner extends ClassPathBeanDefinitionScanner {
         return beanDefinitions;
     }
 
+    /**
+     * find the candidates in the index if it is enabled and lists some interfaces of the package,
+     * otherwise scan the classpath
+     */
+    @Override
+    public Set<BeanDefinition> findCandidateComponents(String basePackage) {
+        Set<String> names = useIndex ? getIndex() : null;
+        String resolved = getEnvironment().resolveRequiredPlaceholders(basePackage);
+        if (names == null || resolved.contains("*")) {
+            // the index does not support patterns
+            return super.findCandidateComponents(basePackage);
+        }
+        Set<BeanDefinition> candidates = new LinkedHashSet<>();
+        boolean indexed = false;
+        for (String className : names) {
+            if (!HttpApiIndex.isInPackage(className, resolved)) {
+                continue;
+            }
+            indexed = true;
+            try {
+                MetadataReader reader = getMetadataReaderFactory().getMetadataReader(className);
+                if (!isCandidateComponent(reader)) {
+                    continue;
+                }
+                ScannedGenericBeanDefinition definition = new ScannedGenericBeanDefinition(reader);
+                definition.setResource(reader.getResource());
+                definition.setSource(reader.getResource());
+                if (isCandidateComponent(definition)) {
+                    candidates.add(definition);
+                }
+            } catch (IOException e) {
+                // removed after the index was written
+                logger.debug("Skipping the class in the index which does not exist: " + className);
+            }
+        }
+        if (!indexed) {
+            // e.g. the interfaces in a jar built without the processor
+            return super.findCandidateComponents(basePackage);
+        }
+        return candidates;
+    }
+
+    private Set<String> getIndex() {
+        if (!indexLoaded) {
+            try {
+                index = HttpApiIndex.load(getResourceLoader().getClassLoader());
+            } catch (IOException e) {
+                logger.warn("failed to read " + HttpApiIndex.LOCATION + ", scan the classpath instead", e);
+            }
+            indexLoaded = true;
+        }
+        return index;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -76,7 +195,7 @@ public class ClassPathHttpApiScanner extends ClassPathBeanDefinitionScanner {
         // so the existing is not the expected one, we remove it.
         if (this.registry.containsBeanDefinition(beanName)) {
             // an HttpApi bean exists, we ignore the others.
-            if (isHttpApiBean(beanName)) {
+            if (isHttpApiBean(beanName, beanDefinition.getBeanClassName())) {
                 logger.info("an HttpApi bean [" + beanName + "] exists, we ignore the others");
                 return false;
             }
@@ -93,16 +212,77 @@ public class ClassPathHttpApiScanner extends ClassPathBeanDefinitionScanner {
         }
     }
 
-    private boolean isHttpApiBean(String beanName) {
-        if (registry instanceof DefaultListableBeanFactory) {
-            DefaultListableBeanFactory beanFactory = (DefaultListableBeanFactory) registry;
-            if (beanFactory.containsBean(beanName) && beanFactory.getBean(beanName).toString().startsWith(HTTP_API_PREFIX)) {
-                return true;
+    /**
+     * tell by the definition without creating the bean: a proxy by the FactoryBean,
+     * or one returned by a factory method of the interface, e.g. a @Bean method calling HttpApiProxyFactory.newProxy
+     *
+     * @param interfaceName the name of the interface found
+     */
+    private boolean isHttpApiBean(String beanName, String interfaceName) {
+        BeanDefinition existing = registry.getBeanDefinition(beanName);
+        if (factoryBean.getName().equals(existing.getBeanClassName())) {
+            return true;
+        }
+        if (existing.getFactoryMethodName() == null) {
+            return false;
+        }
+        if (existing instanceof AnnotatedBeanDefinition) {
+            MethodMetadata factoryMethod = ((AnnotatedBeanDefinition) existing).getFactoryMethodMetadata();
+            if (factoryMethod != null) {
+                return interfaceName.equals(factoryMethod.getReturnTypeName());
+            }
+        }
+        if (registry instanceof BeanFactory) {
+            try {
+                // resolved from the signature of the factory method
+                Class<?> type = ((BeanFactory) registry).getType(beanName);
+                return type != null && interfaceName.equals(type.getName());
+            } catch (BeansException e) {
+                logger.debug("failed to tell the type of bean [" + beanName + "]: " + e.getMessage());
             }
         }
         return false;
     }
 
+    /**
+     * register the definition of the factory shared by the proxies once, and the bean warming them up if enabled
+     */
+    private void registerProxyFactory(BeanDefinitionRegistry registry) {
+        if (registry.containsBeanDefinition(PROXY_FACTORY_BEAN_NAME)) {
+            return;
+        }
+        GenericBeanDefinition definition = new GenericBeanDefinition();
+        definition.setBeanClass(HttpApiProxyFactory.class);
+        // typed, so that the constructor is chosen even if the arguments are null
+        ConstructorArgumentValues args = definition.getConstructorArgumentValues();
+        args.addIndexedArgumentValue(0, requestor, Requestor.class.getName());
+        args.addIndexedArgumentValue(1, propertyResolver, PropertyResolver.class.getName());
+        args.addIndexedArgumentValue(2, requestPreprocessor, RequestPreprocessor.class.getName());
+        args.addIndexedArgumentValue(3, responseProcessor, ResponseProcessor.class.getName());
+        if (endpointSupplier != null) {
+            definition.getPropertyValues().add("endpointSupplier", endpointSupplier);
+        }
+        if (metricsRecorder != null) {
+            definition.getPropertyValues().add("metricsRecorder", metricsRecorder);
+        }
+        if (jmxEnabled) {
+            definition.getPropertyValues().add("jmxEnabled", true);
+        }
+        definition.setDestroyMethodName("close");
+        definition.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+        registry.registerBeanDefinition(PROXY_FACTORY_BEAN_NAME, definition);
+        if (warmUp && !registry.containsBeanDefinition(WARM_UP_BEAN_NAME)) {
+            GenericBeanDefinition warmUpDefinition = new GenericBeanDefinition();
+            warmUpDefinition.setBeanClass(HttpApiWarmUp.class);
+            ConstructorArgumentValues warmUpArgs = warmUpDefinition.getConstructorArgumentValues();
+            warmUpArgs.addIndexedArgumentValue(0, new RuntimeBeanReference(PROXY_FACTORY_BEAN_NAME));
+            warmUpArgs.addIndexedArgumentValue(1, warmUpConnections);
+            warmUpArgs.addIndexedArgumentValue(2, warmUpCalls);
+            warmUpDefinition.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+            registry.registerBeanDefinition(WARM_UP_BEAN_NAME, warmUpDefinition);
+        }
+    }
+
     /**
      * registry the bean with FactoryBean
      */
@@ -113,23 +293,17 @@ public class ClassPathHttpApiScanner extends ClassPathBeanDefinitionScanner {
             logger.debug("c " + includeAnn.getSimpleName() + "Bean with name '" + holder.getBeanName()
                     + "' and '" + definition.getBeanClassName() + "' interface");
         }
-        if (logger.isDebugEnabled()) {
-            logger.debug("Enabling autowire by type for " + factoryBean.getSimpleName() + " with name '" + holder.getBeanName() + "'.");
-        }
-        definition.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_BY_TYPE);
-        // 需要被代理的接口 the interface
-        definition.getPropertyValues().add("interfaceClass", definition.getBeanClassName());
-        // 配置项
-        definition.getPropertyValues().add("propertyResolver", propertyResolver);
-        if (requestor != null) {
-            definition.getPropertyValues().add("requestor", requestor);
-        }
-        if (requestPreprocessor != null) {
-            definition.getPropertyValues().add("requestPreprocessor", requestPreprocessor);
-        }
-        if (responseProcessor != null) {
-            definition.getPropertyValues().add("responseProcessor", responseProcessor);
-        }
+        // 不按类型自动注入，否则每个 bean 都要遍历所有 bean 的类型
+        // no autowiring by type, which matches the type of every bean for each of the beans
+        definition.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_NO);
+        // 需要被代理的接口，通过构造器传入，Spring 无需完整创建 FactoryBean 即可得知其类型
+        // the interface, passed to the constructor so that Spring tells the type without populating the FactoryBean
+        definition.getConstructorArgumentValues().addIndexedArgumentValue(0, definition.getBeanClassName());
+        // 在首次注入或获取时才创建 create the bean and the proxy when it is first needed
+        definition.setLazyInit(true);
+        // 共享的代理工厂，配置项都在其中 the shared factory with the configurations
+        registerProxyFactory(registry);
+        definition.getPropertyValues().add("proxyFactory", new RuntimeBeanReference(PROXY_FACTORY_BEAN_NAME));
         // 获取bean名，注意：获取 BeanName 要在setBeanClass之前，否则BeanName就会被覆盖
         // caution! we nned to getBeanName first before setBeanClass
         String beanName = holder.getBeanName();
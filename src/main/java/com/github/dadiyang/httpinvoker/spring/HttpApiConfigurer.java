@@ -1,6 +1,8 @@
 package com.github.dadiyang.httpinvoker.spring;
 
 import com.github.dadiyang.httpinvoker.annotation.HttpApiScan;
+import com.github.dadiyang.httpinvoker.balancer.EndpointSupplier;
+import com.github.dadiyang.httpinvoker.metrics.MetricsRecorder;
 import com.github.dadiyang.httpinvoker.propertyresolver.EnvironmentBasePropertyResolver;
 import com.github.dadiyang.httpinvoker.propertyresolver.MultiSourcePropertyResolver;
 import com.github.dadiyang.httpinvoker.propertyresolver.PropertiesBasePropertyResolver;
@@ -41,8 +43,20 @@ public class HttpApiConfigurer implements BeanDefinitionRegistryPostProcessor, A
         Map<String, Object> beans = ctx.getBeansWithAnnotation(HttpApiScan.class);
         Set<String> basePackages = new HashSet<>();
         Properties properties = new Properties();
+        boolean jmxEnabled = false;
+        boolean useIndex = false;
+        boolean warmUp = false;
+        int warmUpConnections = 0;
+        int warmUpCalls = 0;
         for (Map.Entry<String, Object> entry : beans.entrySet()) {
             HttpApiScan ann = entry.getValue().getClass().getAnnotation(HttpApiScan.class);
+            jmxEnabled |= ann.jmxEnabled();
+            useIndex |= ann.useIndex();
+            if (ann.warmUp()) {
+                warmUp = true;
+                warmUpConnections = Math.max(warmUpConnections, ann.warmUpConnections());
+                warmUpCalls = Math.max(warmUpCalls, ann.warmUpCalls());
+            }
             if (ann.value().length <= 0 || ann.value()[0].isEmpty()) {
                 // add the annotated class' package as a basePackage
                 basePackages.add(entry.getValue().getClass().getPackage().getName());
@@ -102,6 +116,18 @@ public class HttpApiConfigurer implements BeanDefinitionRegistryPostProcessor, A
         } catch (Exception e) {
             logger.debug("ResponseProcessor bean does not exist" + e.getMessage());
         }
+        EndpointSupplier endpointSupplier = null;
+        try {
+            endpointSupplier = ctx.getBean(EndpointSupplier.class);
+        } catch (Exception e) {
+            logger.debug("EndpointSupplier bean does not exist" + e.getMessage());
+        }
+        MetricsRecorder metricsRecorder = null;
+        try {
+            metricsRecorder = ctx.getBean(MetricsRecorder.class);
+        } catch (Exception e) {
+            logger.debug("MetricsRecorder bean does not exist" + e.getMessage());
+        }
         PropertyResolver resolver;
         if (properties.size() > 0) {
             MultiSourcePropertyResolver multi = new MultiSourcePropertyResolver();
@@ -114,6 +140,15 @@ public class HttpApiConfigurer implements BeanDefinitionRegistryPostProcessor, A
             resolver = new EnvironmentBasePropertyResolver(ctx.getEnvironment());
         }
         ClassPathHttpApiScanner scanner = new ClassPathHttpApiScanner(beanDefinitionRegistry, resolver, requestor, requestPreprocessor, responseProcessor);
+        scanner.setEndpointSupplier(endpointSupplier);
+        scanner.setMetricsRecorder(metricsRecorder);
+        scanner.setJmxEnabled(jmxEnabled);
+        scanner.setUseIndex(useIndex);
+        if (warmUp) {
+            scanner.setWarmUp(warmUpConnections, warmUpCalls);
+        }
+        // read the index and the classes with the class loader of the context
+        scanner.setResourceLoader(ctx);
         scanner.doScan(basePackages.toArray(new String[]{}));
     }
 
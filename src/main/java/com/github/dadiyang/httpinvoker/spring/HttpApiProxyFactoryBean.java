@@ -1,25 +1,48 @@
 package com.github.dadiyang.httpinvoker.spring;
 
 import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.balancer.EndpointSupplier;
+import com.github.dadiyang.httpinvoker.metrics.MetricsRecorder;
 import com.github.dadiyang.httpinvoker.propertyresolver.PropertyResolver;
 import com.github.dadiyang.httpinvoker.requestor.RequestPreprocessor;
 import com.github.dadiyang.httpinvoker.requestor.Requestor;
 import com.github.dadiyang.httpinvoker.requestor.ResponseProcessor;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 
 /**
  * A factory bean which produce HttpApi interface's implement by using proxyFactory
+ * <p>
+ * The proxy is created on the first {@link #getObject()}. If no proxyFactory is given, the bean creates its own
+ * with the other properties and closes it when destroyed, a given one is left to its owner.
  *
  * @author huangxuyang
  * date 2018/11/1
  */
-public class HttpApiProxyFactoryBean<T> implements FactoryBean<T> {
+public class HttpApiProxyFactoryBean<T> implements FactoryBean<T>, DisposableBean {
     private HttpApiProxyFactory proxyFactory;
     private Requestor requestor;
     private Class<T> interfaceClass;
     private PropertyResolver propertyResolver;
     private RequestPreprocessor requestPreprocessor;
     private ResponseProcessor responseProcessor;
+    private EndpointSupplier endpointSupplier;
+    private MetricsRecorder metricsRecorder;
+    private boolean jmxEnabled;
+    /**
+     * whether the proxyFactory is created by this bean
+     */
+    private boolean ownFactory;
+
+    public HttpApiProxyFactoryBean() {
+    }
+
+    /**
+     * @param interfaceClass the interface to proxy, known before the properties are set
+     */
+    public HttpApiProxyFactoryBean(Class<T> interfaceClass) {
+        this.interfaceClass = interfaceClass;
+    }
 
     public Class<T> getInterfaceClass() {
         return interfaceClass;
@@ -45,10 +68,33 @@ public class HttpApiProxyFactoryBean<T> implements FactoryBean<T> {
         this.responseProcessor = responseProcessor;
     }
 
+    public void setEndpointSupplier(EndpointSupplier endpointSupplier) {
+        this.endpointSupplier = endpointSupplier;
+    }
+
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    /**
+     * @param proxyFactory the factory shared with the other beans, which the other properties do not apply to
+     */
+    public void setProxyFactory(HttpApiProxyFactory proxyFactory) {
+        this.proxyFactory = proxyFactory;
+    }
+
     @Override
     public T getObject() throws Exception {
         if (proxyFactory == null) {
             proxyFactory = new HttpApiProxyFactory(requestor, propertyResolver, requestPreprocessor, responseProcessor);
+            proxyFactory.setEndpointSupplier(endpointSupplier);
+            proxyFactory.setMetricsRecorder(metricsRecorder);
+            proxyFactory.setJmxEnabled(jmxEnabled);
+            ownFactory = true;
         }
         return (T) proxyFactory.getProxy(interfaceClass);
     }
@@ -63,4 +109,11 @@ public class HttpApiProxyFactoryBean<T> implements FactoryBean<T> {
         return true;
     }
 
+    @Override
+    public void destroy() {
+        if (ownFactory) {
+            proxyFactory.close();
+        }
+    }
+
 }
@@ -0,0 +1,79 @@
+package com.github.dadiyang.httpinvoker.spring;
+
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Warms up the HttpApi proxies when the context starts, registered by {@link ClassPathHttpApiScanner}
+ * if {@link com.github.dadiyang.httpinvoker.annotation.HttpApiScan#warmUp()} is enabled.
+ * <p>
+ * The lazy HttpApi beans are created first, and then the shared factory warms up their proxies before the context
+ * finishes starting, so that the application is not reported ready before that.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class HttpApiWarmUp implements SmartLifecycle, BeanFactoryAware {
+    private final HttpApiProxyFactory proxyFactory;
+    private final int connectionsPerHost;
+    private final int syntheticCalls;
+    private ListableBeanFactory beanFactory;
+    private volatile boolean running;
+
+    /**
+     * @param proxyFactory       the factory shared by the HttpApi beans
+     * @param connectionsPerHost the concurrent requests to send to each host
+     * @param syntheticCalls     the calls of each method to replay against a stub
+     */
+    public HttpApiWarmUp(HttpApiProxyFactory proxyFactory, int connectionsPerHost, int syntheticCalls) {
+        this.proxyFactory = proxyFactory;
+        this.connectionsPerHost = connectionsPerHost;
+        this.syntheticCalls = syntheticCalls;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = (ListableBeanFactory) beanFactory;
+    }
+
+    @Override
+    public void start() {
+        // the names of the factory beans themselves, without creating them
+        for (String name : beanFactory.getBeanNamesForType(HttpApiProxyFactoryBean.class, false, false)) {
+            beanFactory.getBean(BeanFactoryUtils.transformedBeanName(name));
+        }
+        proxyFactory.warmUp(connectionsPerHost, syntheticCalls);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+}
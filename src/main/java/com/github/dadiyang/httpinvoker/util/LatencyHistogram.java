@@ -0,0 +1,133 @@
+package com.github.dadiyang.httpinvoker.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free log-linear histogram for latencies in nanoseconds.
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} linear sub buckets,
+ * so any recorded value is reported with a relative error of about 6%,
+ * while recording is a single atomic increment.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * values above 2^44 ns (about 4.8 hours) are clamped into the last bucket
+     */
+    private static final int MAX_EXPONENT = 44;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * record a latency
+     *
+     * @param nanos the latency in nanoseconds, negative values are treated as 0
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : nanos;
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean of recorded values in nanoseconds, 0 if nothing is recorded
+     */
+    public long getMean() {
+        long c = count.sum();
+        return c == 0 ? 0 : sum.sum() / c;
+    }
+
+    /**
+     * get the value at the given percentile
+     *
+     * @param percentile the percentile, between 0 and 100, e.g. 99.9
+     * @return the value in nanoseconds, 0 if nothing is recorded
+     */
+    public long getPercentile(double percentile) {
+        return getPercentiles(percentile)[0];
+    }
+
+    /**
+     * get the values at the given percentiles from the same snapshot of the histogram
+     *
+     * @param percentiles the percentiles, between 0 and 100, e.g. 50, 99, 99.9
+     * @return the values in nanoseconds in the order of the percentiles, 0 if nothing is recorded
+     */
+    public long[] getPercentiles(double... percentiles) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long[] values = new long[percentiles.length];
+        if (total == 0) {
+            return values;
+        }
+        for (int j = 0; j < percentiles.length; j++) {
+            double p = Math.min(100, Math.max(0, percentiles[j]));
+            long rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+            long seen = 0;
+            values[j] = highestValueOf(BUCKETS - 1);
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    values[j] = highestValueOf(i);
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * reset all the recorded values.
+     * <p>
+     * Note that values recorded concurrently with a reset may be partially lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + subBucket) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -6,6 +6,9 @@ import com.alibaba.fastjson.JSONObject;
 
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
@@ -82,6 +85,49 @@ public class ParamUtils {
         return qs.substring(0, qs.length() - 1);
     }
 
+    /**
+     * count the bytes of the string encoded in UTF-8 without encoding it
+     *
+     * @param str the string
+     * @return the number of bytes
+     */
+    public static long utf8Length(CharSequence str) {
+        long length = 0;
+        for (int i = 0, len = str.length(); i < len; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * get the raw class of a type, e.g. List for List&lt;String&gt;
+     *
+     * @param type the type
+     * @return the raw class, Object if it can not be told, e.g. a type variable
+     */
+    public static Class<?> getRawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return getRawType(((ParameterizedType) type).getRawType());
+        }
+        if (type instanceof GenericArrayType) {
+            return Array.newInstance(getRawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        return Object.class;
+    }
+
     private static String collectionToQueryString(JSONObject obj, Map.Entry<String, Object> entry) {
         JSONArray arr = obj.getJSONArray(entry.getKey());
         StringBuilder valBuilder = new StringBuilder();
@@ -0,0 +1,116 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.entity.City;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import com.github.dadiyang.httpinvoker.requestor.ResultBeanResponseProcessor;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Guards the bytes allocated per call of representative method shapes against a stub {@link Requestor},
+ * so that a refactoring cannot quietly increase the garbage produced by every call.
+ * <p>
+ * When a budget is exceeded on purpose, measure again and raise it in the same change.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class AllocationBudgetTest {
+    private static final int WARM_UP = 5_000;
+    private static final int CALLS = 2_000;
+    private static final String CITY_JSON = "{\"id\":1,\"name\":\"Guangzhou\"}";
+    private static final String RESULT_BEAN_JSON = "{\"code\":0,\"msg\":\"success\",\"data\":" + CITY_JSON + "}";
+    private static com.sun.management.ThreadMXBean threadMXBean;
+
+    @HttpApi("http://localhost/city")
+    public interface BudgetService {
+        @HttpReq("/getById/{id}")
+        City getCity(@Param("id") int id);
+
+        @HttpReq(value = "/save", method = "POST")
+        boolean saveCity(@Param(isBody = true) City city);
+
+        @HttpReq(value = "/saveAll", method = "POST")
+        boolean saveCities(List<City> cities);
+    }
+
+    @BeforeClass
+    public static void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private static Requestor stub(String body) {
+        HttpResponse response = new HttpResponse(200, "OK", "application/json");
+        response.setBody(body);
+        response.setBodyAsBytes(body.getBytes(StandardCharsets.UTF_8));
+        return request -> response;
+    }
+
+    /**
+     * @return the mean bytes allocated by the current thread per call
+     */
+    private static long bytesPerCall(Runnable call) {
+        for (int i = 0; i < WARM_UP; i++) {
+            call.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < CALLS; i++) {
+            call.run();
+        }
+        return (threadMXBean.getThreadAllocatedBytes(threadId) - before) / CALLS;
+    }
+
+    private static void assertWithinBudget(String shape, long budget, Runnable call) {
+        long bytes = bytesPerCall(call);
+        System.out.println(shape + ": " + bytes + " bytes per call, budget " + budget);
+        assertTrue(shape + " allocates " + bytes + " bytes per call, over the budget of " + budget, bytes <= budget);
+    }
+
+    @Test
+    public void pathVariables() {
+        BudgetService service = HttpApiProxyFactory.newProxy(BudgetService.class, stub(CITY_JSON));
+        assertWithinBudget("path variables", 8 * 1024, () -> service.getCity(1));
+    }
+
+    @Test
+    public void paramBean() {
+        BudgetService service = HttpApiProxyFactory.newProxy(BudgetService.class, stub("true"));
+        City city = new City(1, "Guangzhou");
+        assertWithinBudget("@Param bean", 9 * 1024, () -> service.saveCity(city));
+    }
+
+    @Test
+    public void collectionBody() {
+        BudgetService service = HttpApiProxyFactory.newProxy(BudgetService.class, stub("true"));
+        List<City> cities = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            cities.add(new City(i, "Guangzhou-" + i));
+        }
+        assertWithinBudget("collection body", 6 * 1024, () -> service.saveCities(cities));
+    }
+
+    @Test
+    public void resultBean() {
+        BudgetService service = new HttpApiProxyFactory(stub(RESULT_BEAN_JSON), (Properties) null, null, new ResultBeanResponseProcessor())
+                .getProxy(BudgetService.class);
+        assertWithinBudget("ResultBean", 10 * 1024, () -> service.getCity(1));
+    }
+}
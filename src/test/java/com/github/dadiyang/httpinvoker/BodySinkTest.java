@@ -0,0 +1,123 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.annotation.Sink;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.Assert.*;
+
+public class BodySinkTest {
+    private static final int PORT = 18899;
+    private static final int SIZE = 8 * 1024 * 1024;
+    @Rule
+    public WireMockRule server = new WireMockRule(options().port(PORT));
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private byte[] content;
+    private DownloadService service;
+
+    @HttpApi("http://localhost:" + PORT + "/export")
+    public interface DownloadService {
+        @HttpReq("/{id}")
+        Path download(@Param("id") int id, @Sink Path target);
+
+        @HttpReq("/{id}")
+        long download(@Param("id") int id, @Sink OutputStream out);
+
+        @HttpReq("/{id}")
+        void download(@Param("id") int id, @Sink WritableByteChannel channel);
+
+        @HttpReq("/{id}")
+        File download(@Param("id") int id);
+
+        @HttpReq("/{id}")
+        String invalid(@Param("id") int id, @Sink OutputStream out);
+    }
+
+    @Before
+    public void setUp() {
+        content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+        server.stubFor(get(urlPathEqualTo("/export/1")).willReturn(aResponse()
+                .withHeader("Content-Type", "application/octet-stream").withBody(content)));
+        service = HttpApiProxyFactory.newProxy(DownloadService.class);
+    }
+
+    @Test
+    public void downloadToPath() throws Exception {
+        Path target = folder.getRoot().toPath().resolve("export.bin");
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        assertEquals(target, service.download(1, target));
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(Arrays.equals(content, Files.readAllBytes(target)));
+        // the body is not buffered in memory
+        assertTrue("allocated " + allocated + " bytes", allocated < SIZE / 4);
+    }
+
+    @Test
+    public void downloadToStreamAndChannel() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(SIZE, service.download(1, out));
+        assertTrue(Arrays.equals(content, out.toByteArray()));
+
+        ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+        try (WritableByteChannel channel = Channels.newChannel(channelOut)) {
+            service.download(1, channel);
+            // the channel belongs to the caller
+            assertTrue(channel.isOpen());
+        }
+        assertTrue(Arrays.equals(content, channelOut.toByteArray()));
+    }
+
+    @Test
+    public void downloadToTempFile() throws Exception {
+        File file = service.download(1);
+        try {
+            assertTrue(Arrays.equals(content, Files.readAllBytes(file.toPath())));
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test
+    public void errorStatusNotWritten() {
+        server.stubFor(get(urlPathEqualTo("/export/2")).willReturn(aResponse().withStatus(404).withBody("not found")));
+        Path target = folder.getRoot().toPath().resolve("missing.bin");
+        try {
+            service.download(2, target);
+            fail("a 404 response should fail the call");
+        } catch (Exception e) {
+            Throwable cause = e instanceof UndeclaredThrowableException ? e.getCause() : e;
+            assertTrue(cause instanceof IOException);
+        }
+        assertFalse(Files.exists(target));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidReturnType() {
+        service.invalid(1, new ByteArrayOutputStream());
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class HttpApiRuntimeTest {
+
+    @HttpApi("http://localhost/api")
+    public interface SlowService {
+        @HttpReq("/slow")
+        String slow();
+    }
+
+    @HttpApi("http://localhost/other")
+    public interface OtherService {
+        @HttpReq("/other")
+        String other();
+    }
+
+    private static Requestor blockingRequestor(CountDownLatch started, CountDownLatch release) {
+        return request -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            HttpResponse response = new HttpResponse(200, "OK", "text/plain");
+            response.setBody("done");
+            return response;
+        };
+    }
+
+    @Test
+    public void closeDrainsCallsInFlight() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpApiProxyFactory factory = new HttpApiProxyFactory(blockingRequestor(started, release), new Properties());
+        SlowService service = factory.getProxy(SlowService.class);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> call = executor.submit(service::slow);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(1, factory.getRuntime().getInFlightCalls());
+            Future<?> close = executor.submit(factory::close);
+            try {
+                close.get(300, TimeUnit.MILLISECONDS);
+                fail("close should wait for the call in flight");
+            } catch (TimeoutException expected) {
+                // still draining
+            }
+            // new calls are rejected while draining
+            try {
+                service.slow();
+                fail("a call should be rejected after closing");
+            } catch (IllegalStateException expected) {
+                // closed
+            }
+            release.countDown();
+            assertEquals("done", call.get(5, TimeUnit.SECONDS));
+            close.get(5, TimeUnit.SECONDS);
+            assertEquals(0, factory.getRuntime().getInFlightCalls());
+            assertTrue(factory.getRuntime().getExecutor().isShutdown());
+            try {
+                factory.getProxy(OtherService.class);
+                fail("no proxy should be created after closing");
+            } catch (IllegalStateException expected) {
+                // closed
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void closeGivesUpAfterDrainTimeout() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpApiProxyFactory factory = new HttpApiProxyFactory(blockingRequestor(started, release), new Properties());
+        factory.getRuntime().setDrainTimeoutMillis(100);
+        SlowService service = factory.getProxy(SlowService.class);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(service::slow);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            long start = System.nanoTime();
+            factory.close();
+            long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("took " + took + " ms", took >= 90 && took < 3000);
+            assertEquals(1, factory.getRuntime().getInFlightCalls());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentLookupsShareOneProxy() throws Exception {
+        HttpApiProxyFactory factory = new HttpApiProxyFactory(request -> null, new Properties());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(8);
+            List<Future<SlowService>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return factory.getProxy(SlowService.class);
+                }));
+            }
+            SlowService first = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<SlowService> future : futures) {
+                assertSame(first, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+            factory.close();
+        }
+    }
+}
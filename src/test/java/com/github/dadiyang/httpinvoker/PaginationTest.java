@@ -0,0 +1,163 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Paginated;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.requestor.HttpRequest;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class PaginationTest {
+    private final List<String> urls = new CopyOnWriteArrayList<>();
+
+    @HttpApi("http://localhost/api")
+    public interface ItemService {
+        @Paginated(sizeParam = "size")
+        @HttpReq("/items")
+        Stream<Item> list(@Param("page") int page, @Param("size") int size);
+
+        @Paginated(pageParam = "cursor", itemsPath = "data.list", cursorPath = "data.next")
+        @HttpReq("/events")
+        Iterator<Integer> events(@Param("cursor") String cursor);
+
+        @Paginated(prefetch = 1)
+        @HttpReq("/endless")
+        Stream<Integer> endless(@Param("page") long page);
+
+        @Paginated
+        @HttpReq("/items")
+        List<Item> notStream(@Param("page") int page);
+    }
+
+    public static class Item {
+        private int id;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+    }
+
+    private static String param(HttpRequest request, String name) {
+        Object value = request.getData() == null ? null : request.getData().get(name);
+        return value == null ? null : value.toString();
+    }
+
+    private static HttpResponse json(Object body) {
+        HttpResponse response = new HttpResponse(200, "OK", "application/json");
+        response.setBody(JSON.toJSONString(body));
+        return response;
+    }
+
+    private ItemService service(Requestor requestor) {
+        Requestor recording = request -> {
+            urls.add(request.getUrl());
+            return requestor.sendRequest(request);
+        };
+        return new HttpApiProxyFactory(recording, new Properties()).getProxy(ItemService.class);
+    }
+
+    @Test
+    public void pagesByNumberUntilShortPage() {
+        ItemService service = service(request -> {
+            int page = Integer.parseInt(param(request, "page"));
+            int size = Integer.parseInt(param(request, "size"));
+            List<Map<String, Integer>> items = new ArrayList<>();
+            for (int id = (page - 1) * size; id < Math.min(page * size, 25); id++) {
+                items.add(Collections.singletonMap("id", id));
+            }
+            return json(items);
+        });
+        List<Integer> ids;
+        try (Stream<Item> items = service.list(1, 10)) {
+            ids = items.map(Item::getId).collect(Collectors.toList());
+        }
+        assertEquals(IntStream.range(0, 25).boxed().collect(Collectors.toList()), ids);
+        // the third page has fewer items than the size, so that no fourth page is fetched
+        assertEquals(3, urls.size());
+    }
+
+    @Test
+    public void pagesByCursor() {
+        ItemService service = service(request -> {
+            String cursor = param(request, "cursor");
+            int from = cursor == null || cursor.isEmpty() ? 0 : Integer.parseInt(cursor);
+            JSONObject data = new JSONObject();
+            data.put("list", Arrays.asList(from, from + 1));
+            data.put("next", from < 4 ? String.valueOf(from + 2) : null);
+            return json(Collections.singletonMap("data", data));
+        });
+        Iterator<Integer> events = service.events(null);
+        List<Integer> values = new ArrayList<>();
+        events.forEachRemaining(values::add);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), values);
+        assertEquals(3, urls.size());
+    }
+
+    @Test
+    public void closeCancelsPrefetch() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ItemService service = service(request -> {
+            long page = Long.parseLong(param(request, "page"));
+            if (page > 2) {
+                started.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new IOException("interrupted", e);
+                }
+            }
+            return json(Arrays.asList(page * 2, page * 2 + 1));
+        });
+        try (Stream<Integer> numbers = service.endless(1)) {
+            assertEquals(Arrays.asList(2, 3, 4), numbers.limit(3).collect(Collectors.toList()));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+        }
+        // the third page being fetched ahead is cancelled, and no more pages are fetched
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(3, urls.size());
+    }
+
+    @Test
+    public void failures() {
+        ItemService service = service(request -> {
+            throw new IOException("failed");
+        });
+        Iterator<Integer> events = service.events(null);
+        try {
+            events.hasNext();
+            fail();
+        } catch (UncheckedIOException e) {
+            assertEquals("failed", e.getCause().getMessage());
+        }
+        assertFalse(events.hasNext());
+        try {
+            service.notStream(1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // only Stream or Iterator
+        }
+    }
+}
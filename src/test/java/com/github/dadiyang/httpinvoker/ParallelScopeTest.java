@@ -0,0 +1,158 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ParallelScopeTest {
+    private final List<Integer> timeouts = new CopyOnWriteArrayList<>();
+    private HttpApiProxyFactory factory;
+    private DelayService service;
+
+    @HttpApi("http://localhost/delay")
+    public interface DelayService {
+        @HttpReq("/{millis}")
+        String delay(@Param("millis") int millis);
+
+        @HttpReq("/fail")
+        String fail();
+
+        @HttpReq(value = "/stall", timeout = 0)
+        String stall();
+    }
+
+    @Before
+    public void setUp() {
+        Requestor requestor = request -> {
+            timeouts.add(request.getTimeout());
+            if (request.getUrl().endsWith("/fail")) {
+                throw new IOException("failed");
+            }
+            if (request.getUrl().endsWith("/stall")) {
+                // an upstream never answering, like a transport a timeout of 0 waits forever for
+                try {
+                    Thread.sleep(request.getTimeout() <= 0 ? 60_000 : request.getTimeout());
+                } catch (InterruptedException e) {
+                    throw new IOException("interrupted", e);
+                }
+                throw new SocketTimeoutException("read timed out");
+            }
+            int millis = Integer.parseInt(request.getUrl().substring(request.getUrl().lastIndexOf('/') + 1));
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                throw new IOException("interrupted", e);
+            }
+            HttpResponse response = new HttpResponse(200, "OK", "text/plain");
+            response.setBody(String.valueOf(millis));
+            return response;
+        };
+        factory = new HttpApiProxyFactory(requestor, new Properties());
+        service = factory.getProxy(DelayService.class);
+    }
+
+    @After
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    public void callsRunTogether() throws Exception {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        try (ParallelScope scope = factory.parallel()) {
+            for (int i = 0; i < 10; i++) {
+                results.add(scope.call(() -> service.delay(200)));
+            }
+            // deferred until joined
+            Thread.sleep(100);
+            assertTrue(timeouts.isEmpty());
+            scope.join();
+        }
+        long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        for (CompletableFuture<String> result : results) {
+            assertEquals("200", result.getNow(null));
+        }
+        assertTrue("took " + took + " ms", took < 1000);
+    }
+
+    @Test
+    public void partialFailuresAndStragglers() throws Exception {
+        CompletableFuture<String> fast;
+        CompletableFuture<String> failed;
+        CompletableFuture<String> straggler;
+        // not to count the first call loading the classes in the deadline
+        service.delay(0);
+        timeouts.clear();
+        long start = System.nanoTime();
+        try (ParallelScope scope = factory.parallel(300, TimeUnit.MILLISECONDS)) {
+            fast = scope.call(() -> service.delay(10));
+            failed = scope.call(service::fail);
+            straggler = scope.call(() -> service.delay(5000));
+            scope.join();
+            assertEquals(2, scope.getFailures().size());
+        }
+        long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("took " + took + " ms", took < 2000);
+        assertEquals("10", fast.get());
+        assertTrue(failed.isCompletedExceptionally());
+        try {
+            failed.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            straggler.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        // the requests are not given more time than the deadline
+        for (int timeout : timeouts) {
+            assertTrue("timeout " + timeout, timeout <= 300);
+        }
+    }
+
+    @Test
+    public void noTimeoutIsCappedByDeadline() throws Exception {
+        service.delay(0);
+        timeouts.clear();
+        CompletableFuture<String> stalled;
+        long start = System.nanoTime();
+        try (ParallelScope scope = factory.parallel(300, TimeUnit.MILLISECONDS)) {
+            stalled = scope.call(service::stall);
+            scope.join();
+        }
+        long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("took " + took + " ms", took < 2000);
+        assertTrue(stalled.isCompletedExceptionally());
+        assertEquals(1, timeouts.size());
+        int timeout = timeouts.get(0);
+        assertTrue("timeout " + timeout, timeout > 0 && timeout <= 300);
+    }
+
+    @Test
+    public void closeCancelsCallsNotLaunched() {
+        CompletableFuture<String> result;
+        try (ParallelScope scope = factory.parallel(1, TimeUnit.SECONDS)) {
+            result = scope.call(() -> service.delay(10));
+        }
+        assertTrue(result.isCompletedExceptionally());
+        assertTrue(timeouts.isEmpty());
+    }
+}
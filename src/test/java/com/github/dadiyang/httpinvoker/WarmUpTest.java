@@ -0,0 +1,116 @@
+package com.github.dadiyang.httpinvoker;
+
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.serializer.SerializeConfig;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.requestor.DefaultHttpRequestor;
+import com.github.dadiyang.httpinvoker.requestor.RequestPreprocessor;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WarmUpTest {
+    private static final int PORT = 18903;
+    private HttpServer server;
+    private final AtomicInteger heads = new AtomicInteger();
+    private final AtomicInteger others = new AtomicInteger();
+
+    @HttpApi("http://localhost:" + PORT + "/api")
+    public interface WarmUpService {
+        @HttpReq("/items/{id}")
+        Item get(@Param("id") int id);
+
+        @HttpReq("/items")
+        List<Item> list(@Param("type") String type);
+
+        @HttpReq(value = "/items", method = "POST")
+        boolean save(@Param(isBody = true) Item item);
+    }
+
+    public static class Item {
+        private int id;
+        private String name;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", PORT), 16);
+        server.createContext("/", exchange -> {
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                heads.incrementAndGet();
+            } else {
+                others.incrementAndGet();
+            }
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void warmUpWithoutSendingCalls() {
+        AtomicInteger sent = new AtomicInteger();
+        Requestor requestor = request -> {
+            sent.incrementAndGet();
+            return new DefaultHttpRequestor().sendRequest(request);
+        };
+        AtomicInteger preprocessed = new AtomicInteger();
+        RequestPreprocessor preprocessor = request -> preprocessed.incrementAndGet();
+        HttpApiProxyFactory factory = new HttpApiProxyFactory(requestor, new Properties(), preprocessor);
+        factory.getProxy(WarmUpService.class);
+        factory.warmUp(3, 2);
+        // the synthetic calls of the three methods only reach the stub
+        assertEquals(6, preprocessed.get());
+        assertEquals(3, sent.get());
+        assertEquals(3, heads.get());
+        assertEquals(0, others.get());
+        assertNotNull(ParserConfig.getGlobalInstance().getDeserializers().get(Item.class));
+        assertNotNull(SerializeConfig.getGlobalInstance().get(Item.class));
+    }
+
+    @Test
+    public void syntheticValues() throws Exception {
+        Item item = (Item) WarmUp.syntheticValue(Item.class, 0);
+        assertEquals(0, item.getId());
+        assertEquals(0, WarmUp.syntheticValue(int.class, 0));
+        assertEquals("0", WarmUp.syntheticValue(String.class, 0));
+        List<?> items = (List<?>) WarmUp.syntheticValue(WarmUpService.class.getMethod("list", String.class).getGenericReturnType(), 0);
+        assertEquals(1, items.size());
+        assertTrue(items.get(0) instanceof Item);
+        assertNull(WarmUp.syntheticValue(Runnable.class, 0));
+        assertEquals("http://localhost:8080", WarmUp.getOrigin("http://localhost:8080/api/items?id=1"));
+        assertNull(WarmUp.getOrigin("/api/items"));
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.dadiyang.httpinvoker.balancer;
+
+import com.alibaba.fastjson.JSON;
+import com.github.dadiyang.httpinvoker.HttpApiInvoker;
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.Hedge;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.annotation.RetryPolicy;
+import com.github.dadiyang.httpinvoker.entity.City;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Status;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.dadiyang.httpinvoker.util.CityUtil.createCity;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.Assert.*;
+
+public class LoadBalancerTest {
+    private static final int PORT1 = 18891;
+    private static final int PORT2 = 18892;
+    private static final int PORT3 = 18893;
+    @Rule
+    public WireMockRule server1 = new WireMockRule(options().port(PORT1));
+    @Rule
+    public WireMockRule server2 = new WireMockRule(options().port(PORT2));
+    @Rule
+    public WireMockRule badServer = new WireMockRule(options().port(PORT3));
+
+    @HttpApi("${api.url.city.hosts}/city")
+    @RetryPolicy(times = 3, retryForStatus = Status.SERVER_ERROR)
+    public interface BalancedCityService {
+        @HttpReq("/getById")
+        City getCity(@Param("id") int id);
+    }
+
+    @HttpApi("${api.url.city.hosts}/city")
+    public interface HedgedCityService {
+        @Hedge(delayPercentile = 90, budgetPercent = 100)
+        @HttpReq("/getById")
+        City getCity(@Param("id") int id);
+    }
+
+    @Before
+    public void setUp() {
+        City city = createCity(1);
+        server1.stubFor(get(urlPathEqualTo("/city/getById")).willReturn(aResponse().withBody(JSON.toJSONString(city))));
+        server2.stubFor(get(urlPathEqualTo("/city/getById")).willReturn(aResponse().withBody(JSON.toJSONString(city))));
+        badServer.stubFor(get(urlPathEqualTo("/city/getById")).willReturn(serverError()));
+    }
+
+    @Test
+    public void balanceAndEjectFailingHost() {
+        Properties properties = new Properties();
+        properties.setProperty("api.url.city.hosts", "http://localhost:" + PORT1 + ", http://localhost:" + PORT2
+                + ", http://localhost:" + PORT3);
+        BalancedCityService service = HttpApiProxyFactory.newProxy(BalancedCityService.class, properties);
+        for (int i = 0; i < 60; i++) {
+            // the failed requests are retried on the other hosts
+            assertEquals(createCity(1), service.getCity(1));
+        }
+        assertEquals(60, server1.findAll(RequestPatternBuilder.allRequests()).size()
+                + server2.findAll(RequestPatternBuilder.allRequests()).size());
+        // the failing host is either avoided or ejected after 5 consecutive failures
+        int failed = badServer.findAll(RequestPatternBuilder.allRequests()).size();
+        assertTrue(failed <= 5);
+        LoadBalancer balancer = ((HttpApiInvoker) Proxy.getInvocationHandler(service)).getLoadBalancer();
+        assertEquals(3, balancer.getEndpoints().size());
+        for (Endpoint endpoint : balancer.getEndpoints()) {
+            boolean bad = endpoint.getUrl().equals("http://localhost:" + PORT3 + "/city");
+            assertEquals(bad && failed == 5, endpoint.isEjected());
+        }
+    }
+
+    @Test
+    public void endpointSupplier() {
+        Properties properties = new Properties();
+        properties.setProperty("api.url.city.hosts", "http://localhost:" + PORT1);
+        HttpApiProxyFactory factory = new HttpApiProxyFactory(properties);
+        factory.setEndpointSupplier((apiClass, prefix) -> Collections.singletonList("http://localhost:" + PORT2));
+        BalancedCityService service = factory.getProxy(BalancedCityService.class);
+        for (int i = 0; i < 3; i++) {
+            service.getCity(1);
+        }
+        server1.verify(0, RequestPatternBuilder.allRequests());
+        server2.verify(3, RequestPatternBuilder.allRequests());
+    }
+
+    @Test
+    public void hedgeToAnotherEndpoint() throws Exception {
+        List<String> urls = new CopyOnWriteArrayList<>();
+        AtomicBoolean slow = new AtomicBoolean();
+        Properties properties = new Properties();
+        properties.setProperty("api.url.city.hosts", "http://a, http://b, http://c");
+        HttpApiProxyFactory factory = new HttpApiProxyFactory(request -> {
+            urls.add(request.getUrl());
+            try {
+                Thread.sleep(slow.compareAndSet(true, false) ? 3000 : 5);
+            } catch (InterruptedException e) {
+                throw new IOException("cancelled", e);
+            }
+            HttpResponse response = new HttpResponse(200, "OK", "application/json");
+            response.setBody(JSON.toJSONString(createCity(1)));
+            response.setBodyAsBytes(JSON.toJSONBytes(createCity(1)));
+            return response;
+        }, properties);
+        HedgedCityService service = factory.getProxy(HedgedCityService.class);
+        // observe the latency before hedging
+        for (int i = 0; i < 20; i++) {
+            service.getCity(1);
+        }
+        slow.set(true);
+        assertEquals(createCity(1), service.getCity(1));
+        assertEquals(22, urls.size());
+        // the hedged request is sent to an endpoint other than the slow one
+        assertNotEquals(urls.get(20), urls.get(21));
+        Thread.sleep(100);
+        LoadBalancer balancer = ((HttpApiInvoker) Proxy.getInvocationHandler(service)).getLoadBalancer();
+        long samples = 0;
+        for (Endpoint endpoint : balancer.getEndpoints()) {
+            assertEquals(0, endpoint.getOutstanding());
+            samples += endpoint.getSamples();
+        }
+        // each attempt is recorded against its own endpoint
+        assertEquals(22, samples);
+    }
+
+    @Test
+    public void ejectAfterConsecutiveFailures() {
+        LoadBalancer balancer = new LoadBalancer("test", Arrays.asList("http://a", "http://b", "http://c", "http://d"));
+        Endpoint a = balancer.getEndpoints().get(0);
+        Endpoint b = balancer.getEndpoints().get(1);
+        Endpoint c = balancer.getEndpoints().get(2);
+        for (int i = 0; i < 5; i++) {
+            balancer.onStart(a);
+            balancer.onComplete(a, 1_000_000, true);
+            balancer.onStart(b);
+            balancer.onComplete(b, 1_000_000, true);
+            balancer.onStart(c);
+            balancer.onComplete(c, 1_000_000, true);
+        }
+        assertTrue(a.isEjected());
+        assertTrue(b.isEjected());
+        // at most half of the endpoints can be ejected
+        assertFalse(c.isEjected());
+        for (int i = 0; i < 10; i++) {
+            Endpoint chosen = balancer.choose(null);
+            assertTrue(chosen != a && chosen != b);
+        }
+    }
+
+    @Test
+    public void preferLowerCost() {
+        List<String> urls = Arrays.asList("http://a", "http://b");
+        LoadBalancer balancer = new LoadBalancer("test", urls);
+        Endpoint a = balancer.getEndpoints().get(0);
+        Endpoint b = balancer.getEndpoints().get(1);
+        balancer.onStart(a);
+        balancer.onComplete(a, 1_000_000, false);
+        balancer.onStart(b);
+        balancer.onComplete(b, 100_000_000, false);
+        for (int i = 0; i < 10; i++) {
+            assertSame(a, balancer.choose(null));
+        }
+        assertSame(b, balancer.choose(a));
+        // the statistics are kept when the endpoints are updated
+        balancer.updateEndpoints(Arrays.asList("http://b", "http://c"));
+        assertSame(b, balancer.getEndpoints().get(0));
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.dadiyang.httpinvoker.balancer;
+
+import com.alibaba.fastjson.JSON;
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.annotation.RouteKey;
+import com.github.dadiyang.httpinvoker.entity.City;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.*;
+
+import static com.github.dadiyang.httpinvoker.util.CityUtil.createCity;
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.Assert.*;
+
+public class RouteKeyTest {
+    private static final int PORT1 = 18894;
+    private static final int PORT2 = 18895;
+    /**
+     * nothing listens on it
+     */
+    private static final int DEAD_PORT = 18896;
+    @Rule
+    public WireMockRule server1 = new WireMockRule(options().port(PORT1));
+    @Rule
+    public WireMockRule server2 = new WireMockRule(options().port(PORT2));
+
+    @HttpApi("${api.url.city.hosts}/city")
+    public interface KeyedCityService {
+        @HttpReq("/getById")
+        City getCity(@RouteKey @Param("id") int id);
+    }
+
+    @Before
+    public void setUp() {
+        City city = createCity(1);
+        server1.stubFor(get(urlPathEqualTo("/city/getById")).willReturn(aResponse().withBody(JSON.toJSONString(city))));
+        server2.stubFor(get(urlPathEqualTo("/city/getById")).willReturn(aResponse().withBody(JSON.toJSONString(city))));
+    }
+
+    @Test
+    public void sameKeySameEndpoint() {
+        Properties properties = new Properties();
+        properties.setProperty("api.url.city.hosts", "http://localhost:" + PORT1 + ", http://localhost:" + PORT2
+                + ", http://localhost:" + DEAD_PORT);
+        KeyedCityService service = HttpApiProxyFactory.newProxy(KeyedCityService.class, properties);
+        for (int round = 0; round < 3; round++) {
+            for (int id = 0; id < 20; id++) {
+                // the keys of the dead endpoint fall back to the next endpoint
+                assertEquals(createCity(1), service.getCity(id));
+            }
+        }
+        int total = 0;
+        for (int id = 0; id < 20; id++) {
+            int on1 = server1.findAll(getRequestedFor(urlPathEqualTo("/city/getById"))
+                    .withQueryParam("id", equalTo(String.valueOf(id)))).size();
+            int on2 = server2.findAll(getRequestedFor(urlPathEqualTo("/city/getById"))
+                    .withQueryParam("id", equalTo(String.valueOf(id)))).size();
+            assertTrue("key " + id + " is sent to both endpoints", on1 == 0 || on2 == 0);
+            total += on1 + on2;
+        }
+        assertEquals(60, total);
+    }
+
+    @Test
+    public void onlyKeysOfRemovedEndpointMove() {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            urls.add("http://10.0.0." + i + ":8080");
+        }
+        LoadBalancer balancer = new LoadBalancer("test", urls);
+        Map<String, String> before = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            String key = "user-" + i;
+            String url = balancer.choose(key, null).getUrl();
+            assertEquals(url, balancer.choose(key, null).getUrl());
+            before.put(key, url);
+            Integer count = counts.get(url);
+            counts.put(url, count == null ? 1 : count + 1);
+        }
+        assertEquals(5, counts.size());
+        for (int count : counts.values()) {
+            assertTrue("unbalanced: " + counts, count > 700 && count < 1300);
+        }
+        String removed = urls.remove(2);
+        balancer.updateEndpoints(urls);
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            String url = balancer.choose(entry.getKey(), null).getUrl();
+            if (!entry.getValue().equals(removed)) {
+                assertEquals(entry.getValue(), url);
+            } else {
+                assertNotEquals(removed, url);
+            }
+        }
+    }
+
+    @Test
+    public void fallbackToNextRanked() {
+        LoadBalancer balancer = new LoadBalancer("test", Arrays.asList("http://a", "http://b", "http://c"));
+        Endpoint first = balancer.choose("key", null);
+        Endpoint second = balancer.choose("key", Collections.singletonList(first));
+        assertNotSame(first, second);
+        // ejected endpoints are skipped just like excluded ones
+        for (int i = 0; i < 5; i++) {
+            balancer.onStart(first);
+            balancer.onComplete(first, 1000000L, true);
+        }
+        assertTrue(first.isEjected());
+        assertSame(second, balancer.choose("key", null));
+        Endpoint third = balancer.choose("key", Arrays.asList(first, second));
+        assertNotSame(first, third);
+        assertNotSame(second, third);
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.dadiyang.httpinvoker.hedge;
+
+import com.github.dadiyang.httpinvoker.annotation.Hedge;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings.Phase;
+import com.github.dadiyang.httpinvoker.requestor.HttpRequest;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HedgingSenderTest {
+
+    @Hedge(delayPercentile = 90, budgetPercent = 100)
+    private static class Hedged {
+    }
+
+    @Hedge(budgetPercent = 0)
+    private static class NoBudget {
+    }
+
+    @Test
+    public void slowFirstAttemptIsHedged() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean slow = new AtomicBoolean();
+        Requestor requestor = request -> {
+            calls.incrementAndGet();
+            sleep(slow.compareAndSet(true, false) ? 3000 : 5);
+            return new HttpResponse(200, "OK", "text/plain");
+        };
+        HedgingSender sender = new HedgingSender(Hedged.class.getAnnotation(Hedge.class), null);
+        HttpRequest request = new HttpRequest("http://localhost/city");
+        // no call is hedged until 20 calls are observed, so that the warm-up sends exactly one request per call
+        for (int i = 0; i < 20; i++) {
+            sender.send(requestor, request);
+        }
+        assertEquals(20, calls.get());
+        // the next first attempt hangs, the hedged one should win
+        slow.set(true);
+        long start = System.currentTimeMillis();
+        HttpResponse response = sender.send(requestor, request);
+        long timeConsume = System.currentTimeMillis() - start;
+        assertEquals(200, response.getStatusCode());
+        assertEquals(22, calls.get());
+        assertTrue("the hedged request should answer long before the slow one, but took " + timeConsume,
+                timeConsume < 1000);
+    }
+
+    @Test
+    public void loserIsCancelledAndDiscarded() throws Exception {
+        AtomicBoolean slow = new AtomicBoolean();
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CountDownLatch discarded = new CountDownLatch(1);
+        Requestor requestor = request -> {
+            if (!slow.compareAndSet(true, false)) {
+                sleep(5);
+                request.getTimings().record(Phase.TTFB, TimeUnit.MILLISECONDS.toNanos(1));
+                return new HttpResponse(200, "OK", "text/plain");
+            }
+            request.onCancel(cancelled::countDown);
+            // a transport which is not aborted and answers after the call is done
+            while (cancelled.getCount() > 0) {
+                sleep(5);
+            }
+            request.getTimings().record(Phase.TTFB, TimeUnit.SECONDS.toNanos(1));
+            HttpResponse response = new HttpResponse(200, "OK", "text/plain");
+            response.setBodyStream(new BufferedInputStream(new ByteArrayInputStream(new byte[1])) {
+                @Override
+                public void close() throws IOException {
+                    discarded.countDown();
+                    super.close();
+                }
+            });
+            return response;
+        };
+        HedgingSender sender = new HedgingSender(Hedged.class.getAnnotation(Hedge.class), null);
+        HttpRequest request = new HttpRequest("http://localhost/city");
+        request.setTimings(new PhaseTimings());
+        for (int i = 0; i < 20; i++) {
+            sender.send(requestor, request);
+        }
+        slow.set(true);
+        assertEquals(200, sender.send(requestor, request).getStatusCode());
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        assertTrue(discarded.await(5, TimeUnit.SECONDS));
+        // the timings of the loser are not recorded into the request
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), request.getTimings().get(Phase.TTFB));
+    }
+
+    @Test
+    public void noHedgeWithoutPermit() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean slow = new AtomicBoolean();
+        Requestor requestor = request -> {
+            calls.incrementAndGet();
+            sleep(slow.compareAndSet(true, false) ? 300 : 5);
+            return new HttpResponse(200, "OK", "text/plain");
+        };
+        HedgingSender sender = new HedgingSender(Hedged.class.getAnnotation(Hedge.class), null);
+        HttpRequest request = new HttpRequest("http://localhost/city");
+        for (int i = 0; i < 20; i++) {
+            sender.send(requestor, request);
+        }
+        slow.set(true);
+        AtomicInteger asked = new AtomicInteger();
+        sender.send(requestor, request, () -> {
+            asked.incrementAndGet();
+            return false;
+        });
+        assertEquals(1, asked.get());
+        assertEquals(21, calls.get());
+    }
+
+    @Test
+    public void noHedgeWithoutBudget() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Requestor requestor = request -> {
+            int n = calls.incrementAndGet();
+            sleep(n > 30 ? 200 : 5);
+            return new HttpResponse(200, "OK", "text/plain");
+        };
+        HedgingSender sender = new HedgingSender(NoBudget.class.getAnnotation(Hedge.class), null);
+        HttpRequest request = new HttpRequest("http://localhost/city");
+        for (int i = 0; i < 31; i++) {
+            sender.send(requestor, request);
+        }
+        assertEquals(31, calls.get());
+    }
+
+    @Test
+    public void budget() {
+        HedgeBudget budget = new HedgeBudget(10);
+        for (int i = 0; i < 9; i++) {
+            budget.onCall();
+        }
+        assertFalse(budget.tryAcquire());
+        budget.onCall();
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.dadiyang.httpinvoker.jfr;
+
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.*;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import com.github.dadiyang.httpinvoker.requestor.Status;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+public class JfrTracerTest {
+
+    @HttpApi("http://localhost/city")
+    @RateLimit(permitsPerSecond = 1000, burst = 10)
+    public interface TracedService {
+        @HttpReq("/{id}")
+        @RetryPolicy(times = 2, retryForStatus = Status.SERVER_ERROR)
+        String getName(@Param("id") int id);
+    }
+
+    @Test
+    public void recordEvents() throws Exception {
+        assumeNotNull(JfrTracer.get());
+        AtomicInteger calls = new AtomicInteger();
+        Requestor requestor = request -> {
+            // the first attempt fails and is retried
+            HttpResponse response = new HttpResponse(calls.incrementAndGet() == 1 ? 500 : 200, "", "text/plain");
+            response.setBody("Guangzhou");
+            return response;
+        };
+        TracedService service = HttpApiProxyFactory.newProxy(TracedService.class, requestor);
+        Path file = Files.createTempFile("http-api", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[]{"Invocation", "Attempt", "Decode", "Acquire"}) {
+                recording.enable("com.github.dadiyang.httpinvoker." + name).withThreshold(java.time.Duration.ZERO);
+            }
+            recording.start();
+            assertEquals("Guangzhou", service.getName(1));
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> invocations = new ArrayList<>();
+        List<RecordedEvent> attempts = new ArrayList<>();
+        List<RecordedEvent> decodes = new ArrayList<>();
+        List<RecordedEvent> acquires = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            String name = event.getEventType().getName();
+            if (name.endsWith(".Invocation")) {
+                invocations.add(event);
+            } else if (name.endsWith(".Attempt")) {
+                attempts.add(event);
+            } else if (name.endsWith(".Decode")) {
+                decodes.add(event);
+            } else if (name.endsWith(".Acquire")) {
+                acquires.add(event);
+            }
+        }
+        new File(file.toString()).delete();
+        assertEquals(1, invocations.size());
+        RecordedEvent invocation = invocations.get(0);
+        assertEquals(TracedService.class.getName(), invocation.getString("api"));
+        assertEquals("getName", invocation.getString("method"));
+        assertEquals("http://localhost/city/{id}", invocation.getString("urlTemplate"));
+        assertEquals("http://localhost/city/1", invocation.getString("url"));
+        assertEquals(200, invocation.getInt("statusCode"));
+        assertEquals(2, invocation.getInt("attempts"));
+        assertEquals(2, attempts.size());
+        assertEquals(500, attempts.get(0).getInt("statusCode"));
+        assertEquals(2, attempts.get(1).getInt("attempt"));
+        assertEquals(1, decodes.size());
+        assertEquals(2, acquires.size());
+        assertTrue(acquires.get(0).getBoolean("acquired"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.dadiyang.httpinvoker.jmx;
+
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class HttpApiClientTest {
+
+    @HttpApi("http://localhost/city")
+    public interface ManagedService {
+        @HttpReq("/name")
+        String getName(@Param("id") int id);
+    }
+
+    @Test
+    public void registerAndUnregister() throws Exception {
+        Requestor requestor = request -> {
+            HttpResponse response = new HttpResponse(200, "OK", "text/plain");
+            response.setBody("Guangzhou");
+            return response;
+        };
+        HttpApiProxyFactory factory = new HttpApiProxyFactory(requestor);
+        factory.setJmxEnabled(true);
+        ManagedService service = factory.getProxy(ManagedService.class);
+        for (int i = 0; i < 10; i++) {
+            service.getName(i);
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.github.dadiyang.httpinvoker:type=HttpApi,name=" + ManagedService.class.getName());
+        assertTrue(server.isRegistered(name));
+        assertEquals(ManagedService.class.getName(), server.getAttribute(name, "ApiName"));
+        assertEquals(10L, server.getAttribute(name, "Calls"));
+        assertEquals(0L, server.getAttribute(name, "InFlight"));
+        CompositeData[] methods = (CompositeData[]) server.getAttribute(name, "Methods");
+        assertEquals(1, methods.length);
+        assertEquals("getName", methods[0].get("methodName"));
+        assertEquals(10L, methods[0].get("calls"));
+        assertTrue((Long) methods[0].get("p99") > 0);
+
+        // the same interface proxied by another factory is registered under another name
+        HttpApiProxyFactory another = new HttpApiProxyFactory(requestor);
+        another.setJmxEnabled(true);
+        another.getProxy(ManagedService.class);
+        assertTrue(server.isRegistered(new ObjectName(name + ",id=2")));
+
+        server.invoke(name, "resetStatistics", null, null);
+        assertEquals(0L, server.getAttribute(name, "Calls"));
+        factory.close();
+        another.close();
+        assertFalse(server.isRegistered(name));
+        assertFalse(server.isRegistered(new ObjectName(name + ",id=2")));
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.dadiyang.httpinvoker.limiter;
+
+import com.github.dadiyang.httpinvoker.HttpApiInvoker;
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.ConcurrencyLimit;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    @HttpApi("http://localhost:18888")
+    @ConcurrencyLimit(initialLimit = 1, maxLimit = 1)
+    public interface LimitedService {
+        @HttpReq("/slow")
+        String slow();
+    }
+
+    @Test
+    public void rejectWhenLimitReached() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 10, 2, 0);
+        long first = limiter.acquire();
+        limiter.acquire();
+        assertEquals(2, limiter.getInFlight());
+        try {
+            limiter.acquire();
+            fail("the third call should be rejected");
+        } catch (LimitExceededException e) {
+            assertEquals(1, limiter.getRejectedCount());
+        }
+        limiter.release(first, false);
+        assertEquals(1, limiter.getInFlight());
+        limiter.acquire();
+    }
+
+    @Test
+    public void waitForPermit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 1, 2, 2000);
+        long start = limiter.acquire();
+        Thread releaser = new Thread(() -> {
+            sleep(100);
+            limiter.release(start, false);
+        });
+        releaser.start();
+        limiter.acquire();
+        releaser.join();
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(0, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void limitAdapts() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 10, 1, 20, 2, 0);
+        // the limit is used and the latency is fine
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 10; j++) {
+                limiter.acquire();
+            }
+            for (int j = 0; j < 10; j++) {
+                // a stable latency of 10ms
+                limiter.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10), false);
+            }
+        }
+        int grown = limiter.getLimit();
+        assertTrue("limit should grow, but was " + grown, grown > 10);
+        limiter.release(limiter.acquire(), true);
+        assertTrue("limit should shrink on failure", limiter.getLimit() < grown);
+    }
+
+    @Test
+    public void limitProxyCalls() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Requestor requestor = request -> {
+            sending.countDown();
+            try {
+                finish.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            HttpResponse response = new HttpResponse(200, "OK", "text/plain");
+            response.setBody("OK");
+            return response;
+        };
+        LimitedService service = HttpApiProxyFactory.newProxy(LimitedService.class, requestor);
+        Thread first = new Thread(service::slow);
+        first.start();
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        try {
+            service.slow();
+            fail("the second concurrent call should be rejected");
+        } catch (LimitExceededException e) {
+            HttpApiInvoker invoker = (HttpApiInvoker) Proxy.getInvocationHandler(service);
+            AdaptiveConcurrencyLimiter limiter = invoker.getConcurrencyLimiters().values().iterator().next();
+            assertEquals(1, limiter.getInFlight());
+            assertEquals(1, limiter.getRejectedCount());
+        } finally {
+            finish.countDown();
+            first.join();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
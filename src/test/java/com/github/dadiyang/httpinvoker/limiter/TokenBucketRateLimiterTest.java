@@ -0,0 +1,94 @@
+package com.github.dadiyang.httpinvoker.limiter;
+
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.RateLimit;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketRateLimiterTest {
+
+    @HttpApi("http://localhost:18888")
+    @RateLimit(permitsPerSecond = 1, burst = 2, mode = RateLimit.Mode.REJECT)
+    public interface QuotaService {
+        @HttpReq("/quota")
+        void call();
+
+        @HttpReq("/other")
+        @RateLimit(permitsPerSecond = 1000, burst = 100)
+        void other();
+    }
+
+    @Test
+    public void rejectAfterBurst() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 1, 3, RateLimit.Mode.REJECT, 0);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire();
+        }
+        try {
+            limiter.acquire();
+            fail("the request over the burst should be rejected");
+        } catch (LimitExceededException e) {
+            assertEquals(1, limiter.getRejectedCount());
+        }
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void waitForPermit() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 20, 1, RateLimit.Mode.WAIT, 1000);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+        }
+        long timeConsume = System.currentTimeMillis() - start;
+        // the first one is free, the others are paced by 50ms
+        assertTrue("took " + timeConsume, timeConsume >= 180 && timeConsume < 1000);
+    }
+
+    @Test
+    public void rejectWhenWaitTooLong() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter("test", 1, 1, RateLimit.Mode.WAIT, 100);
+        limiter.acquire();
+        try {
+            limiter.acquire();
+            fail("waiting a second is longer than the max wait time");
+        } catch (LimitExceededException e) {
+            assertEquals(1, limiter.getRejectedCount());
+        }
+    }
+
+    @Test
+    public void overrideByProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("httpapi.ratelimit." + QuotaService.class.getName() + ".permitsPerSecond", "50");
+        properties.setProperty("httpapi.ratelimit." + QuotaService.class.getName() + ".burst", "5");
+        AtomicInteger sent = new AtomicInteger();
+        Requestor requestor = request -> {
+            sent.incrementAndGet();
+            return new HttpResponse(200, "OK", "text/plain");
+        };
+        QuotaService service = HttpApiProxyFactory.newProxy(QuotaService.class, requestor, properties);
+        for (int i = 0; i < 5; i++) {
+            service.call();
+        }
+        try {
+            service.call();
+            fail("the request over the overridden burst should be rejected");
+        } catch (LimitExceededException e) {
+            assertEquals(5, sent.get());
+        }
+        // the method has a limit of its own
+        for (int i = 0; i < 10; i++) {
+            service.other();
+        }
+        assertEquals(15, sent.get());
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.dadiyang.httpinvoker.load;
+
+import com.github.dadiyang.httpinvoker.util.LatencyHistogram;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives an action at a fixed arrival rate with a fixed number of worker threads.
+ * <p>
+ * The i-th request is scheduled to start at {@code start + i / rate}. Its latency is measured from that intended
+ * start rather than from when a worker actually got to send it, so that the time a request spent waiting behind
+ * slow ones is not omitted (coordinated omission). The service time, measured from the actual start, is recorded
+ * as well for comparison.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class LoadGenerator {
+    private final int ratePerSecond;
+    private final long durationNanos;
+    private final int concurrency;
+
+    /**
+     * @param ratePerSecond  the number of requests to start per second
+     * @param durationMillis the duration to generate load
+     * @param concurrency    the number of worker threads, i.e. the maximum number of requests in flight
+     */
+    public LoadGenerator(int ratePerSecond, long durationMillis, int concurrency) {
+        if (ratePerSecond <= 0 || durationMillis <= 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("rate, duration and concurrency must be positive");
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * generate the load and wait until all the requests scheduled are completed
+     *
+     * @param name   the name of the result, e.g. the requestor under test
+     * @param action the request to send
+     * @return the result
+     */
+    public LoadResult run(String name, Action action) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        double intervalNanos = (double) TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long total = (long) (durationNanos / intervalNanos);
+        AtomicLong next = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long start = System.nanoTime();
+        for (int t = 0; t < concurrency; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    long i;
+                    while ((i = next.getAndIncrement()) < total) {
+                        long intended = start + (long) (i * intervalNanos);
+                        long wait;
+                        while ((wait = intended - System.nanoTime()) > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                        long actual = System.nanoTime();
+                        try {
+                            action.run(i);
+                        } catch (Throwable e) {
+                            errors.increment();
+                        }
+                        long end = System.nanoTime();
+                        latency.record(end - intended);
+                        serviceTime.record(end - actual);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-generator-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        return new LoadResult(name, concurrency, ratePerSecond, elapsed, errors.sum(), latency, serviceTime);
+    }
+
+    /**
+     * the request to send
+     */
+    public interface Action {
+        /**
+         * @param i the sequence number of the request
+         */
+        void run(long i) throws Exception;
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.dadiyang.httpinvoker.load;
+
+import com.alibaba.fastjson.JSON;
+import com.github.dadiyang.httpinvoker.util.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of a load test run, latencies are in microseconds.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class LoadResult {
+    private static final String[] COLUMNS = {"name", "concurrency", "targetRate", "completed", "errors", "throughput",
+            "p50", "p99", "p999", "serviceP50", "serviceP99", "serviceP999"};
+    private final String name;
+    private final int concurrency;
+    private final int targetRate;
+    private final long completed;
+    private final long errors;
+    private final double throughput;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long serviceP50;
+    private final long serviceP99;
+    private final long serviceP999;
+
+    LoadResult(String name, int concurrency, int targetRate, long elapsedNanos, long errors,
+               LatencyHistogram latency, LatencyHistogram serviceTime) {
+        this.name = name;
+        this.concurrency = concurrency;
+        this.targetRate = targetRate;
+        this.completed = latency.getCount();
+        this.errors = errors;
+        this.throughput = completed * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        long[] percentiles = latency.getPercentiles(50, 99, 99.9);
+        this.p50 = TimeUnit.NANOSECONDS.toMicros(percentiles[0]);
+        this.p99 = TimeUnit.NANOSECONDS.toMicros(percentiles[1]);
+        this.p999 = TimeUnit.NANOSECONDS.toMicros(percentiles[2]);
+        long[] service = serviceTime.getPercentiles(50, 99, 99.9);
+        this.serviceP50 = TimeUnit.NANOSECONDS.toMicros(service[0]);
+        this.serviceP99 = TimeUnit.NANOSECONDS.toMicros(service[1]);
+        this.serviceP999 = TimeUnit.NANOSECONDS.toMicros(service[2]);
+    }
+
+    /**
+     * write the results as both CSV and JSON, e.g. results.csv and results.json
+     *
+     * @param results  the results
+     * @param dir      the directory to write to, created if absent
+     * @param baseName the file name without extension
+     */
+    public static void write(List<LoadResult> results, Path dir, String baseName) throws IOException {
+        Files.createDirectories(dir);
+        try (Writer csv = Files.newBufferedWriter(dir.resolve(baseName + ".csv"), StandardCharsets.UTF_8)) {
+            csv.write(String.join(",", COLUMNS));
+            csv.write('\n');
+            for (LoadResult result : results) {
+                csv.write(result.toCsv());
+                csv.write('\n');
+            }
+        }
+        try (Writer json = Files.newBufferedWriter(dir.resolve(baseName + ".json"), StandardCharsets.UTF_8)) {
+            JSON.writeJSONString(json, results);
+        }
+    }
+
+    private String toCsv() {
+        Map<String, Object> values = toMap();
+        StringBuilder line = new StringBuilder();
+        for (String column : COLUMNS) {
+            if (line.length() > 0) {
+                line.append(',');
+            }
+            line.append(values.get(column));
+        }
+        return line.toString();
+    }
+
+    private Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", name);
+        map.put("concurrency", concurrency);
+        map.put("targetRate", targetRate);
+        map.put("completed", completed);
+        map.put("errors", errors);
+        map.put("throughput", String.format("%.1f", throughput));
+        map.put("p50", p50);
+        map.put("p99", p99);
+        map.put("p999", p999);
+        map.put("serviceP50", serviceP50);
+        map.put("serviceP99", serviceP99);
+        map.put("serviceP999", serviceP999);
+        return map;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getTargetRate() {
+        return targetRate;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the completed requests per second
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * @return the median latency from the intended start, in microseconds
+     */
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    /**
+     * @return the median latency from the actual start, in microseconds, which omits the time queued
+     */
+    public long getServiceP50() {
+        return serviceP50;
+    }
+
+    public long getServiceP99() {
+        return serviceP99;
+    }
+
+    public long getServiceP999() {
+        return serviceP999;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadResult" + toMap();
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.dadiyang.httpinvoker.load;
+
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.entity.City;
+import com.github.dadiyang.httpinvoker.requestor.DefaultHttpRequestor;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Load test of the requestors against a local stub server, the results are written to target/load-test.
+ * <p>
+ * By default a short run verifies the harness. A real comparison can be run with e.g.
+ * {@code -Dload.rate=2000 -Dload.duration=30000 -Dload.concurrency=1,16,64 -Dload.latency=5 -Dload.payload=16384}
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class RequestorLoadTest {
+    private static final Path OUTPUT = Paths.get("target", "load-test");
+
+    @HttpApi("${load.url}/city")
+    public interface LoadCityService {
+        @HttpReq("/getById")
+        City getCity(@Param("id") long id);
+    }
+
+    /**
+     * the requestors to compare, add more implementations here
+     */
+    private static Map<String, Requestor> requestors() {
+        Map<String, Requestor> requestors = new LinkedHashMap<>();
+        requestors.put("jsoup", new DefaultHttpRequestor());
+        return requestors;
+    }
+
+    @Test
+    public void compareRequestors() throws Exception {
+        int rate = Integer.getInteger("load.rate", 200);
+        long duration = Long.getLong("load.duration", 1000L);
+        long latency = Long.getLong("load.latency", 1L);
+        int payload = Integer.getInteger("load.payload", 1024);
+        String[] concurrencies = System.getProperty("load.concurrency", "1,8").split(",");
+        List<LoadResult> results = new ArrayList<>();
+        try (StubServer server = new StubServer(latency, payload)) {
+            Properties properties = new Properties();
+            properties.setProperty("load.url", server.getUrl());
+            for (Map.Entry<String, Requestor> entry : requestors().entrySet()) {
+                LoadCityService service = HttpApiProxyFactory.newProxy(LoadCityService.class, entry.getValue(), properties);
+                // warm up the connections and the code path
+                new LoadGenerator(rate, Math.min(duration, 500), 4).run(entry.getKey(), service::getCity);
+                for (String concurrency : concurrencies) {
+                    LoadGenerator generator = new LoadGenerator(rate, duration, Integer.parseInt(concurrency.trim()));
+                    results.add(generator.run(entry.getKey(), service::getCity));
+                }
+            }
+        }
+        LoadResult.write(results, OUTPUT, "results");
+        for (LoadResult result : results) {
+            System.out.println(result);
+            assertEquals(0, result.getErrors());
+            assertEquals((long) (rate * duration / 1000.0), result.getCompleted());
+            assertTrue(result.getP50() <= result.getP99() && result.getP99() <= result.getP999());
+            // the latency from the intended start is never shorter than the service time
+            assertTrue(result.getP999() >= result.getServiceP999());
+        }
+        assertTrue(Files.size(OUTPUT.resolve("results.csv")) > 0);
+        assertTrue(Files.size(OUTPUT.resolve("results.json")) > 0);
+    }
+
+    @Test
+    public void latencyIncludesQueueing() throws Exception {
+        // a single worker cannot keep up with requests arriving every 1ms taking 5ms each,
+        // so the requests queue up and the latency from the intended start grows beyond the service time
+        LoadResult result = new LoadGenerator(1000, 200, 1).run("slow", i -> Thread.sleep(5));
+        assertEquals(200, result.getCompleted());
+        assertTrue(result.getServiceP50() < 20_000);
+        assertTrue(result.toString(), result.getP999() > 500_000);
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.dadiyang.httpinvoker.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A local http server answering every request after a fixed latency with a JSON payload of a fixed size.
+ *
+ * @author dadiyang
+ * @since 1.2.0
+ */
+public class StubServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyNanos;
+    private final byte[] payload;
+
+    /**
+     * @param latencyMillis the time the server waits before responding
+     * @param payloadBytes  the size of the response body, at least the size of a single city
+     */
+    public StubServer(long latencyMillis, int payloadBytes) throws IOException {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        this.payload = payload(payloadBytes);
+        // otherwise the headers and the body written separately are delayed by Nagle's algorithm
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "stub-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * a city whose name is padded to make the JSON body the given size
+     */
+    static byte[] payload(int bytes) {
+        String prefix = "{\"id\":1,\"name\":\"";
+        String suffix = "\"}";
+        StringBuilder json = new StringBuilder(Math.max(bytes, prefix.length() + suffix.length() + 1));
+        json.append(prefix).append('G');
+        while (json.length() < bytes - suffix.length()) {
+            json.append('z');
+        }
+        return json.append(suffix).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) >= 0) {
+                // drain the request body
+            }
+        }
+        if (latencyNanos > 0) {
+            long deadline = System.nanoTime() + latencyNanos;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, payload.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(payload);
+        }
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.annotation.RetryPolicy;
+import com.github.dadiyang.httpinvoker.requestor.HttpResponse;
+import com.github.dadiyang.httpinvoker.requestor.Requestor;
+import com.github.dadiyang.httpinvoker.requestor.Status;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings.Phase;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.UndeclaredThrowableException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.Assert.*;
+
+public class InMemoryMetricsRecorderTest {
+
+    private static final int PORT = 18897;
+    @Rule
+    public WireMockRule server = new WireMockRule(options().port(PORT));
+
+    @HttpApi("http://localhost:" + PORT + "/city")
+    public interface LocalService extends MeasuredService {
+    }
+
+    @HttpApi("http://localhost/city")
+    public interface MeasuredService {
+        @HttpReq("/name")
+        String getName(@Param("id") int id);
+
+        @HttpReq("/flaky")
+        @RetryPolicy(times = 2, retryForStatus = Status.SERVER_ERROR)
+        String flaky();
+    }
+
+    @Test
+    public void recordCalls() throws Exception {
+        AtomicInteger flakyCalls = new AtomicInteger();
+        Requestor requestor = request -> {
+            boolean flaky = request.getUrl().endsWith("/flaky");
+            int status = flaky && flakyCalls.incrementAndGet() % 2 == 1 ? 500 : 200;
+            HttpResponse response = new HttpResponse(status, "", "text/plain");
+            response.setBody("Guangzhou");
+            response.setHeaders(Collections.singletonMap("Content-Length", Collections.singletonList("9")));
+            return response;
+        };
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        HttpApiProxyFactory factory = new HttpApiProxyFactory(requestor);
+        factory.setMetricsRecorder(recorder);
+        MeasuredService service = factory.getProxy(MeasuredService.class);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Guangzhou", service.getName(i));
+        }
+        // the first attempt fails and the retry succeeds
+        assertEquals("Guangzhou", service.flaky());
+
+        MetricsSnapshot name = recorder.getSnapshot(MeasuredService.class.getMethod("getName", int.class));
+        assertEquals(MeasuredService.class.getName(), name.getApiName());
+        assertEquals(100, name.getCalls());
+        assertEquals(0, name.getErrors());
+        assertEquals(0, name.getInFlight());
+        assertEquals(0, name.getRetries());
+        assertEquals(900, name.getResponseBytes());
+        assertEquals(100, name.getStatusCount(2));
+        assertTrue(name.getP50() > 0);
+        assertTrue(name.getP50() <= name.getP99() && name.getP99() <= name.getP999());
+
+        MetricsSnapshot flaky = recorder.getSnapshot(MeasuredService.class.getMethod("flaky"));
+        assertEquals(1, flaky.getCalls());
+        assertEquals(1, flaky.getRetries());
+        assertEquals(1, flaky.getStatusCount(2));
+        assertEquals(2, recorder.getSnapshots().size());
+
+        // the stub requestor measures no transport phase
+        assertTrue(name.getPhaseMean(Phase.SEND) >= 0);
+        assertTrue(name.getPhaseMean(Phase.DECODE) >= 0);
+        assertEquals(-1, name.getPhaseMean(Phase.CONNECT));
+        assertEquals(-1, name.getPhaseMean(Phase.TTFB));
+    }
+
+    @Test
+    public void transportPhases() throws Exception {
+        server.stubFor(get(urlPathEqualTo("/city/name")).willReturn(aResponse().withBody("Guangzhou")));
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        HttpApiProxyFactory factory = new HttpApiProxyFactory();
+        factory.setMetricsRecorder(recorder);
+        MeasuredService service = factory.getProxy(LocalService.class);
+        assertEquals("Guangzhou", service.getName(1));
+        MetricsSnapshot snapshot = recorder.getSnapshot(MeasuredService.class.getMethod("getName", int.class));
+        for (Phase phase : new Phase[]{Phase.RESOLVE, Phase.BIND, Phase.PREPROCESS, Phase.SEND, Phase.TTFB, Phase.BODY, Phase.DECODE}) {
+            assertTrue(phase + " should be measured", snapshot.getPhaseMean(phase) >= 0);
+        }
+        // not exposed by Jsoup
+        assertEquals(-1, snapshot.getPhaseMean(Phase.CONNECT));
+        assertEquals(9, snapshot.getResponseBytes());
+    }
+
+    @Test
+    public void recordServerTimings() throws Exception {
+        server.stubFor(get(urlPathEqualTo("/city/name")).willReturn(aResponse().withBody("Guangzhou")
+                .withHeader("Server-Timing", "db;dur=20;desc=\"select\", cache;dur=1.5")
+                .withHeader("Server-Timing", "app;dur=40")));
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        HttpApiProxyFactory factory = new HttpApiProxyFactory();
+        factory.setMetricsRecorder(recorder);
+        MeasuredService service = factory.getProxy(LocalService.class);
+        service.getName(1);
+        service.getName(2);
+        MetricsSnapshot snapshot = recorder.getSnapshot(MeasuredService.class.getMethod("getName", int.class));
+        Map<String, Long> serverTimings = snapshot.getServerTimingMeans();
+        assertEquals(3, serverTimings.size());
+        assertEquals(20_000_000L, (long) serverTimings.get("db"));
+        assertEquals(1_500_000L, (long) serverTimings.get("cache"));
+        assertEquals(40_000_000L, (long) serverTimings.get("app"));
+    }
+
+    @Test
+    public void timingsAttachedToException() {
+        Requestor requestor = request -> {
+            throw new IOException("connection reset");
+        };
+        MeasuredService service = HttpApiProxyFactory.newProxy(MeasuredService.class, requestor);
+        try {
+            service.getName(1);
+            fail("the call should fail");
+        } catch (Exception e) {
+            Throwable cause = e instanceof UndeclaredThrowableException ? e.getCause() : e;
+            assertEquals(1, cause.getSuppressed().length);
+            CallTimingsException timings = (CallTimingsException) cause.getSuppressed()[0];
+            assertTrue(timings.getTimings().isAvailable(Phase.BIND));
+            assertFalse(timings.getTimings().isAvailable(Phase.DECODE));
+            assertTrue(timings.getMessage(), timings.getMessage().contains("decode=n/a"));
+        }
+    }
+
+    @Test
+    public void recordErrors() throws Exception {
+        Requestor requestor = request -> new HttpResponse(404, "Not Found", "text/plain");
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        HttpApiProxyFactory factory = new HttpApiProxyFactory(requestor);
+        factory.setMetricsRecorder(recorder);
+        MeasuredService service = factory.getProxy(MeasuredService.class);
+        try {
+            service.getName(1);
+            fail("a 404 response should fail the call");
+        } catch (Exception expected) {
+        }
+        List<MetricsSnapshot> snapshots = recorder.getSnapshots();
+        assertEquals(1, snapshots.size());
+        MetricsSnapshot snapshot = snapshots.get(0);
+        assertEquals(1, snapshot.getCalls());
+        assertEquals(1, snapshot.getErrors());
+        assertEquals(1, snapshot.getStatusCount(4));
+        assertEquals(0, snapshot.getInFlight());
+    }
+
+    @Test
+    public void statusClass() {
+        assertEquals(0, InMemoryMetricsRecorder.statusClassOf(0));
+        assertEquals(2, InMemoryMetricsRecorder.statusClassOf(204));
+        assertEquals(5, InMemoryMetricsRecorder.statusClassOf(503));
+        assertEquals(0, InMemoryMetricsRecorder.statusClassOf(600));
+    }
+}
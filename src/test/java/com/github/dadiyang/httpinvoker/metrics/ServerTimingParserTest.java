@@ -0,0 +1,43 @@
+package com.github.dadiyang.httpinvoker.metrics;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServerTimingParserTest {
+
+    private static Map<String, Double> parse(String header) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        ServerTimingParser.parse(header, metrics::put);
+        return metrics;
+    }
+
+    @Test
+    public void parseMetrics() {
+        Map<String, Double> metrics = parse("db;dur=53.2;desc=\"query, users\", cache;desc=hit;dur=2 , total;dur=123");
+        assertEquals(3, metrics.size());
+        assertEquals(53.2, metrics.get("db"), 0.0001);
+        assertEquals(2, metrics.get("cache"), 0.0001);
+        assertEquals(123, metrics.get("total"), 0.0001);
+    }
+
+    @Test
+    public void parseMetricWithoutDuration() {
+        Map<String, Double> metrics = parse("miss, edge; DUR = 1.5");
+        assertEquals(-1, metrics.get("miss"), 0.0001);
+        assertEquals(1.5, metrics.get("edge"), 0.0001);
+    }
+
+    @Test
+    public void parseMalformed() {
+        assertTrue(parse("").isEmpty());
+        assertTrue(parse(" , ;dur=1").isEmpty());
+        Map<String, Double> metrics = parse("db;dur=abc;desc=\"unclosed, cache;dur=1");
+        assertEquals(1, metrics.size());
+        assertEquals(-1, metrics.get("db"), 0.0001);
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.BodyLimit;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BodyBufferTest {
+    private static final int PORT = 18902;
+    private HttpServer server;
+    private CityService service;
+    private List<String> cities;
+
+    @HttpApi("http://localhost:" + PORT)
+    public interface CityService {
+        @BodyLimit(spillBytes = 1024)
+        @HttpReq("/cities")
+        List<String> getCities();
+
+        @BodyLimit(maxBytes = 1024)
+        @HttpReq("/cities")
+        List<String> getLimitedCities();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        cities = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            cities.add("Guangzhou-" + i);
+        }
+        byte[] body = com.alibaba.fastjson.JSON.toJSONBytes(cities);
+        server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        server.createContext("/cities", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+            // chunked, so that the size is not known in advance
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        service = HttpApiProxyFactory.newProxy(CityService.class);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void readIntoPooledChunk() throws IOException {
+        byte[] body = "{\"name\":\"Guangzhou\"}".getBytes(StandardCharsets.UTF_8);
+        BodyBuffer buffer = BodyBuffer.read(new ByteArrayInputStream(body), body.length, null);
+        byte[] chunk = buffer.array();
+        assertNotNull(chunk);
+        assertEquals(BufferPool.MIN_SIZE, chunk.length);
+        assertEquals(body.length, buffer.length());
+        assertFalse(buffer.isBlank());
+        assertEquals("{\"name\":\"Guangzhou\"}", buffer.toString(StandardCharsets.UTF_8));
+        buffer.release();
+        // the chunk is reused by the next body
+        assertSame(chunk, BufferPool.acquire(body.length));
+    }
+
+    @Test
+    public void growWithoutContentLength() throws IOException {
+        byte[] body = new byte[3 * BufferPool.MIN_SIZE + 1];
+        Arrays.fill(body, (byte) 'a');
+        HttpRequest request = new HttpRequest("http://localhost");
+        request.setExpectedBodyBytes(-1);
+        BodyBuffer buffer = BodyBuffer.read(new ByteArrayInputStream(body), -1, request);
+        assertNull("the body is in several chunks", buffer.array());
+        assertArrayEquals(body, buffer.toByteArray());
+        // an expected size from the bodies before fits the body into one chunk
+        request.setExpectedBodyBytes(body.length);
+        buffer = BodyBuffer.read(new ByteArrayInputStream(body), -1, request);
+        assertNotNull(buffer.array());
+        buffer.release();
+    }
+
+    @Test
+    public void spillLargeBodyToFile() throws IOException {
+        byte[] body = new byte[64 * 1024];
+        Arrays.fill(body, (byte) ' ');
+        HttpRequest request = new HttpRequest("http://localhost");
+        request.setBodyLimit(-1, 16 * 1024);
+        BodyBuffer buffer = BodyBuffer.read(new ByteArrayInputStream(body), -1, request);
+        assertTrue(buffer.isSpilled());
+        assertEquals(body.length, buffer.length());
+        assertTrue(buffer.isBlank());
+        assertArrayEquals(body, buffer.toByteArray());
+        buffer.release();
+        try {
+            buffer.newInputStream();
+            fail("the body has been released");
+        } catch (IllegalStateException expected) {
+            // released
+        }
+    }
+
+    @Test
+    public void limitBodySize() throws IOException {
+        HttpRequest request = new HttpRequest("http://localhost");
+        request.setBodyLimit(100, -1);
+        try {
+            BodyBuffer.read(new ByteArrayInputStream(new byte[101]), -1, request);
+            fail("the body is larger than the limit");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("100"));
+        }
+        try {
+            service.getLimitedCities();
+            fail("the body is larger than the limit");
+        } catch (UndeclaredThrowableException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void decodeSpilledBody() {
+        assertEquals(cities, service.getCities());
+        // the estimate of the method presizes the buffer of the next call
+        assertEquals(cities, service.getCities());
+    }
+
+    @Test
+    public void releaseBodyOfFailedCall() throws IOException {
+        byte[] body = "not a json".getBytes(StandardCharsets.UTF_8);
+        List<BodyBuffer> buffers = new ArrayList<>();
+        int[] status = {500};
+        CityService failing = HttpApiProxyFactory.newProxy(CityService.class, request -> {
+            HttpResponse response = new HttpResponse(status[0], "", "application/json");
+            BodyBuffer buffer = BodyBuffer.read(new ByteArrayInputStream(body), body.length, request);
+            buffers.add(buffer);
+            response.setBodyBuffer(buffer);
+            return response;
+        });
+        try {
+            failing.getCities();
+            fail("the status code is not 2xx");
+        } catch (UndeclaredThrowableException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        // the body cannot be decoded
+        status[0] = 200;
+        try {
+            failing.getCities();
+            fail("the body is not a json");
+        } catch (RuntimeException expected) {
+            // failed to decode
+        }
+        assertEquals(2, buffers.size());
+        for (BodyBuffer buffer : buffers) {
+            try {
+                buffer.newInputStream();
+                fail("the body has been given back to the pool");
+            } catch (IllegalStateException expected) {
+                // released
+            }
+        }
+    }
+}
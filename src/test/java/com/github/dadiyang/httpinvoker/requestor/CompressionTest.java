@@ -0,0 +1,127 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.Compress;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.metrics.InMemoryMetricsRecorder;
+import com.github.dadiyang.httpinvoker.metrics.MetricsSnapshot;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings.Phase;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class CompressionTest {
+    private static final int PORT = 18901;
+    private HttpServer server;
+    private final List<String> requestEncodings = Collections.synchronizedList(new ArrayList<>());
+    private InMemoryMetricsRecorder recorder;
+    private CityService service;
+
+    @Compress(minBytes = 256)
+    @HttpApi("http://localhost:" + PORT)
+    public interface CityService {
+        /**
+         * echo the cities back
+         */
+        @HttpReq(value = "/cities", method = "POST")
+        List<String> saveCities(List<String> cities);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        server.createContext("/cities", this::echo);
+        server.start();
+        recorder = new InMemoryMetricsRecorder();
+        HttpApiProxyFactory factory = new HttpApiProxyFactory();
+        factory.setMetricsRecorder(recorder);
+        service = factory.getProxy(CityService.class);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * decompress a gzip request and answer with a gzip response if it is accepted
+     */
+    private void echo(HttpExchange exchange) throws IOException {
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        requestEncodings.add(String.valueOf(encoding));
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equals(encoding)) {
+            in = new GZIPInputStream(in);
+        }
+        byte[] body = readAll(in);
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+        if (accept != null && accept.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(body);
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            body = compressed.toByteArray();
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void compressLargeBody() throws Exception {
+        List<String> cities = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            cities.add("Guangzhou-" + i);
+        }
+        assertEquals(cities, service.saveCities(cities));
+        assertEquals(Collections.singletonList("gzip"), requestEncodings);
+        MetricsSnapshot snapshot = recorder.getSnapshot(CityService.class.getMethod("saveCities", List.class));
+        assertTrue(snapshot.toString(), snapshot.getRequestCompressionRatio() > 0 && snapshot.getRequestCompressionRatio() < 0.5);
+        assertTrue(snapshot.toString(), snapshot.getResponseCompressionRatio() > 0 && snapshot.getResponseCompressionRatio() < 0.5);
+        // the decompressed size
+        assertEquals(snapshot.getRequestBytes(), snapshot.getResponseBytes());
+        // the connection is opened explicitly to measure it
+        assertTrue(snapshot.getPhaseMean(Phase.CONNECT) >= 0);
+    }
+
+    @Test
+    public void sendSmallBodyAsItIs() throws Exception {
+        List<String> cities = Collections.singletonList("Guangzhou");
+        assertEquals(cities, service.saveCities(cities));
+        assertEquals(Collections.singletonList("null"), requestEncodings);
+        MetricsSnapshot snapshot = recorder.getSnapshot(CityService.class.getMethod("saveCities", List.class));
+        assertEquals(-1, snapshot.getRequestCompressionRatio(), 0);
+        // Jsoup asks for a gzip response
+        assertTrue(snapshot.toString(), snapshot.getResponseCompressionRatio() > 0);
+        assertEquals("[\"Guangzhou\"]".length(), snapshot.getResponseBytes());
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class HttpHeadersTest {
+
+    @Test
+    public void lookUpCaseInsensitively() {
+        HttpHeaders headers = new HttpHeaders(2)
+                .add("Content-Type", "application/json")
+                .add("Set-Cookie", "a=1")
+                .add("set-cookie", "b=2")
+                .add("X-Trace", "abc");
+        assertEquals("application/json", headers.get("content-type"));
+        assertEquals(Arrays.asList("a=1", "b=2"), headers.getAll("SET-COOKIE"));
+        assertEquals(Collections.singletonList("abc"), headers.getAll("x-trace"));
+        assertTrue(headers.getAll("Accept").isEmpty());
+        assertNull(headers.get("Accept"));
+        assertEquals(4, headers.size());
+    }
+
+    @Test
+    public void setAndRemove() {
+        HttpHeaders headers = new HttpHeaders()
+                .add("Accept", "a")
+                .add("X-Trace", "1")
+                .add("accept", "b");
+        headers.set("ACCEPT", "c");
+        assertEquals(Collections.singletonList("c"), headers.getAll("Accept"));
+        assertEquals("Accept", headers.name(0));
+        assertTrue(headers.remove("accept"));
+        assertFalse(headers.remove("accept"));
+        assertEquals(1, headers.size());
+        assertEquals("X-Trace", headers.name(0));
+    }
+
+    @Test
+    public void viewTheHeaders() {
+        HttpHeaders headers = HttpHeaders.of(Collections.singletonMap("Set-Cookie", Arrays.asList("a=1", "b=2")));
+        Map<String, String> map = headers.asMap();
+        map.put("Content-Type", "text/plain");
+        assertSame(map, headers.asMap());
+        assertEquals("a=1", map.get("set-cookie"));
+        assertTrue(map.containsKey("content-type"));
+        assertEquals(2, map.size());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("Set-Cookie", "Content-Type")), new LinkedHashSet<>(map.keySet()));
+        Map<String, List<String>> multi = headers.asMultiMap();
+        assertEquals(Arrays.asList("a=1", "b=2"), multi.get("SET-COOKIE"));
+        // the views are backed by the headers
+        headers.add("X-Trace", "abc");
+        assertEquals(3, multi.size());
+        Iterator<Map.Entry<String, String>> iterator = map.entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+        assertEquals(2, headers.size());
+        assertEquals("Content-Type", iterator.next().getKey());
+        assertEquals("X-Trace", iterator.next().getKey());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void setValueThroughEntry() {
+        HttpHeaders headers = new HttpHeaders()
+                .add("Set-Cookie", "a=1")
+                .add("Accept", "*/*")
+                .add("set-cookie", "b=2")
+                .add("X-Trace", "abc");
+        Map<String, String> map = headers.asMap();
+        assertEquals(3, map.size());
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            names.add(entry.getKey());
+            if (entry.getKey().equalsIgnoreCase("set-cookie")) {
+                // e.g. a preprocessor rewriting a header
+                assertEquals("a=1", entry.setValue("c=3"));
+                assertEquals("c=3", entry.getValue());
+            }
+        }
+        assertEquals(Arrays.asList("Set-Cookie", "Accept", "X-Trace"), names);
+        assertEquals(Collections.singletonList("c=3"), headers.getAll("set-cookie"));
+        assertEquals(3, headers.size());
+        assertEquals(3, map.size());
+        headers.add("X-Debug", "1");
+        assertEquals(4, map.size());
+        assertEquals(4, headers.asMultiMap().size());
+    }
+
+    @Test
+    public void splitHeaderLikeBefore() {
+        HttpResponse response = new HttpResponse(200, "OK", null);
+        response.setHeaders(Collections.singletonMap("Content-Type", Collections.singletonList("text/html;charset=UTF-8; q=1;;")));
+        assertEquals(Arrays.asList("text/html;charset=UTF-8; q=1;;".split(";\\s?")), response.getHeaders("content-type"));
+        assertTrue(response.getHeaders("Accept").isEmpty());
+    }
+
+    @Test
+    public void lookUpWithoutAllocating() {
+        HttpResponse response = new HttpResponse(200, "OK", null);
+        Map<String, List<String>> raw = new LinkedHashMap<>();
+        for (String name : new String[]{"Date", "Server", "Content-Type", "Content-Length", "Cache-Control", "ETag", "Vary"}) {
+            raw.put(name, Collections.singletonList(name.toLowerCase()));
+        }
+        response.setHeaders(raw);
+        // warm up
+        lookUp(response, 10_000);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        int found = lookUp(response, 10_000);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(30_000, found);
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static int lookUp(HttpResponse response, int times) {
+        int found = 0;
+        for (int i = 0; i < times; i++) {
+            found += response.getHeader("content-length") != null ? 1 : 0;
+            found += response.getHeader("ETAG") != null ? 1 : 0;
+            found += response.getHeaders().get("vary") != null ? 1 : 0;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import com.alibaba.fastjson.JSON;
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.dadiyang.httpinvoker.annotation.RetryPolicy;
+import com.github.dadiyang.httpinvoker.entity.City;
+import com.github.dadiyang.httpinvoker.entity.ResultBean;
+import com.github.dadiyang.httpinvoker.metrics.AttemptRecord;
+import com.github.dadiyang.httpinvoker.metrics.ExecutionRecord;
+import com.github.dadiyang.httpinvoker.metrics.PhaseTimings.Phase;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.dadiyang.httpinvoker.util.CityUtil.createCities;
+import static com.github.dadiyang.httpinvoker.util.CityUtil.createCity;
+import static org.junit.Assert.*;
+
+public class HttpResultTest {
+
+    @HttpApi("http://localhost/city")
+    @RetryPolicy(times = 3, retryForStatus = Status.SERVER_ERROR)
+    public interface ResultService {
+        @HttpReq("/getById")
+        HttpResult<City> getCity(@Param("id") int id);
+
+        @HttpReq("/getAll")
+        HttpResult<List<City>> getAll();
+    }
+
+    @Test
+    public void decodeWithExecutionRecord() {
+        AtomicInteger calls = new AtomicInteger();
+        Requestor requestor = request -> {
+            // the first attempt fails and the second one succeeds
+            if (calls.incrementAndGet() == 1) {
+                return new HttpResponse(500, "Internal Server Error", "text/plain");
+            }
+            HttpResponse response = new HttpResponse(200, "OK", "application/json");
+            Object body = request.getUrl().endsWith("/getAll") ? createCities() : createCity(1);
+            response.setBody(JSON.toJSONString(body));
+            response.setBodyAsBytes(JSON.toJSONBytes(body));
+            return response;
+        };
+        ResultService service = HttpApiProxyFactory.newProxy(ResultService.class, requestor);
+        HttpResult<City> result = service.getCity(1);
+        assertEquals(createCity(1), result.getValue());
+        assertEquals(200, result.getStatusCode());
+        ExecutionRecord execution = result.getExecution();
+        assertEquals(2, execution.getSucceededAttempt());
+        List<AttemptRecord> attempts = execution.getAttempts();
+        assertEquals(500, attempts.get(0).getStatusCode());
+        assertEquals(200, attempts.get(1).getStatusCode());
+        assertEquals("http://localhost/city/getById", attempts.get(1).getUrl());
+        assertTrue(attempts.get(0).getDurationNanos() > 0);
+        assertTrue(execution.getDurationNanos() >= attempts.get(0).getDurationNanos() + attempts.get(1).getDurationNanos());
+        assertFalse(execution.isHedged());
+        assertTrue(execution.getPhaseNanos(Phase.DECODE) >= 0);
+        assertTrue(execution.getResponseBytes() > 0);
+        try {
+            execution.getAttempts().clear();
+            fail("the execution record should be immutable");
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        // generic value types are decoded too
+        HttpResult<List<City>> all = service.getAll();
+        assertEquals(createCities(), all.getValue());
+        assertEquals(1, all.getExecution().getSucceededAttempt());
+    }
+
+    @Test
+    public void resultBeanProcessor() {
+        Requestor requestor = request -> {
+            HttpResponse response = new HttpResponse(200, "OK", "application/json");
+            response.setBody(JSON.toJSONString(new ResultBean<>(0, createCity(2))));
+            return response;
+        };
+        ResultService service = HttpApiProxyFactory.newProxy(ResultService.class, requestor, new Properties(),
+                null, new ResultBeanResponseProcessor());
+        assertEquals(createCity(2), service.getCity(2).getValue());
+    }
+
+    @Test
+    public void processorWithoutType() {
+        Requestor requestor = request -> {
+            HttpResponse response = new HttpResponse(200, "OK", "application/json");
+            response.setBody(JSON.toJSONString(createCity(2)));
+            return response;
+        };
+        ResponseProcessor processor = (response, method) -> JSON.parseObject(response.getBody(), City.class);
+        ResultService service = HttpApiProxyFactory.newProxy(ResultService.class, requestor, new Properties(),
+                null, processor);
+        try {
+            service.getCity(2);
+            fail("the processor can not decode to the value type");
+        } catch (UnsupportedOperationException expected) {
+            // instead of a HttpResult wrapping a HttpResult
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.Param;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.Assert.*;
+
+public class MultipartUploadTest {
+    private static final int PORT = 18898;
+    @Rule
+    public WireMockRule server = new WireMockRule(options().port(PORT));
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @HttpApi("http://localhost:" + PORT + "/media")
+    public interface MediaService {
+        @HttpReq(value = "/upload", method = "POST")
+        String upload(@Param("userId") String userId, @Param("avatar") File avatar,
+                      @Param("doc") Path doc, @Param("video") FileChannel video);
+
+        @HttpReq(value = "/upload", method = "POST")
+        String upload(@Param("video") Path video);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(folder.getRoot().toPath().resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void uploadSeveralFiles() throws Exception {
+        Path avatar = write("avatar.png", "avatar content");
+        Path doc = write("doc.txt", "doc content");
+        Path video = write("video.mp4", "video content");
+        server.stubFor(post(urlPathEqualTo("/media/upload"))
+                .withHeader("Content-Type", containing("multipart/form-data"))
+                .withMultipartRequestBody(aMultipart("userId").withBody(equalTo("42")))
+                .withMultipartRequestBody(aMultipart("avatar").withBody(equalTo("avatar content")))
+                .withMultipartRequestBody(aMultipart("doc").withBody(equalTo("doc content")))
+                .withMultipartRequestBody(aMultipart("video").withBody(equalTo("video content")))
+                .willReturn(aResponse().withBody("uploaded")));
+        MediaService service = HttpApiProxyFactory.newProxy(MediaService.class);
+        try (FileChannel channel = FileChannel.open(video, StandardOpenOption.READ)) {
+            assertEquals("uploaded", service.upload("42", avatar.toFile(), doc, channel));
+            // the channel belongs to the caller and is left open at its end
+            assertTrue(channel.isOpen());
+            assertEquals(channel.size(), channel.position());
+        }
+        server.verify(postRequestedFor(urlPathEqualTo("/media/upload"))
+                .withHeader("Content-Length", matching("\\d+"))
+                .withRequestBody(containing("filename=\"avatar.png\""))
+                .withRequestBody(containing("filename=\"doc.txt\"")));
+    }
+
+    @Test
+    public void abortWhenRejected() throws Exception {
+        // a large file which must not be transmitted
+        Path video = folder.getRoot().toPath().resolve("large.mp4");
+        try (RandomAccessFile file = new RandomAccessFile(video.toFile(), "rw")) {
+            file.setLength(64 * 1024 * 1024);
+        }
+        AtomicLong received = new AtomicLong();
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            Thread thread = new Thread(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                    String line;
+                    boolean expectContinue = false;
+                    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                        expectContinue |= line.equalsIgnoreCase("Expect: 100-continue");
+                    }
+                    OutputStream out = socket.getOutputStream();
+                    String status = expectContinue ? "413 Payload Too Large" : "400 Bad Request";
+                    out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    out.flush();
+                    socket.setSoTimeout(1000);
+                    char[] buffer = new char[8192];
+                    int n;
+                    try {
+                        while ((n = reader.read(buffer)) >= 0) {
+                            received.addAndGet(n);
+                        }
+                    } catch (IOException ignored) {
+                        // timed out or reset
+                    }
+                } catch (IOException ignored) {
+                }
+            });
+            thread.start();
+            HttpRequest request = new HttpRequest("http://localhost:" + serverSocket.getLocalPort() + "/upload", "POST", 10_000);
+            request.setBody(video);
+            request.setFileFormKey("video");
+            long start = System.nanoTime();
+            HttpResponse response = new DefaultHttpRequestor().sendRequest(request);
+            assertEquals(413, response.getStatusCode());
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+            thread.join();
+            assertEquals(0, received.get());
+        }
+    }
+
+    @Test
+    public void uploadWhenExpectationIgnored() throws Exception {
+        Path video = folder.getRoot().toPath().resolve("large.mp4");
+        try (RandomAccessFile file = new RandomAccessFile(video.toFile(), "rw")) {
+            file.setLength(2 * 1024 * 1024);
+        }
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            Thread thread = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        new Thread(() -> answerIgnoringExpectation(socket)).start();
+                    } catch (IOException ignored) {
+                        return;
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            HttpRequest request = new HttpRequest("http://localhost:" + serverSocket.getLocalPort() + "/upload", "POST", 1000);
+            request.setBody(video);
+            HttpResponse response = new DefaultHttpRequestor().sendRequest(request);
+            assertEquals(200, response.getStatusCode());
+            assertEquals(String.valueOf(request.getContentLength()), response.getBody());
+        }
+    }
+
+    /**
+     * a server which never answers the expectation, it responds with the size of the body received
+     */
+    private static void answerIgnoringExpectation(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            long length = 0;
+            boolean expectContinue = false;
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                if (line.toLowerCase().startsWith("content-length:")) {
+                    length = Long.parseLong(line.substring(15).trim());
+                }
+                expectContinue |= line.equalsIgnoreCase("Expect: 100-continue");
+            }
+            if (expectContinue) {
+                // wait for the client to give up
+                while (in.read() >= 0) {
+                }
+                return;
+            }
+            long received = 0;
+            while (received < length && in.read() >= 0) {
+                received++;
+            }
+            String body = String.valueOf(received);
+            s.getOutputStream().write(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length()
+                    + "\r\nConnection: close\r\n\r\n" + body).getBytes(StandardCharsets.ISO_8859_1));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.dadiyang.httpinvoker.requestor;
+
+import com.github.dadiyang.httpinvoker.HttpApiProxyFactory;
+import com.github.dadiyang.httpinvoker.annotation.Hedge;
+import com.github.dadiyang.httpinvoker.annotation.HttpApi;
+import com.github.dadiyang.httpinvoker.annotation.HttpReq;
+import com.github.dadiyang.httpinvoker.annotation.RangedDownload;
+import com.github.dadiyang.httpinvoker.annotation.Sink;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class RangedDownloadTest {
+    private static final int PORT = 18900;
+    private static final int SIZE = 256 * 1024;
+    private static final int SEGMENT = SIZE / 4;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private HttpServer server;
+    private ExecutorService executor;
+    private byte[] content;
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * break the response of the third range in the middle once
+     */
+    private final AtomicBoolean breakThirdRange = new AtomicBoolean();
+    /**
+     * the other ranges served completely, so that the third range breaks after them
+     */
+    private final CountDownLatch otherRanges = new CountDownLatch(3);
+    private DownloadService service;
+
+    @HttpApi("http://localhost:" + PORT)
+    public interface DownloadService {
+        @RangedDownload(segments = 4, minSegmentBytes = 1024)
+        @HttpReq("/ranged")
+        Path download(@Sink Path target);
+
+        @RangedDownload(minSegmentBytes = 1024)
+        @HttpReq("/plain")
+        Path downloadPlain();
+    }
+
+    @Hedge
+    @HttpApi("http://localhost:" + PORT)
+    public interface HedgedDownloadService {
+        @RangedDownload(segments = 4, minSegmentBytes = 1024)
+        @HttpReq("/ranged")
+        Path download(@Sink Path target);
+
+        @Hedge
+        @RangedDownload(minSegmentBytes = 1024)
+        @HttpReq("/plain")
+        Path downloadPlain();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+        server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        server.createContext("/ranged", this::ranged);
+        server.createContext("/plain", exchange -> {
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, SIZE);
+                exchange.getResponseBody().write(content);
+            }
+            exchange.close();
+        });
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        service = HttpApiProxyFactory.newProxy(DownloadService.class);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void ranged(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(SIZE));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        assertEquals("\"v1\"", exchange.getRequestHeaders().getFirst("If-Range"));
+        ranges.add(range);
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        int start = Integer.parseInt(bounds[0]);
+        int end = Integer.parseInt(bounds[1]);
+        exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + SIZE);
+        exchange.sendResponseHeaders(206, end - start + 1);
+        OutputStream out = exchange.getResponseBody();
+        if (start == 2 * SEGMENT && breakThirdRange.compareAndSet(true, false)) {
+            try {
+                otherRanges.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.write(content, start, SEGMENT / 2);
+            out.flush();
+            // close the connection before the range is complete
+            exchange.close();
+            return;
+        }
+        out.write(content, start, end - start + 1);
+        exchange.close();
+        otherRanges.countDown();
+    }
+
+    @Test
+    public void downloadInParallelRanges() throws Exception {
+        Path target = folder.getRoot().toPath().resolve("ranged.bin");
+        assertEquals(target, service.download(target));
+        assertTrue(Arrays.equals(content, Files.readAllBytes(target)));
+        assertEquals(new HashSet<>(Arrays.asList("bytes=0-65535", "bytes=65536-131071",
+                "bytes=131072-196607", "bytes=196608-262143")), new HashSet<>(ranges));
+        assertFalse(Files.exists(folder.getRoot().toPath().resolve("ranged.bin" + DownloadedHttpResponse.PROGRESS_SUFFIX)));
+    }
+
+    @Test
+    public void resumeFailedDownload() throws Exception {
+        Path target = folder.getRoot().toPath().resolve("ranged.bin");
+        Path progress = folder.getRoot().toPath().resolve("ranged.bin" + DownloadedHttpResponse.PROGRESS_SUFFIX);
+        breakThirdRange.set(true);
+        try {
+            service.download(target);
+            fail("the download should fail");
+        } catch (UndeclaredThrowableException e) {
+            // the third range is broken
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertTrue(Files.exists(progress));
+        ranges.clear();
+        assertEquals(target, service.download(target));
+        assertTrue(Arrays.equals(content, Files.readAllBytes(target)));
+        assertFalse(Files.exists(progress));
+        // only the rest of the broken range is downloaded again
+        assertEquals(1, ranges.size());
+        int resumed = Integer.parseInt(ranges.get(0).substring("bytes=".length()).split("-")[0]);
+        assertTrue("resumed from " + resumed, resumed > 2 * SEGMENT && resumed <= 2 * SEGMENT + SEGMENT / 2);
+    }
+
+    @Test
+    public void downloadInSingleStreamWithoutRanges() throws Exception {
+        Path file = service.downloadPlain();
+        try {
+            assertTrue(Arrays.equals(content, Files.readAllBytes(file)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void rangedDownloadIsNotHedged() throws Exception {
+        HedgedDownloadService hedged = HttpApiProxyFactory.newProxy(HedgedDownloadService.class);
+        // the Hedge of the interface does not apply
+        Path target = folder.getRoot().toPath().resolve("ranged.bin");
+        assertEquals(target, hedged.download(target));
+        assertTrue(Arrays.equals(content, Files.readAllBytes(target)));
+        try {
+            hedged.downloadPlain();
+            fail("a ranged download should not be hedged");
+        } catch (IllegalArgumentException expected) {
+            // the attempts would write the same file
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.dadiyang.httpinvoker.spring;
+
+import com.github.dadiyang.httpinvoker.index.HttpApiIndex;
+import com.github.dadiyang.httpinvoker.interfaces.CityService;
+import com.github.dadiyang.httpinvoker.propertyresolver.PropertiesBasePropertyResolver;
+import org.junit.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ClassPathHttpApiScannerTest {
+    private static final String BASE_PACKAGE = "com.github.dadiyang.httpinvoker";
+
+    private static ClassPathHttpApiScanner newScanner(DefaultListableBeanFactory registry) {
+        return new ClassPathHttpApiScanner(registry, new PropertiesBasePropertyResolver(new Properties()), null, null, null);
+    }
+
+    @Test
+    public void findTheSameInterfacesInTheIndex() throws Exception {
+        // written by HttpApiIndexProcessor while compiling the tests
+        assertNotNull(HttpApiIndex.load(getClass().getClassLoader()));
+        ClassPathHttpApiScanner indexScanner = newScanner(new DefaultListableBeanFactory());
+        indexScanner.setUseIndex(true);
+        Set<String> indexed = classNames(indexScanner.findCandidateComponents(BASE_PACKAGE));
+        Set<String> scanned;
+        System.setProperty(HttpApiIndex.IGNORE_PROPERTY, "true");
+        try {
+            scanned = classNames(newScanner(new DefaultListableBeanFactory()).findCandidateComponents(BASE_PACKAGE));
+        } finally {
+            System.clearProperty(HttpApiIndex.IGNORE_PROPERTY);
+        }
+        assertTrue(indexed.contains(CityService.class.getName()));
+        assertEquals(scanned, indexed);
+    }
+
+    @Test
+    public void scanPackageMissingInIndex() throws Exception {
+        // an index listing only CityService, as if the other jars were built without the processor
+        Path index = Files.createTempFile("http-api", ".index");
+        try {
+            Files.write(index, (CityService.class.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+            URL url = index.toUri().toURL();
+            ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+                @Override
+                public Enumeration<URL> getResources(String name) throws IOException {
+                    return HttpApiIndex.LOCATION.equals(name)
+                            ? Collections.enumeration(Collections.singletonList(url)) : super.getResources(name);
+                }
+            };
+            ClassPathHttpApiScanner scanner = newScanner(new DefaultListableBeanFactory());
+            scanner.setResourceLoader(new DefaultResourceLoader(loader));
+            scanner.setUseIndex(true);
+            assertEquals(Collections.singleton(CityService.class.getName()),
+                    classNames(scanner.findCandidateComponents(BASE_PACKAGE)));
+            // not in the index, so scanned
+            assertFalse(scanner.findCandidateComponents("com.github.dadiyang.httpinvoker.requestor").isEmpty());
+            // the index is not used unless enabled
+            scanner.setUseIndex(false);
+            assertTrue(scanner.findCandidateComponents(BASE_PACKAGE).size() > 1);
+        } finally {
+            Files.delete(index);
+        }
+    }
+
+    @Test
+    public void shareOneFactoryWithoutCreatingBeans() {
+        DefaultListableBeanFactory registry = new DefaultListableBeanFactory();
+        // an HttpApi bean which fails if it is created, since it has no interface
+        GenericBeanDefinition existing = new GenericBeanDefinition();
+        existing.setBeanClass(HttpApiProxyFactoryBean.class);
+        registry.registerBeanDefinition("cityService", existing);
+        newScanner(registry).doScan("com.github.dadiyang.httpinvoker.interfaces", "com.github.dadiyang.httpinvoker.requestor");
+        assertSame(existing, registry.getBeanDefinition("cityService"));
+        assertEquals(0, registry.getSingletonCount());
+        for (String name : registry.getBeanDefinitionNames()) {
+            BeanDefinition definition = registry.getBeanDefinition(name);
+            if (definition != existing && HttpApiProxyFactoryBean.class.getName().equals(definition.getBeanClassName())) {
+                assertNotNull(definition.getPropertyValues().getPropertyValue("proxyFactory"));
+            }
+        }
+        assertTrue(registry.containsBeanDefinition(ClassPathHttpApiScanner.PROXY_FACTORY_BEAN_NAME));
+        assertFalse(registry.containsBeanDefinition(ClassPathHttpApiScanner.WARM_UP_BEAN_NAME));
+    }
+
+    /**
+     * like a configuration with a @Bean method creating a proxy itself
+     */
+    public static class ProxyConfig {
+        public static CityService cityService() {
+            throw new IllegalStateException("the bean should not be created while scanning");
+        }
+    }
+
+    @Test
+    public void keepProxyOfFactoryMethod() {
+        DefaultListableBeanFactory registry = new DefaultListableBeanFactory();
+        RootBeanDefinition existing = new RootBeanDefinition(ProxyConfig.class);
+        existing.setFactoryMethodName("cityService");
+        registry.registerBeanDefinition("cityService", existing);
+        newScanner(registry).doScan("com.github.dadiyang.httpinvoker.interfaces");
+        assertSame(existing, registry.getBeanDefinition("cityService"));
+        assertEquals(0, registry.getSingletonCount());
+    }
+
+    @Test
+    public void registerWarmUpIfEnabled() {
+        DefaultListableBeanFactory registry = new DefaultListableBeanFactory();
+        ClassPathHttpApiScanner scanner = newScanner(registry);
+        scanner.setWarmUp(2, 0);
+        scanner.doScan("com.github.dadiyang.httpinvoker.interfaces");
+        BeanDefinition definition = registry.getBeanDefinition(ClassPathHttpApiScanner.WARM_UP_BEAN_NAME);
+        assertEquals(HttpApiWarmUp.class.getName(), definition.getBeanClassName());
+        assertEquals(2, definition.getConstructorArgumentValues().getIndexedArgumentValue(1, Integer.class).getValue());
+    }
+
+    private static Set<String> classNames(Set<BeanDefinition> definitions) {
+        Set<String> names = new TreeSet<>();
+        for (BeanDefinition definition : definitions) {
+            names.add(definition.getBeanClassName());
+        }
+        return names;
+    }
+}
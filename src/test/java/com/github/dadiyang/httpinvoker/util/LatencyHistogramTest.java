@@ -0,0 +1,40 @@
+package com.github.dadiyang.httpinvoker.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertWithin(500_000, histogram.getPercentile(50));
+        assertWithin(990_000, histogram.getPercentile(99));
+        assertWithin(1_000_000, histogram.getPercentile(100));
+        assertWithin(500_500, histogram.getMean());
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void bucketBoundaries() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1023, 1024, 123_456_789, Long.MAX_VALUE >>> 20}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value + " should not be above its bucket", value <= LatencyHistogram.highestValueOf(index));
+            if (index > 0) {
+                assertTrue(value + " should be above the previous bucket", value > LatencyHistogram.highestValueOf(index - 1));
+            }
+        }
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected * 0.07);
+    }
+}